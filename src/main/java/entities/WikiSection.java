@@ -1,21 +1,40 @@
 package entities;
 
 import org.apache.commons.lang3.StringUtils;
+import utils.SnapshotInput;
+import utils.SnapshotOutput;
+import utils.Snapshots;
 import utils.WikiUtils;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.CharBuffer;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
+ * A section of a Wikipedia entity page. The text of the sections which are split from the entity content is not
+ * copied, instead the section holds its start and end offsets within the content, and the text is materialized only
+ * on demand through getSectionText. Hence, an entity holds its content only once. The text is therefore only
+ * accessible through getSectionText and getSectionTextView, and not as a field.
+ * <p>
  * Created by besnik on 9/17/16.
  */
 public class WikiSection implements Serializable {
+    //the UID of the original class, such that sections serialized before the text offsets were added can be loaded.
+    private static final long serialVersionUID = -4096225404783686897L;
+
     public String section_label;
-    public String section_text;
+    //the explicitly set text of the section, otherwise null.
+    private String section_text;
     public int section_level = 0;
 
+    //the content of the entity and the offsets of the section text within it.
+    private CharSequence source;
+    private int text_start = -1;
+    private int text_end = -1;
+
     //section sentences
     public List<String> sentences;
 
@@ -34,6 +53,104 @@ public class WikiSection implements Serializable {
         section_citations = new HashMap<>();
     }
 
+    /**
+     * A section without sentences and citations, which WikipediaEntity.parseContent uses only to determine the levels
+     * of the sections.
+     *
+     * @param section_label
+     */
+    WikiSection(String section_label) {
+        this.section_label = section_label;
+        child_sections = new ArrayList<>();
+    }
+
+    /**
+     * Sets the text of the section as a range of the entity content, which is not copied.
+     *
+     * @param source the content of the entity.
+     * @param start
+     * @param end
+     */
+    public void setSectionText(CharSequence source, int start, int end) {
+        this.source = source;
+        this.text_start = start;
+        this.text_end = end;
+        this.section_text = null;
+    }
+
+    /**
+     * Sets the text of the section explicitly.
+     *
+     * @param section_text
+     */
+    public void setSectionText(String section_text) {
+        this.section_text = section_text;
+        this.source = null;
+        this.text_start = -1;
+        this.text_end = -1;
+    }
+
+    /**
+     * Returns the text of the section, where for the sections split from the entity content consecutive new lines
+     * are collapsed into a single one. The String is created on every call, hence, callers should use
+     * getSectionTextView where a CharSequence suffices.
+     *
+     * @return the text, or null in case no text is set.
+     */
+    public String getSectionText() {
+        if (section_text != null || source == null) {
+            return section_text;
+        }
+        StringBuilder sb = new StringBuilder(text_end - text_start);
+        for (int i = text_start; i < text_end; i++) {
+            char c = source.charAt(i);
+            if (c != '\n' || i == text_start || source.charAt(i - 1) != '\n') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a view of the text of the section without copying it. For the sections split from the entity content
+     * this is the raw range of the content, i.e. the consecutive new lines are not collapsed.
+     *
+     * @return the text, or null in case no text is set.
+     */
+    public CharSequence getSectionTextView() {
+        if (section_text != null || source == null) {
+            return section_text;
+        }
+        return CharBuffer.wrap(source, text_start, text_end);
+    }
+
+    /**
+     * The start offset of the section text within the entity content, or -1 in case the text is set explicitly.
+     *
+     * @return
+     */
+    public int getTextStart() {
+        return text_start;
+    }
+
+    /**
+     * The end offset of the section text within the entity content, or -1 in case the text is set explicitly.
+     *
+     * @return
+     */
+    public int getTextEnd() {
+        return text_end;
+    }
+
+    /**
+     * Check if the section has a non-empty text.
+     *
+     * @return
+     */
+    public boolean hasSectionText() {
+        return section_text != null ? !section_text.isEmpty() : source != null && text_end > text_start;
+    }
+
     public Map<String, List<Map<String, String>>> getSectionStatementCitations() {
         return section_statement_citations;
     }
@@ -49,7 +166,7 @@ public class WikiSection implements Serializable {
 
     public void setSectionCitations(Map<Integer, Map<String, String>> citations) {
         Pattern cite_number_pattern = Pattern.compile("\\{\\{[0-9]+\\}\\}");
-        Matcher cite_matcher = cite_number_pattern.matcher(section_text);
+        Matcher cite_matcher = cite_number_pattern.matcher(getSectionTextView());
         while (cite_matcher.find()) {
             int cite_marker = Integer.valueOf(cite_matcher.group().replaceAll("\\{|\\}", ""));
             if (!citations.containsKey(cite_marker)) {
@@ -70,7 +187,7 @@ public class WikiSection implements Serializable {
      * @param entity_citations
      */
     public void setCitations(Map<Integer, Map<String, String>> entity_citations) {
-        Map<String, List<Map<String, String>>> section_citations = WikiUtils.getSentenceCitation(section_text, entity_citations);
+        Map<String, List<Map<String, String>>> section_citations = WikiUtils.getSentenceCitation(getSectionText(), entity_citations);
         this.section_statement_citations = section_citations;
     }
 
@@ -176,6 +293,88 @@ public class WikiSection implements Serializable {
         }
     }
 
+    /**
+     * Writes this section and its child sections in the binary snapshot format (see Snapshots), where the text of the
+     * sections is written in full.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        writeSnapshot(out, null);
+    }
+
+    /**
+     * Writes this section and its child sections in the binary snapshot format, where the text of the sections
+     * which are ranges of the given entity content is written only as offsets. The content has to be passed again
+     * to readSnapshot.
+     *
+     * @param out
+     * @param source the content of the entity, which is written separately.
+     * @throws IOException
+     */
+    public void writeSnapshot(SnapshotOutput out, CharSequence source) throws IOException {
+        boolean offsets = this.source != null && this.source == source;
+        Snapshots.writeValue(out, section_label);
+        Snapshots.writeValue(out, offsets ? null : getSectionText());
+        out.writeSignedVarInt(section_level);
+        out.writeSignedVarInt(offsets ? text_start : -1);
+        out.writeSignedVarInt(offsets ? text_end : -1);
+        Snapshots.writeValue(out, sentences);
+        Snapshots.writeValue(out, section_statement_citations);
+        Snapshots.writeValue(out, section_citations);
+
+        out.writeVarInt(child_sections.size());
+        for (WikiSection child_section : child_sections) {
+            child_section.writeSnapshot(out, source);
+        }
+    }
+
+    /**
+     * Reads a section written through writeSnapshot.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static WikiSection readSnapshot(SnapshotInput in) throws IOException {
+        return readSnapshot(in, null);
+    }
+
+    /**
+     * Reads a section written through writeSnapshot, where the sections which were written as offsets become ranges
+     * of the given entity content.
+     *
+     * @param in
+     * @param source the content of the entity.
+     * @return
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public static WikiSection readSnapshot(SnapshotInput in, CharSequence source) throws IOException {
+        WikiSection section = new WikiSection();
+        section.section_label = (String) Snapshots.readValue(in);
+        section.section_text = (String) Snapshots.readValue(in);
+        section.section_level = in.readSignedVarInt();
+        //the offsets of the section text are written since version 2.
+        if (in.getVersion() >= 2) {
+            int start = in.readSignedVarInt();
+            int end = in.readSignedVarInt();
+            if (start >= 0 && source != null) {
+                section.setSectionText(source, start, end);
+            }
+        }
+        section.sentences = (List<String>) Snapshots.readValue(in);
+        section.section_statement_citations = (Map<String, List<Map<String, String>>>) Snapshots.readValue(in);
+        section.section_citations = (Map<Integer, Map<String, String>>) Snapshots.readValue(in);
+
+        int num_children = in.readVarInt();
+        for (int i = 0; i < num_children; i++) {
+            section.child_sections.add(readSnapshot(in, source));
+        }
+        return section;
+    }
+
     @Override
     public String toString() {
         return StringUtils.repeat("=", section_level) + section_label + StringUtils.repeat("=", section_level);
@@ -1,8 +1,13 @@
 package entities;
 
 import org.apache.commons.lang3.StringUtils;
+import utils.SnapshotInput;
+import utils.SnapshotOutput;
+import utils.Snapshots;
+import utils.WikiTextLexer;
 import utils.WikiUtils;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -24,6 +29,13 @@ import java.util.regex.Pattern;
  * Created by besnik on 9/14/16.
  */
 public class WikipediaEntity implements Serializable {
+    //the UID of the original class, such that entities serialized before the section index was added can be loaded.
+    private static final long serialVersionUID = -4908651802885419237L;
+    private static final Pattern main_section_pattern = Pattern.compile("(?<!=)==(?!=)(.*?)(?<!=)==(?!=)");
+    private static final Pattern section_pattern = Pattern.compile("={2,}(.*?)={2,}");
+    private static final Pattern citing_sentence_pattern = Pattern.compile("(.*?)\\.\\s{0,}(\\{\\{[0-9]+\\}\\}\\s?){1,}");
+    private static final Pattern cite_marker_pattern = Pattern.compile("\\{[0-9]*\\}");
+
     //entity title
     private String title;
     //entity content
@@ -46,6 +58,9 @@ public class WikipediaEntity implements Serializable {
     //control if we extract the citing statements for each citation
     private boolean extract_statements = false;
 
+    //process the content in a single pass through the WikiTextLexer instead of the chain of regular expressions.
+    private boolean single_pass_parsing = true;
+
     //the datastructure for the extracted citations. Each citation has an ID and is described by all its attributes (e.g. type, url, title etc.)
     private Map<Integer, Map<String, String>> entity_citations;
 
@@ -55,6 +70,12 @@ public class WikipediaEntity implements Serializable {
     //the sections in this Wikipedia entity page.
     private WikiSection root_sections;
 
+    //the index of the sections by their label, where for duplicate labels the first section in preorder is kept.
+    private transient Map<String, WikiSection> section_index;
+    //all the sections ordered by their level, and the level of each section, which is the maximal level on its path.
+    private transient WikiSection[] level_sections;
+    private transient int[] section_levels;
+
     //set the categories of this page
     public Set<String> categories;
 
@@ -81,6 +102,21 @@ public class WikipediaEntity implements Serializable {
         this.extract_broken_references = extract_broken_references;
     }
 
+    /**
+     * Set whether the content is processed in a single pass by the WikiTextLexer, which is the default, or by the chain
+     * of regular expressions of WikiUtils. Both produce the same content, citations and sections, and pages which the
+     * lexer does not support are always processed by the regular expressions.
+     *
+     * @param single_pass_parsing
+     */
+    public void setSinglePassParsing(boolean single_pass_parsing) {
+        this.single_pass_parsing = single_pass_parsing;
+    }
+
+    public boolean getSinglePassParsing() {
+        return single_pass_parsing;
+    }
+
     /**
      * Set the value for the data structure holding the citing statements. The structure is <cite id, <section, List<statement>>>
      *
@@ -254,7 +290,7 @@ public class WikipediaEntity implements Serializable {
      * @return
      */
     public WikiSection getSection(String section) {
-        return root_sections.findSection(section);
+        return getSectionIndex().get(section);
     }
 
     /**
@@ -284,29 +320,124 @@ public class WikipediaEntity implements Serializable {
      * @param wiki_content
      */
     public void setContent(String wiki_content) {
+        if (single_pass_parsing) {
+            WikiTextLexer lexer = new WikiTextLexer(clean_references, extract_references, getSectionPattern());
+            String processed = lexer.process(wiki_content, entity_citations);
+            if (processed != null) {
+                content = processed;
+                if (split_sections) {
+                    splitEntityIntoSections(content, lexer.getHeadings());
+                }
+                if (extract_statements) {
+                    assignCitingStatements();
+                }
+                return;
+            }
+        }
+
+        content = processContent(wiki_content, entity_citations);
+
+        //set the sections
+        if (split_sections) {
+            splitEntityIntoSections(content);
+        }
+
+        //set the citing statements
+        if (extract_statements) {
+            assignCitingStatements();
+        }
+    }
+
+    /**
+     * Processes the entity text through the chain of regular expressions, based on the variables
+     * (extract_references|clean_references).
+     *
+     * @param wiki_content
+     * @param citations    the map into which the citations are extracted.
+     * @return
+     */
+    private String processContent(String wiki_content, Map<Integer, Map<String, String>> citations) {
         //remove the infobox
-        this.content = wiki_content;
-        content = WikiUtils.removeInfoboxInformaion(content);
+        String text = WikiUtils.removeInfoboxInformaion(wiki_content);
         if (clean_references) {
-            content = WikiUtils.removeWikiFileReferences(content);
-            content = WikiUtils.removeWikiAnchorReferences(content);
+            text = WikiUtils.removeWikiFileReferences(text);
+            text = WikiUtils.removeWikiAnchorReferences(text);
         }
         //\[\[Category:(.*)\]\]
-        content = WikiUtils.removeCategoryInformation(content);
+        text = WikiUtils.removeCategoryInformation(text);
 
         //if we are interested in extracting the citations, do that here.
         if (extract_references) {
-            content = WikiUtils.extractWikiReferences(content, entity_citations);
+            text = WikiUtils.extractWikiReferences(text, citations);
+        }
+        return text;
+    }
+
+    /**
+     * Parses an entity text in a streaming mode, where instead of setting the content, the sections, the citations
+     * and the citing statements of this entity, they are reported to the visitor. The entity itself is not modified,
+     * it only provides the variables which determine how the text is processed, hence, the same entity can parse the
+     * texts of many pages, also from several threads.
+     * <p>
+     * The visitor receives first the categories of the page, then the citations in the order of their ids, then the
+     * sections (in case split_sections=true) in the order of the text, and finally the citing sentences (in case
+     * extract_statements=true). The sections and the citing sentences are the same as those of setContent.
+     *
+     * @param wiki_content
+     * @param visitor
+     */
+    public void parseContent(String wiki_content, WikipediaEntityVisitor visitor) {
+        for (String category : WikiUtils.getCategories(wiki_content)) {
+            visitor.onCategory(category);
+        }
+
+        Map<Integer, Map<String, String>> citations = new HashMap<>();
+        String text = null;
+        List<int[]> headings = null;
+        if (single_pass_parsing) {
+            WikiTextLexer lexer = new WikiTextLexer(clean_references, extract_references, getSectionPattern());
+            text = lexer.process(wiki_content, citations);
+            headings = lexer.getHeadings();
+        }
+        if (text == null) {
+            citations.clear();
+            text = processContent(wiki_content, citations);
+            headings = findHeadings(text);
+        }
+        for (Map.Entry<Integer, Map<String, String>> citation : new TreeMap<>(citations).entrySet()) {
+            visitor.onCitation(citation.getKey(), citation.getValue());
         }
 
-        //set the sections
         if (split_sections) {
-            splitEntityIntoSections(content);
+            WikiSection root = splitSections(text, headings, visitor);
+            if (extract_statements) {
+                visitCitingSentences(root, text, citations, visitor, new HashSet<>());
+            }
         }
+    }
 
-        //set the citing statements
-        if (extract_statements) {
-            assignCitingStatements();
+    /**
+     * Reports the citing sentences of the sections to the visitor as in assignCitingStatements, where for duplicate
+     * section labels only the first section in preorder is considered.
+     */
+    private void visitCitingSentences(WikiSection section, String text, Map<Integer, Map<String, String>> citations, WikipediaEntityVisitor visitor, Set<String> labels) {
+        if (labels.add(section.section_label) && section.getTextEnd() > section.getTextStart()) {
+            for (String paragraph : text.substring(section.getTextStart(), section.getTextEnd()).split("\\n+")) {
+                Matcher sentence_matcher = citing_sentence_pattern.matcher(paragraph);
+                while (sentence_matcher.find()) {
+                    String sentence = sentence_matcher.group();
+                    Matcher cite_matcher = cite_marker_pattern.matcher(sentence);
+                    while (cite_matcher.find()) {
+                        int citation_id = Integer.valueOf(cite_matcher.group().replaceAll("\\{|\\}", ""));
+                        if (citations.containsKey(citation_id)) {
+                            visitor.onCitingSentence(section.section_label, sentence, citation_id);
+                        }
+                    }
+                }
+            }
+        }
+        for (WikiSection child_section : section.child_sections) {
+            visitCitingSentences(child_section, text, citations, visitor, labels);
         }
     }
 
@@ -326,7 +457,7 @@ public class WikipediaEntity implements Serializable {
      * @return
      */
     public boolean hasSection(String section) {
-        return root_sections.hasSection(section);
+        return getSectionIndex().containsKey(section);
     }
 
     /**
@@ -336,8 +467,9 @@ public class WikipediaEntity implements Serializable {
      * @return
      */
     public String getSectionText(String section) {
-        if (hasSection(section)) {
-            return root_sections.findSection(section).section_text;
+        WikiSection wiki_section = getSection(section);
+        if (wiki_section != null) {
+            return wiki_section.getSectionText();
         }
 
         return "Section does not exist!";
@@ -349,9 +481,7 @@ public class WikipediaEntity implements Serializable {
      * @return
      */
     public Set<String> getSectionKeys() {
-        Set<String> keys = new HashSet<>();
-        root_sections.getSectionKeys(keys);
-        return keys;
+        return new HashSet<>(getSectionIndex().keySet());
     }
 
     /**
@@ -361,11 +491,59 @@ public class WikipediaEntity implements Serializable {
      * @return
      */
     public Set<String> getSectionKeys(int level) {
+        getSectionIndex();
         Set<String> keys = new HashSet<>();
-        root_sections.getSectionKeys(keys, level);
+        for (int i = 0; i < level_sections.length && section_levels[i] <= level; i++) {
+            keys.add(level_sections[i].section_label);
+        }
         return keys;
     }
 
+    /**
+     * Rebuilds the index of the sections, which is built when the entity is split into sections. This needs to be
+     * called only in case the section tree is modified directly, e.g. through getRootSection.
+     */
+    public void reindexSections() {
+        Map<String, WikiSection> index = new HashMap<>();
+        List<WikiSection> sections = new ArrayList<>();
+        List<Integer> levels = new ArrayList<>();
+        if (root_sections != null) {
+            indexSections(root_sections, Integer.MIN_VALUE, index, sections, levels);
+        }
+
+        //a stable sort keeps the preorder within each level.
+        Integer[] order = new Integer[sections.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(levels::get));
+        level_sections = new WikiSection[order.length];
+        section_levels = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            level_sections[i] = sections.get(order[i]);
+            section_levels[i] = levels.get(order[i]);
+        }
+        section_index = index;
+    }
+
+    private static void indexSections(WikiSection section, int path_level, Map<String, WikiSection> index, List<WikiSection> sections, List<Integer> levels) {
+        //a section is within the keys of a level only if all the sections on its path are, as in WikiSection.getSectionKeys.
+        int level = Math.max(path_level, section.section_level);
+        index.putIfAbsent(section.section_label, section);
+        sections.add(section);
+        levels.add(level);
+        for (WikiSection child_section : section.child_sections) {
+            indexSections(child_section, level, index, sections, levels);
+        }
+    }
+
+    private Map<String, WikiSection> getSectionIndex() {
+        if (section_index == null) {
+            reindexSections();
+        }
+        return section_index;
+    }
+
     /**
      * Splits the entity page text into chunks of text where each chunk belongs to a section. We begin with the main section
      * that is usually the introduction of an entity page. For the subsequent section we extract the text and in case
@@ -374,11 +552,45 @@ public class WikipediaEntity implements Serializable {
      * @param entity_text
      */
     public void splitEntityIntoSections(String entity_text) {
-        //determine how to split the section text.
-        Pattern section_pattern = main_sections_only ? Pattern.compile("(?<!=)==(?!=)(.*?)(?<!=)==(?!=)") : Pattern.compile("={2,}(.*?)={2,}");
-        Matcher section_matcher = section_pattern.matcher(entity_text);
+        splitEntityIntoSections(entity_text, findHeadings(entity_text));
+    }
 
-        root_sections = new WikiSection();
+    private List<int[]> findHeadings(String entity_text) {
+        List<int[]> headings = new ArrayList<>();
+        Matcher section_matcher = getSectionPattern().matcher(entity_text);
+        while (section_matcher.find()) {
+            headings.add(new int[]{section_matcher.start(), section_matcher.end()});
+        }
+        return headings;
+    }
+
+    /**
+     * The pattern of the section headings, which determines how to split the section text.
+     *
+     * @return
+     */
+    private Pattern getSectionPattern() {
+        return main_sections_only ? main_section_pattern : section_pattern;
+    }
+
+    /**
+     * Splits the entity page text into sections at the given section headings.
+     *
+     * @param entity_text
+     * @param headings    the start and end offsets of the section headings in the text.
+     */
+    public void splitEntityIntoSections(String entity_text, List<int[]> headings) {
+        root_sections = splitSections(entity_text, headings, null);
+        reindexSections();
+    }
+
+    /**
+     * Splits the text into the tree of sections. In case a visitor is given, the sections are reported to the visitor,
+     * and the tree consists only of the labels, levels and offsets of the sections, which are needed to determine the
+     * levels of the subsequent sections.
+     */
+    private WikiSection splitSections(String entity_text, List<int[]> headings, WikipediaEntityVisitor visitor) {
+        WikiSection root_sections = visitor == null ? new WikiSection() : new WikiSection("MAIN_SECTION");
         root_sections.section_label = "MAIN_SECTION";
 
         String section_name = "MAIN_SECTION";
@@ -389,24 +601,23 @@ public class WikipediaEntity implements Serializable {
 
         List<Map.Entry<Integer, String>> prev_section_entries = new LinkedList<>();
         boolean has_sections = false;
-        while (section_matcher.find()) {
+        for (int[] heading : headings) {
             has_sections = true;
-            String new_section = section_matcher.group();
+            String new_section = entity_text.substring(heading[0], heading[1]);
             int tmp_current_section_level = StringUtils.countMatches(new_section, "=") / 2;
             new_section = new_section.replaceAll("=", "").trim();
-            end_index = section_matcher.start();
+            end_index = heading[0];
 
             //the previous text is about the main section.
             if (!section_name.equals(new_section)) {
                 //extract the citations and chunk the section text into paragraphs.
-                String section_text = entity_text.substring(start_index, end_index);
                 if (section_name.toLowerCase().contains("references") || section_name.toLowerCase().contains("notes") || section_name.toLowerCase().contains("see also")) {
                     continue;
                 }
 
-                WikiSection section = new WikiSection();
+                WikiSection section = visitor == null ? new WikiSection() : new WikiSection(section_name);
                 section.section_label = section_name;
-                section.section_text = section_text.replaceAll("\n+", "\n");
+                section.setSectionText(entity_text, start_index, end_index);
 
                 if (current_section_level == 0 && section_name.equals("MAIN_SECTION")) {
                     root_sections = section;
@@ -422,17 +633,26 @@ public class WikipediaEntity implements Serializable {
                     AbstractMap.SimpleEntry<Integer, String> section_entry = new AbstractMap.SimpleEntry<>(section.section_level, section.section_label);
                     prev_section_entries.add(new AbstractMap.SimpleEntry<>(section_entry));
                 }
+                if (visitor != null) {
+                    visitor.onSection(section.section_label, section.section_level, entity_text, start_index, end_index);
+                }
             }
 
             //change the parent section only if you go deeper in the section level, for example if you are iterating over the main sections then we keep the "MAIN_SECTION" as the parent section.
             section_name = new_section;
             current_section_level = tmp_current_section_level;
-            start_index = section_matcher.end();
+            start_index = heading[1];
         }
 
         if (!has_sections) {
-            root_sections.section_text = entity_text;
+            if (visitor == null) {
+                root_sections.setSectionText(entity_text);
+            } else {
+                root_sections.setSectionText(entity_text, 0, entity_text.length());
+                visitor.onSection(root_sections.section_label, root_sections.section_level, entity_text, 0, entity_text.length());
+            }
         }
+        return root_sections;
     }
 
 
@@ -443,18 +663,16 @@ public class WikipediaEntity implements Serializable {
      * Here we will extract then all the citing statements to the extracted statements at the section level.
      */
     public void assignCitingStatements() {
-        Pattern cite_pattern = Pattern.compile("\\{[0-9]*\\}");
-        Pattern sentence_pattern = Pattern.compile("(.*?)\\.\\s{0,}(\\{\\{[0-9]+\\}\\}\\s?){1,}");
         //we perform this process at section level
         for (String section_key : getSectionKeys()) {
             WikiSection section = getSection(section_key);
 
-            if (!(section.section_text != null && !section.section_text.isEmpty())) {
+            if (!section.hasSectionText()) {
                 continue;
             }
-            String[] paragraphs = section.section_text.split("\\n+");
+            String[] paragraphs = section.getSectionText().split("\\n+");
             for (String paragraph : paragraphs) {
-                extractCitingSentencesForSection(section_key, paragraph, sentence_pattern, cite_pattern);
+                extractCitingSentencesForSection(section_key, paragraph, citing_sentence_pattern, cite_marker_pattern);
             }
         }
     }
@@ -512,6 +730,68 @@ public class WikipediaEntity implements Serializable {
         return "MAIN_SECTION";
     }
 
+    /**
+     * Writes this entity in the binary snapshot format (see Snapshots).
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        Snapshots.writeValue(out, title);
+        Snapshots.writeValue(out, content);
+        out.writeBoolean(clean_references);
+        out.writeBoolean(main_sections_only);
+        out.writeBoolean(extract_references);
+        out.writeBoolean(extract_broken_references);
+        out.writeBoolean(split_sections);
+        out.writeBoolean(extract_statements);
+        out.writeBoolean(single_pass_parsing);
+        Snapshots.writeValue(out, entity_citations);
+        Snapshots.writeValue(out, citing_statements);
+        Snapshots.writeValue(out, categories);
+        out.writeBoolean(root_sections != null);
+        if (root_sections != null) {
+            root_sections.writeSnapshot(out, content);
+        }
+    }
+
+    /**
+     * Reads an entity written through writeSnapshot.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public static WikipediaEntity readSnapshot(SnapshotInput in) throws IOException {
+        WikipediaEntity entity = new WikipediaEntity();
+        entity.title = (String) Snapshots.readValue(in);
+        entity.content = (String) Snapshots.readValue(in);
+        entity.clean_references = in.readBoolean();
+        entity.main_sections_only = in.readBoolean();
+        entity.extract_references = in.readBoolean();
+        entity.extract_broken_references = in.readBoolean();
+        entity.split_sections = in.readBoolean();
+        entity.extract_statements = in.readBoolean();
+        //since version 3 the parsing mode is part of the snapshot, older snapshots get the default mode.
+        if (in.getVersion() >= 3) {
+            entity.single_pass_parsing = in.readBoolean();
+        }
+        entity.entity_citations = (Map<Integer, Map<String, String>>) Snapshots.readValue(in);
+        entity.citing_statements = (Map<Integer, Map<String, List<String>>>) Snapshots.readValue(in);
+        entity.categories = (Set<String>) Snapshots.readValue(in);
+        //since version 3 the sections are preceded by a flag whether there are any.
+        if (in.getVersion() >= 3 && !in.readBoolean()) {
+            entity.root_sections = null;
+        } else if (in.getVersion() >= 2) {
+            //since version 2 the sections are written as offsets into the content.
+            entity.root_sections = WikiSection.readSnapshot(in, entity.content);
+        } else {
+            entity.root_sections = (WikiSection) Snapshots.readValue(in);
+        }
+        return entity;
+    }
+
     public static void main(String[] args) {
         String text6 = "'''Jorge Mario Cardinal Bergoglio''' (born December 17, 1936 in Buenos Aires, Argentina)is a Roman Catholic cardinal and currently archbishop of Buenos Aires. He is thought to be papabile.\n" +
                 "\n" +
@@ -526,6 +806,6 @@ public class WikipediaEntity implements Serializable {
         entity.setSplitSections(true);
         entity.setContent(text6);
 
-        System.out.println(entity.getSection("MAIN_SECTION").section_text);
+        System.out.println(entity.getSection("MAIN_SECTION").getSectionText());
     }
 }
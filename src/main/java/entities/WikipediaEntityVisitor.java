@@ -0,0 +1,54 @@
+package entities;
+
+import java.util.Map;
+
+/**
+ * Receives the parts of a Wikipedia entity page from WikipediaEntity.parseContent, which does not build the section
+ * tree, the citation maps and the citing statements of the entity. All the methods are optional, such that a visitor
+ * implements only the parts it aggregates, e.g. the number of citations per section. WikipediaDumpReader.visit
+ * streams all the pages of a dump through a visitor.
+ */
+public interface WikipediaEntityVisitor {
+    /**
+     * A new page, which is called only by WikipediaDumpReader.visit before the other methods of the page.
+     *
+     * @param title
+     */
+    default void onPage(String title) {
+    }
+
+    default void onCategory(String category) {
+    }
+
+    /**
+     * A citation of the page, where the id is the number of the citation marker {{id}} in the text.
+     *
+     * @param id
+     * @param attributes the attributes of the citation as in WikiUtils.getCitationAttributes.
+     */
+    default void onCitation(int id, Map<String, String> attributes) {
+    }
+
+    /**
+     * A section of the page. The text of the section is the range [start, end) of the processed content, which is
+     * passed without copying it, and which corresponds to WikiSection.getSectionTextView.
+     *
+     * @param label
+     * @param level
+     * @param content the processed content of the page.
+     * @param start
+     * @param end
+     */
+    default void onSection(String label, int level, CharSequence content, int start, int end) {
+    }
+
+    /**
+     * A sentence of a section which cites a citation, as in WikipediaEntity.getCitingStatements.
+     *
+     * @param section
+     * @param sentence
+     * @param citation_id
+     */
+    default void onCitingSentence(String section, String sentence, int citation_id) {
+    }
+}
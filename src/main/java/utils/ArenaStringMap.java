@@ -0,0 +1,137 @@
+package utils;
+
+import java.util.*;
+
+/**
+ * A Map<String, String> whose keys and values are stored as UTF-8 bytes in two StringArena, where equal values are
+ * stored only once. The map can be queried with any CharSequence, or with a range of UTF-8 bytes without decoding it.
+ * The entries are iterated in the order in which the keys are added, and they cannot be removed. Replaced values stay
+ * in the value arena.
+ */
+public class ArenaStringMap extends AbstractMap<String, String> {
+    private static final int NULL_VALUE = -1;
+
+    private final StringArena keys = new StringArena();
+    private final StringArena values = new StringArena();
+    //the id of the value of each key id.
+    private int[] value_ids = new int[64];
+
+    private Set<Entry<String, String>> entry_set;
+
+    @Override
+    public int size() {
+        return keys.size();
+    }
+
+    @Override
+    public String put(String key, String value) {
+        return put((CharSequence) key, value);
+    }
+
+    /**
+     * Adds or replaces an entry, without converting the key and value into a String first.
+     *
+     * @param key
+     * @param value
+     * @return the previous value.
+     */
+    public String put(CharSequence key, CharSequence value) {
+        int size = keys.size();
+        int key_id = keys.add(key);
+        String previous = null;
+        if (key_id == size) {
+            if (key_id == value_ids.length) {
+                value_ids = Arrays.copyOf(value_ids, key_id * 2);
+            }
+        } else {
+            previous = value(key_id);
+        }
+        value_ids[key_id] = value == null ? NULL_VALUE : values.add(value);
+        return previous;
+    }
+
+    private String value(int key_id) {
+        int value_id = value_ids[key_id];
+        return value_id == NULL_VALUE ? null : values.get(value_id);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof CharSequence && keys.find((CharSequence) key) >= 0;
+    }
+
+    /**
+     * Checks if the map contains the key given as UTF-8 bytes.
+     *
+     * @param bytes
+     * @param off
+     * @param len
+     * @return
+     */
+    public boolean containsKey(byte[] bytes, int off, int len) {
+        return keys.find(bytes, off, len) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int key_id = key instanceof CharSequence ? keys.find((CharSequence) key) : -1;
+        return key_id < 0 ? null : value(key_id);
+    }
+
+    /**
+     * Returns the value of the key given as UTF-8 bytes.
+     *
+     * @param bytes
+     * @param off
+     * @param len
+     * @return the value, or null in case the key does not exist.
+     */
+    public String get(byte[] bytes, int off, int len) {
+        int key_id = keys.find(bytes, off, len);
+        return key_id < 0 ? null : value(key_id);
+    }
+
+    /**
+     * The approximate number of bytes used by the keys and values.
+     *
+     * @return
+     */
+    public long getMemoryUsage() {
+        return keys.getMemoryUsage() + values.getMemoryUsage() + 4L * value_ids.length;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (entry_set == null) {
+            entry_set = new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<Entry<String, String>>() {
+                        int key_id = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return key_id < keys.size();
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(keys.get(key_id), value(key_id));
+                            key_id++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.size();
+                }
+            };
+        }
+        return entry_set;
+    }
+}
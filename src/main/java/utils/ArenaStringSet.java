@@ -0,0 +1,77 @@
+package utils;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A Set<String> whose strings are stored as UTF-8 bytes in a StringArena, which needs a fraction of the memory of a
+ * HashSet<String>. The set can be checked with any CharSequence, or with a range of UTF-8 bytes without decoding it.
+ * The strings are iterated in the order in which they are added, and they cannot be removed.
+ */
+public class ArenaStringSet extends AbstractSet<String> {
+    private final StringArena arena = new StringArena();
+
+    public StringArena getArena() {
+        return arena;
+    }
+
+    @Override
+    public int size() {
+        return arena.size();
+    }
+
+    @Override
+    public boolean add(String s) {
+        int size = arena.size();
+        return arena.add(s) == size;
+    }
+
+    /**
+     * Adds a string in case it does not exist yet, without converting it into a String first.
+     *
+     * @param s
+     * @return true in case the string was added.
+     */
+    public boolean add(CharSequence s) {
+        int size = arena.size();
+        return arena.add(s) == size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof CharSequence && arena.find((CharSequence) o) >= 0;
+    }
+
+    /**
+     * Checks if the set contains the string given as UTF-8 bytes.
+     *
+     * @param bytes
+     * @param off
+     * @param len
+     * @return
+     */
+    public boolean contains(byte[] bytes, int off, int len) {
+        return arena.find(bytes, off, len) >= 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            int id = 0;
+
+            @Override
+            public boolean hasNext() {
+                return id < arena.size();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return arena.get(id++);
+            }
+        };
+    }
+}
@@ -0,0 +1,246 @@
+package utils;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-lived writer for a single output file. The writes are put into a queue and written by a background thread in
+ * batches through a large buffer, hence, the caller does not pay for opening, flushing and closing the file on every
+ * write, as with FileUtils.saveText.
+ * <p>
+ * The memory is bounded by max_pending_chars: in case the background thread falls behind, write blocks until there
+ * is enough space in the queue. Data is guaranteed to be in the file only after flush or close. In case the path ends
+ * with a compression suffix (.gz, .zst etc., see CompressionCodecs) the file is compressed.
+ * <p>
+ * The writer is thread-safe, the writes of several threads are written in the order in which write was called.
+ */
+public class AsyncFileWriter extends Writer {
+    private static final AtomicInteger thread_counter = new AtomicInteger();
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final String path;
+    private final Writer out;
+    private final Thread thread;
+    private final long max_pending_chars;
+
+    //the following fields are guarded by lock.
+    private final Deque<String> queue = new ArrayDeque<>();
+    private long pending_chars = 0;
+    private long flush_requested = 0;
+    private long flush_done = 0;
+    private boolean closing = false;
+    private IOException error;
+    private long stall_time = 0;
+
+    public AsyncFileWriter(String path, boolean append) throws IOException {
+        this(path, append, 1 << 23);
+    }
+
+    public AsyncFileWriter(String path, boolean append, long max_pending_chars) throws IOException {
+        this(path, append, max_pending_chars, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param path
+     * @param append
+     * @param max_pending_chars the maximal number of chars that are queued before write blocks.
+     * @param charset           the encoding of the written text.
+     * @throws IOException
+     */
+    public AsyncFileWriter(String path, boolean append, long max_pending_chars, Charset charset) throws IOException {
+        this.path = path;
+        this.max_pending_chars = max_pending_chars;
+
+        OutputStream stream = CompressionCodecs.forSuffix(path) == null ? new FileOutputStream(path, append) : FileUtils.getFileOutputStream(path, append);
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, charset), BUFFER_SIZE);
+
+        thread = new Thread(this::writeLoop, "async-writer-" + thread_counter.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * The total time in nanoseconds which the callers of write were blocked because the queue was full.
+     *
+     * @return
+     */
+    public long getStallTime() {
+        synchronized (lock) {
+            return stall_time;
+        }
+    }
+
+    public boolean isClosed() {
+        synchronized (lock) {
+            return closing;
+        }
+    }
+
+    @Override
+    public void write(String text) throws IOException {
+        if (text.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            checkOpen();
+            if (pending_chars > 0 && pending_chars + text.length() > max_pending_chars) {
+                long time = System.nanoTime();
+                while (error == null && pending_chars > 0 && pending_chars + text.length() > max_pending_chars) {
+                    waitForWriter();
+                }
+                stall_time += System.nanoTime() - time;
+                checkOpen();
+            }
+            queue.add(text);
+            pending_chars += text.length();
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        write(new String(cbuf, off, len));
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        write(str.substring(off, off + len));
+    }
+
+    /**
+     * Blocks until all the previous writes are written to the file.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            checkOpen();
+            long ticket = ++flush_requested;
+            lock.notifyAll();
+            while (error == null && flush_done < ticket) {
+                waitForWriter();
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Writes the remaining queued content, and closes the file.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closing = true;
+            lock.notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing " + path);
+        }
+        synchronized (lock) {
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        if (closing) {
+            throw new IOException("The writer for " + path + " is closed.");
+        }
+    }
+
+    private void waitForWriter() throws IOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing to " + path);
+        }
+    }
+
+    /**
+     * The loop of the background thread, which takes all the queued writes at once and writes them as one batch.
+     */
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>();
+        while (true) {
+            long batch_flush;
+            boolean batch_close;
+            boolean failed;
+            synchronized (lock) {
+                while (queue.isEmpty() && !closing && flush_done == flush_requested) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        //the writer thread is only stopped through close.
+                    }
+                }
+                batch.addAll(queue);
+                queue.clear();
+                batch_flush = flush_requested;
+                batch_close = closing;
+                failed = error != null;
+            }
+
+            long batch_chars = 0;
+            for (String text : batch) {
+                batch_chars += text.length();
+            }
+            IOException batch_error = null;
+            if (!failed) {
+                try {
+                    for (String text : batch) {
+                        out.write(text);
+                    }
+                    if (batch_flush > flush_done || batch_close) {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    batch_error = e;
+                }
+            }
+            batch.clear();
+
+            if (batch_close) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    batch_error = batch_error == null ? e : batch_error;
+                }
+            }
+
+            synchronized (lock) {
+                pending_chars -= batch_chars;
+                flush_done = batch_flush;
+                if (batch_error != null && error == null) {
+                    error = batch_error;
+                }
+                lock.notifyAll();
+                if (batch_close && queue.isEmpty()) {
+                    return;
+                }
+            }
+        }
+    }
+}
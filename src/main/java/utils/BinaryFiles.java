@@ -0,0 +1,111 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Helpers for the binary files which are built once next to an input file and reopened from there (MappedDictionary,
+ * SparseMatrix, IntAdjacency, BloomFilter, LineIndex). Several threads or processes may build the same file at the
+ * same time without any coordination, hence, a file is written under a temporary name and atomically moved over the
+ * previous one: a reader sees either the old or the new file, but never a missing or partially written one.
+ */
+class BinaryFiles {
+    /**
+     * Writes the content of a file.
+     */
+    interface Content {
+        void write(File tmp_file) throws IOException;
+    }
+
+    private BinaryFiles() {
+    }
+
+    /**
+     * Writes a file into a temporary file in the same directory, and moves it in place of the output file. The
+     * temporary file is removed in case the write fails.
+     *
+     * @param out_path
+     * @param content
+     * @throws IOException
+     */
+    static void writeAtomically(String out_path, Content content) throws IOException {
+        File out_file = new File(out_path).getAbsoluteFile();
+        File tmp_file = File.createTempFile(out_file.getName(), ".tmp", out_file.getParentFile());
+        try {
+            content.write(tmp_file);
+            try {
+                Files.move(tmp_file.toPath(), out_file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp_file.toPath(), out_file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp_file.toPath());
+        }
+    }
+
+    /**
+     * Writes the content of a buffer into a channel, and clears the buffer.
+     *
+     * @param buffer
+     * @param channel
+     * @throws IOException
+     */
+    static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Reads a limited number of bytes from the current position of a file channel.
+     */
+    static class ChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private final boolean close_channel;
+        private long remaining;
+
+        /**
+         * @param channel
+         * @param length        the number of bytes which are read.
+         * @param close_channel whether close closes the channel, otherwise it is left to the caller.
+         */
+        ChannelInputStream(FileChannel channel, long length, boolean close_channel) {
+            this.channel = channel;
+            this.remaining = length;
+            this.close_channel = close_channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (close_channel) {
+                channel.close();
+            }
+        }
+    }
+}
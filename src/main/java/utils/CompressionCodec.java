@@ -0,0 +1,38 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A compression format which can be detected from the first bytes of a file, and which can be used to read and write
+ * files. Codecs are registered in CompressionCodecs.
+ */
+public interface CompressionCodec {
+    /**
+     * The name of the codec, e.g. gzip.
+     *
+     * @return
+     */
+    String getName();
+
+    /**
+     * The file suffix of the codec including the dot, e.g. ".gz".
+     *
+     * @return
+     */
+    String getSuffix();
+
+    /**
+     * Check if the header of a file is in the format of this codec.
+     *
+     * @param header the first bytes of the file.
+     * @param length the number of bytes in the header, which can be less than the array length for short files.
+     * @return
+     */
+    boolean matches(byte[] header, int length);
+
+    InputStream decompress(InputStream in) throws IOException;
+
+    OutputStream compress(OutputStream out) throws IOException;
+}
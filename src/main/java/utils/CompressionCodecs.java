@@ -0,0 +1,267 @@
+package utils;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The registry of the compression codecs. When reading, the codec of a file is detected from its magic bytes, hence,
+ * the file suffix does not matter. When writing, the codec is determined by the file suffix.
+ * <p>
+ * The built-in codecs are gzip (.gz), bzip2 (.bz2), zip (.zip), zstd (.zst) and lz4 (.lz4). Concatenated streams,
+ * e.g. from appending to a compressed file, are read entirely for all of them except zip.
+ */
+public class CompressionCodecs {
+    //the number of bytes needed by the codecs to detect their format.
+    public static final int HEADER_LENGTH = 16;
+
+    public static final CompressionCodec GZIP = new CompressionCodec() {
+        @Override
+        public String getName() {
+            return "gzip";
+        }
+
+        @Override
+        public String getSuffix() {
+            return ".gz";
+        }
+
+        @Override
+        public boolean matches(byte[] header, int length) {
+            return startsWith(header, length, 0x1f, 0x8b, 0x08);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in, 1 << 16);
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, 1 << 16);
+        }
+    };
+
+    public static final CompressionCodec BZIP2 = new CompressionCodec() {
+        @Override
+        public String getName() {
+            return "bzip2";
+        }
+
+        @Override
+        public String getSuffix() {
+            return ".bz2";
+        }
+
+        @Override
+        public boolean matches(byte[] header, int length) {
+            //the header is followed either by the magic of the first block or by the end of stream magic.
+            return length >= 10 && startsWith(header, length, 'B', 'Z', 'h') && header[3] >= '1' && header[3] <= '9'
+                    && (matchesAt(header, length, 4, 0x31, 0x41, 0x59, 0x26, 0x53, 0x59) || matchesAt(header, length, 4, 0x17, 0x72, 0x45, 0x38, 0x50, 0x90));
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new BZip2CompressorInputStream(in, true);
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            return new BZip2CompressorOutputStream(out);
+        }
+    };
+
+    public static final CompressionCodec ZIP = new CompressionCodec() {
+        @Override
+        public String getName() {
+            return "zip";
+        }
+
+        @Override
+        public String getSuffix() {
+            return ".zip";
+        }
+
+        @Override
+        public boolean matches(byte[] header, int length) {
+            return startsWith(header, length, 'P', 'K', 3, 4);
+        }
+
+        /**
+         * Returns the content of the first entry.
+         */
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            ZipInputStream zip = new ZipInputStream(in);
+            if (zip.getNextEntry() == null) {
+                zip.close();
+                throw new IOException("Empty ZIP file");
+            }
+            return zip;
+        }
+
+        /**
+         * Writes the content as a single entry named "content".
+         */
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            zip.putNextEntry(new ZipEntry("content"));
+            return zip;
+        }
+    };
+
+    public static final CompressionCodec ZSTD = new CompressionCodec() {
+        @Override
+        public String getName() {
+            return "zstd";
+        }
+
+        @Override
+        public String getSuffix() {
+            return ".zst";
+        }
+
+        @Override
+        public boolean matches(byte[] header, int length) {
+            return startsWith(header, length, 0x28, 0xb5, 0x2f, 0xfd);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new ZstdInputStream(in);
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            return new ZstdOutputStream(out, zstd_level);
+        }
+    };
+
+    public static final CompressionCodec LZ4 = new CompressionCodec() {
+        @Override
+        public String getName() {
+            return "lz4";
+        }
+
+        @Override
+        public String getSuffix() {
+            return ".lz4";
+        }
+
+        @Override
+        public boolean matches(byte[] header, int length) {
+            return startsWith(header, length, 0x04, 0x22, 0x4d, 0x18);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new FramedLZ4CompressorInputStream(in, true);
+        }
+
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            return new LZ4FrameOutputStream(out);
+        }
+    };
+
+    //the zstd compression level, the default level 3 is faster than gzip while compressing better.
+    public static int zstd_level = Integer.getInteger("zstd.level", 3);
+
+    private static final List<CompressionCodec> codecs = new CopyOnWriteArrayList<>();
+
+    static {
+        register(GZIP);
+        register(BZIP2);
+        register(ZIP);
+        register(ZSTD);
+        register(LZ4);
+    }
+
+    /**
+     * Registers an additional codec. Codecs registered later take precedence for the same file suffix.
+     *
+     * @param codec
+     */
+    public static void register(CompressionCodec codec) {
+        codecs.add(0, codec);
+    }
+
+    /**
+     * Returns the codec for a file suffix, e.g. "data.tsv.zst" returns the zstd codec.
+     *
+     * @param path
+     * @return the codec or null in case the suffix does not belong to any codec.
+     */
+    public static CompressionCodec forSuffix(String path) {
+        String lower_path = path.toLowerCase();
+        for (CompressionCodec codec : codecs) {
+            if (lower_path.endsWith(codec.getSuffix())) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the codec for a file header.
+     *
+     * @param header
+     * @param length
+     * @return the codec or null in case the header does not belong to any codec.
+     */
+    public static CompressionCodec detect(byte[] header, int length) {
+        for (CompressionCodec codec : codecs) {
+            if (codec.matches(header, length)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Detects the codec of a file from its first bytes.
+     *
+     * @param path
+     * @return the codec or null in case the file is not compressed, or it is empty.
+     * @throws IOException
+     */
+    public static CompressionCodec detect(String path) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        int length = 0;
+        try (InputStream in = new FileInputStream(path)) {
+            int read;
+            while (length < header.length && (read = in.read(header, length, header.length - length)) > 0) {
+                length += read;
+            }
+        }
+        return detect(header, length);
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... magic) {
+        return matchesAt(header, length, 0, magic);
+    }
+
+    private static boolean matchesAt(byte[] header, int length, int offset, int... magic) {
+        if (length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,465 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A tokenizer for delimited text files (e.g. TSV) which works directly on the bytes of the file. Lines are split
+ * into fields by a literal delimiter, and the fields are exposed as offsets into an internal byte buffer. Numeric
+ * fields can be parsed straight from the bytes, while Strings are materialized only for the fields the caller asks
+ * for, hence, reading a line allocates no objects at all.
+ * <p>
+ * The fields follow the semantics of String.split, i.e. trailing empty fields are not counted. Lines starting with
+ * "#" are considered as comments and are skipped by default. The file content is assumed to be UTF-8 encoded.
+ * <p>
+ * A typical usage is as follows:
+ * <pre>
+ *     DelimitedTokenizer tokenizer = new DelimitedTokenizer(path, "\t");
+ *     while (tokenizer.nextLine()) {
+ *         map.put(tokenizer.getInt(0), tokenizer.getInt(1));
+ *     }
+ *     tokenizer.close();
+ * </pre>
+ */
+public class DelimitedTokenizer implements Closeable {
+    private static final String REGEX_META_CHARS = ".$|()[]{}^?*+\\";
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private InputStream in;
+    private final byte[] delim;
+
+    //the buffer holding the current line, and the region [buf_pos, buf_limit) which is not consumed yet.
+    private byte[] buf = new byte[1 << 16];
+    private int buf_pos = 0;
+    private int buf_limit = 0;
+    private boolean eof = false;
+
+    //the start and end offsets of the fields of the current line.
+    private int[] field_start = new int[16];
+    private int[] field_end = new int[16];
+    private int field_count = 0;
+    private int line_start = 0;
+    private int line_end = 0;
+
+    private long line_number = 0;
+    private boolean skip_comments = true;
+
+    /**
+     * Opens a tokenizer over a (possibly compressed) file. The delimiter is given in the same form as for String.split,
+     * and must represent a literal delimiter, see literalDelimiter.
+     *
+     * @param path
+     * @param delim
+     * @throws IOException
+     */
+    public DelimitedTokenizer(String path, String delim) throws IOException {
+        this(FileUtils.getFileInputStream(path), literalDelimiter(delim));
+    }
+
+    public DelimitedTokenizer(InputStream in, byte[] delim) {
+        if (delim == null || delim.length == 0) {
+            throw new IllegalArgumentException("The delimiter must be a non empty literal.");
+        }
+        this.in = in;
+        this.delim = delim;
+    }
+
+    /**
+     * Converts a delimiter given as a regular expression (as used by String.split in the loaders of FileUtils) into
+     * its literal byte representation. In case the regular expression is not a simple literal, e.g. "\\s+", we return
+     * null and the caller needs to fall back to String.split.
+     *
+     * @param regex
+     * @return
+     */
+    public static byte[] literalDelimiter(String regex) {
+        if (regex == null || regex.isEmpty()) {
+            return null;
+        }
+        if (regex.length() == 2 && regex.charAt(0) == '\\') {
+            char c = regex.charAt(1);
+            if (c == 't') {
+                return new byte[]{'\t'};
+            }
+            if (c < 128 && !Character.isLetterOrDigit(c)) {
+                return new byte[]{(byte) c};
+            }
+            return null;
+        }
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (REGEX_META_CHARS.indexOf(c) != -1 || c == '\n' || c == '\r') {
+                return null;
+            }
+        }
+        return regex.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void setSkipComments(boolean skip_comments) {
+        this.skip_comments = skip_comments;
+    }
+
+    /**
+     * Advance to the next line of the file.
+     *
+     * @return false if there are no more lines.
+     * @throws IOException
+     */
+    public boolean nextLine() throws IOException {
+        while (readLine()) {
+            line_number++;
+            if (skip_comments && line_end > line_start && buf[line_start] == '#') {
+                continue;
+            }
+            splitFields();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of lines read so far, including the comment lines.
+     *
+     * @return
+     */
+    public long getLineNumber() {
+        return line_number;
+    }
+
+    /**
+     * The number of fields in the current line, where similar to String.split the trailing empty fields are ignored.
+     *
+     * @return
+     */
+    public int getFieldCount() {
+        return field_count;
+    }
+
+    /**
+     * Check if the current line is empty or consists only of whitespace characters.
+     *
+     * @return
+     */
+    public boolean isBlankLine() {
+        for (int i = line_start; i < line_end; i++) {
+            if (!isWhitespace(buf[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The buffer holding the bytes of the current line. The content of the buffer is valid only until the next call
+     * of nextLine.
+     *
+     * @return
+     */
+    public byte[] getBuffer() {
+        return buf;
+    }
+
+    public int getFieldStart(int field) {
+        checkField(field);
+        return field_start[field];
+    }
+
+    public int getFieldLength(int field) {
+        checkField(field);
+        return field_end[field] - field_start[field];
+    }
+
+    /**
+     * Materializes the field as a String.
+     *
+     * @param field
+     * @return
+     */
+    public String getString(int field) {
+        checkField(field);
+        return new String(buf, field_start[field], field_end[field] - field_start[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Materializes the entire current line as a String.
+     *
+     * @return
+     */
+    public String getLine() {
+        return new String(buf, line_start, line_end - line_start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses an int value from the field. Leading and trailing whitespaces are ignored.
+     *
+     * @param field
+     * @return
+     */
+    public int getInt(int field) {
+        long value = getLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Value out of int range: " + getString(field));
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a long value from the field. Leading and trailing whitespaces are ignored.
+     *
+     * @param field
+     * @return
+     */
+    public long getLong(int field) {
+        checkField(field);
+        int start = trimStart(field_start[field], field_end[field]);
+        int end = trimEnd(start, field_end[field]);
+
+        boolean negative = false;
+        if (start < end && (buf[start] == '-' || buf[start] == '+')) {
+            negative = buf[start] == '-';
+            start++;
+        }
+        if (start == end) {
+            throw new NumberFormatException("Empty numeric field at line " + line_number);
+        }
+
+        //accumulate the value negatively, so that Long.MIN_VALUE can be represented as well.
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long mult_min = limit / 10;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9 || value < mult_min || value * 10 < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+            }
+            value = value * 10 - digit;
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * Parses a double value from the field. Simple decimal numbers with up to 15 significant digits are parsed directly
+     * from the bytes, for which the result is exactly the same as the one of Double.parseDouble, whereas any other
+     * representation (exponents, NaN etc.) is delegated to Double.parseDouble.
+     *
+     * @param field
+     * @return
+     */
+    public double getDouble(int field) {
+        checkField(field);
+        int start = trimStart(field_start[field], field_end[field]);
+        int end = trimEnd(start, field_end[field]);
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fraction_digits = 0;
+        boolean seen_dot = false;
+        boolean seen_digit = false;
+        boolean valid = i < end;
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                seen_digit = true;
+                if (mantissa != 0 || b != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (seen_dot) {
+                    fraction_digits++;
+                }
+                if (digits > 15 || fraction_digits >= POWERS_OF_TEN.length) {
+                    valid = false;
+                    break;
+                }
+            } else if (b == '.' && !seen_dot) {
+                seen_dot = true;
+            } else {
+                valid = false;
+                break;
+            }
+        }
+
+        if (!valid || !seen_digit) {
+            return Double.parseDouble(new String(buf, start, end - start, StandardCharsets.UTF_8));
+        }
+        //both the mantissa and the power of ten are exactly representable, hence the division is correctly rounded.
+        double value = mantissa / POWERS_OF_TEN[fraction_digits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Check if the field equals to the given bytes.
+     *
+     * @param field
+     * @param value
+     * @return
+     */
+    public boolean fieldEquals(int field, byte[] value) {
+        checkField(field);
+        int length = field_end[field] - field_start[field];
+        if (length != value.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf[field_start[field] + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= field_count) {
+            throw new IndexOutOfBoundsException("Field " + field + " does not exist at line " + line_number);
+        }
+    }
+
+    private int trimStart(int start, int end) {
+        while (start < end && isWhitespace(buf[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimEnd(int start, int end) {
+        while (end > start && isWhitespace(buf[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f';
+    }
+
+    /**
+     * Finds the next line in the buffer, refilling the buffer from the stream when necessary. The line excludes the
+     * line terminator ("\n" or "\r\n").
+     *
+     * @return
+     * @throws IOException
+     */
+    private boolean readLine() throws IOException {
+        int scan_from = buf_pos;
+        while (true) {
+            for (int i = scan_from; i < buf_limit; i++) {
+                if (buf[i] == '\n') {
+                    setLine(buf_pos, i);
+                    buf_pos = i + 1;
+                    return true;
+                }
+            }
+            if (eof) {
+                if (buf_pos < buf_limit) {
+                    setLine(buf_pos, buf_limit);
+                    buf_pos = buf_limit;
+                    return true;
+                }
+                return false;
+            }
+            scan_from = buf_limit - buf_pos;
+            fill();
+        }
+    }
+
+    private void setLine(int start, int end) {
+        if (end > start && buf[end - 1] == '\r') {
+            end--;
+        }
+        line_start = start;
+        line_end = end;
+    }
+
+    /**
+     * Moves the unconsumed bytes to the beginning of the buffer, grows it if it is full, and reads more bytes.
+     *
+     * @throws IOException
+     */
+    private void fill() throws IOException {
+        int remaining = buf_limit - buf_pos;
+        if (buf_pos > 0) {
+            System.arraycopy(buf, buf_pos, buf, 0, remaining);
+            buf_pos = 0;
+            buf_limit = remaining;
+        }
+        if (buf_limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        int read = in == null ? -1 : in.read(buf, buf_limit, buf.length - buf_limit);
+        if (read == -1) {
+            eof = true;
+        } else {
+            buf_limit += read;
+        }
+    }
+
+    private void splitFields() {
+        field_count = 0;
+        int start = line_start;
+        if (delim.length == 1) {
+            byte d = delim[0];
+            for (int i = line_start; i < line_end; i++) {
+                if (buf[i] == d) {
+                    addField(start, i);
+                    start = i + 1;
+                }
+            }
+        } else {
+            int last = line_end - delim.length;
+            for (int i = line_start; i <= last; i++) {
+                if (matchesDelimiter(i)) {
+                    addField(start, i);
+                    start = i + delim.length;
+                    i = start - 1;
+                }
+            }
+        }
+        addField(start, line_end);
+
+        //similar to String.split, remove the trailing empty fields, however, an empty line has a single empty field.
+        if (line_end > line_start) {
+            while (field_count > 0 && field_end[field_count - 1] == field_start[field_count - 1]) {
+                field_count--;
+            }
+        }
+    }
+
+    private boolean matchesDelimiter(int pos) {
+        for (int j = 0; j < delim.length; j++) {
+            if (buf[pos + j] != delim[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addField(int start, int end) {
+        if (field_count == field_start.length) {
+            field_start = Arrays.copyOf(field_start, field_count * 2);
+            field_end = Arrays.copyOf(field_end, field_count * 2);
+        }
+        field_start[field_count] = start;
+        field_end[field_count] = end;
+        field_count++;
+    }
+}
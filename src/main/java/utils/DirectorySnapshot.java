@@ -0,0 +1,228 @@
+package utils;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * An in-memory snapshot of the files of a single directory with their sizes and modification times. The directory is
+ * listed once, after which existence checks are answered from memory instead of a stat call per file, which matters
+ * for directories with millions of files, or on network storage.
+ * <p>
+ * The snapshot is refreshed incrementally: in case the modification time of the directory has not changed no entries
+ * were added or removed, and otherwise only the names are listed again and only the new entries are looked up. Files
+ * created by the caller can be added directly through add. The methods are thread-safe.
+ */
+public class DirectorySnapshot {
+    //file systems with a coarse timestamp granularity might not change the directory time for changes within this time.
+    private static final long TIMESTAMP_GRANULARITY = 2000;
+
+    private final Path dir;
+    private final boolean with_attributes;
+
+    private final TObjectIntHashMap<String> names = new TObjectIntHashMap<>();
+    private String[] entry_names = new String[16];
+    private long[] sizes = new long[16];
+    private long[] mtimes = new long[16];
+    private int num_entries = 0;
+
+    private long dir_mtime = -1;
+    private long listing_time = -1;
+
+    public DirectorySnapshot(String dir) throws IOException {
+        this(dir, true);
+    }
+
+    /**
+     * @param dir
+     * @param with_attributes look up the sizes and modification times, otherwise only the names are listed, which
+     *                        avoids a stat call per entry in case only existence checks are needed.
+     * @throws IOException
+     */
+    public DirectorySnapshot(String dir, boolean with_attributes) throws IOException {
+        this.dir = Paths.get(dir).toAbsolutePath().normalize();
+        this.with_attributes = with_attributes;
+        refresh(true);
+    }
+
+    /**
+     * Updates the snapshot with the added and removed files. The sizes and modification times of the known files are
+     * only updated when the refresh is forced.
+     *
+     * @param force list and look up all the entries, even if the directory seems unchanged.
+     * @throws IOException
+     */
+    public synchronized void refresh(boolean force) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            clear();
+            dir_mtime = -1;
+            return;
+        }
+        long current_mtime = Files.getLastModifiedTime(dir).toMillis();
+        if (!force && current_mtime == dir_mtime && listing_time - dir_mtime > TIMESTAMP_GRANULARITY) {
+            return;
+        }
+        long time = System.currentTimeMillis();
+
+        Set<String> listed = new HashSet<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                listed.add(name);
+                if (force || !names.containsKey(name)) {
+                    lookup(entry, name);
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+
+        for (int i = num_entries - 1; i >= 0; i--) {
+            if (!listed.contains(entry_names[i])) {
+                remove(i);
+            }
+        }
+        dir_mtime = current_mtime;
+        listing_time = time;
+    }
+
+    public void refresh() throws IOException {
+        refresh(false);
+    }
+
+    /**
+     * Adds or updates a single entry of the directory, e.g. a file which was just created by the caller.
+     *
+     * @param name the file name within the directory.
+     * @throws IOException
+     */
+    public synchronized void add(String name) throws IOException {
+        lookup(dir.resolve(name), name);
+    }
+
+    private void lookup(Path entry, String name) throws IOException {
+        if (!with_attributes) {
+            put(name, -1, -1);
+            return;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            //the entry was removed in the meantime.
+            if (names.containsKey(name)) {
+                remove(names.get(name));
+            }
+            return;
+        }
+        long size = attributes.isDirectory() ? -1 : attributes.size();
+        put(name, size, attributes.lastModifiedTime().toMillis());
+    }
+
+    private void put(String name, long size, long mtime) {
+        int index;
+        if (names.containsKey(name)) {
+            index = names.get(name);
+        } else {
+            if (num_entries == entry_names.length) {
+                int capacity = entry_names.length * 2;
+                entry_names = Arrays.copyOf(entry_names, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                mtimes = Arrays.copyOf(mtimes, capacity);
+            }
+            index = num_entries++;
+            entry_names[index] = name;
+            names.put(name, index);
+        }
+        sizes[index] = size;
+        mtimes[index] = mtime;
+    }
+
+    /**
+     * Removes an entry by moving the last entry into its place.
+     */
+    private void remove(int index) {
+        names.remove(entry_names[index]);
+        int last = --num_entries;
+        if (index != last) {
+            entry_names[index] = entry_names[last];
+            sizes[index] = sizes[last];
+            mtimes[index] = mtimes[last];
+            names.put(entry_names[index], index);
+        }
+        entry_names[last] = null;
+    }
+
+    private void clear() {
+        names.clear();
+        Arrays.fill(entry_names, 0, num_entries, null);
+        num_entries = 0;
+    }
+
+    /**
+     * Checks if the directory contains an entry.
+     *
+     * @param name the file name within the directory.
+     * @return
+     */
+    public synchronized boolean contains(String name) {
+        return names.containsKey(name);
+    }
+
+    /**
+     * Checks if a path exists, where paths outside of the directory are checked on the file system.
+     *
+     * @param path
+     * @return
+     */
+    public boolean exists(String path) {
+        Path file = Paths.get(path);
+        Path parent = file.toAbsolutePath().normalize().getParent();
+        if (parent != null && parent.equals(dir)) {
+            return contains(file.getFileName().toString());
+        }
+        return new File(path).exists();
+    }
+
+    /**
+     * The size of a file in bytes.
+     *
+     * @param name
+     * @return the size, or -1 in case the entry does not exist, is a directory or the attributes are not looked up.
+     */
+    public synchronized long getSize(String name) {
+        return names.containsKey(name) ? sizes[names.get(name)] : -1;
+    }
+
+    /**
+     * The modification time of an entry in milliseconds.
+     *
+     * @param name
+     * @return the time, or -1 in case the entry does not exist or the attributes are not looked up.
+     */
+    public synchronized long getLastModified(String name) {
+        return names.containsKey(name) ? mtimes[names.get(name)] : -1;
+    }
+
+    /**
+     * The number of entries in the directory.
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return num_entries;
+    }
+
+    /**
+     * The names of all the entries.
+     *
+     * @return
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(Arrays.asList(entry_names).subList(0, num_entries));
+    }
+}
@@ -0,0 +1,251 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks a directory tree recursively and emits the paths of the files lazily, i.e. the files can be processed while the
+ * walk is still running. The subdirectories are listed in parallel on a fork/join pool, and the found paths are handed
+ * over to the consumer through a bounded queue, hence, the memory does not grow with the number of files.
+ * <p>
+ * The filters are applied at every level of the tree: the entry filter to both the files and the directories, where a
+ * rejected directory is not descended, and the file filter (e.g. a glob on the file name) only to the files.
+ * <p>
+ * The emitted paths are the root path as it is given, joined by "/" with the names of the entries below it, i.e. the
+ * same strings as when concatenating the names while walking with java.io.File. The order of the emitted paths is not
+ * deterministic. An iteration which is not run until the end should be closed,
+ * otherwise the walk stays blocked on the full queue.
+ */
+public class DirectoryWalker implements Iterable<String> {
+    private static final String END = new String("END");
+
+    private final String root_name;
+    private final Path root;
+    private Predicate<Path> entry_filter = path -> true;
+    private Predicate<Path> file_filter = path -> true;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int queue_size = 1 << 14;
+
+    public DirectoryWalker(String root) {
+        this.root_name = root;
+        this.root = Paths.get(root);
+    }
+
+    /**
+     * Sets the filter for the files and directories at every level of the tree. Rejected directories are not descended.
+     *
+     * @param entry_filter
+     * @return
+     */
+    public DirectoryWalker setEntryFilter(Predicate<Path> entry_filter) {
+        this.entry_filter = entry_filter;
+        return this;
+    }
+
+    /**
+     * Sets the filter of the emitted files.
+     *
+     * @param file_filter
+     * @return
+     */
+    public DirectoryWalker setFileFilter(Predicate<Path> file_filter) {
+        this.file_filter = file_filter;
+        return this;
+    }
+
+    /**
+     * Emits only the files whose name matches a glob pattern, e.g. "*.gz" or "file_[0-9]*.html".
+     *
+     * @param glob
+     * @return
+     */
+    public DirectoryWalker setFileGlob(String glob) {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        return setFileFilter(path -> matcher.matches(path.getFileName()));
+    }
+
+    /**
+     * The number of threads which list the directories.
+     *
+     * @param parallelism
+     * @return
+     */
+    public DirectoryWalker setParallelism(int parallelism) {
+        this.parallelism = Math.max(parallelism, 1);
+        return this;
+    }
+
+    /**
+     * The number of found paths which are held until the consumer takes them.
+     *
+     * @param queue_size
+     * @return
+     */
+    public DirectoryWalker setQueueSize(int queue_size) {
+        this.queue_size = Math.max(queue_size, 1);
+        return this;
+    }
+
+    /**
+     * Starts a new walk. Errors while listing a directory are thrown as UncheckedIOException once all the other paths
+     * are emitted.
+     *
+     * @return
+     */
+    @Override
+    public Walk iterator() {
+        return new Walk();
+    }
+
+    /**
+     * Starts a new walk as a stream, which stops the walk once it is closed.
+     *
+     * @return
+     */
+    public Stream<String> stream() {
+        Walk walk = iterator();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(walk, Spliterator.NONNULL | Spliterator.DISTINCT), false).onClose(walk::close);
+    }
+
+    /**
+     * A single walk over the directory tree.
+     */
+    public class Walk implements Iterator<String>, Closeable {
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(queue_size);
+        private final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        private final AtomicReference<IOException> error = new AtomicReference<>();
+        private volatile boolean closed = false;
+        private String next;
+        private boolean finished = false;
+
+        private Walk() {
+            pool.execute(() -> {
+                try {
+                    if (Files.isDirectory(root)) {
+                        new DirectoryTask(root, root_name).invoke();
+                    } else if (Files.exists(root) && file_filter.test(root)) {
+                        emit(root_name);
+                    }
+                } finally {
+                    emit(END);
+                }
+            });
+        }
+
+        private void emit(String path) {
+            try {
+                while (!closed && !queue.offer(path, 100, TimeUnit.MILLISECONDS)) {
+                    //wait until the consumer takes the next path, or the walk is closed.
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Lists a single directory, and forks a task for each of its subdirectories.
+         */
+        private class DirectoryTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final Path dir;
+            private final String dir_name;
+
+            DirectoryTask(Path dir, String dir_name) {
+                this.dir = dir;
+                this.dir_name = dir_name;
+            }
+
+            @Override
+            protected void compute() {
+                List<DirectoryTask> subtasks = new ArrayList<>();
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                    for (Path entry : entries) {
+                        if (closed) {
+                            return;
+                        }
+                        if (!entry_filter.test(entry)) {
+                            continue;
+                        }
+                        String entry_name = dir_name + "/" + entry.getFileName();
+                        if (Files.isDirectory(entry)) {
+                            DirectoryTask subtask = new DirectoryTask(entry, entry_name);
+                            subtask.fork();
+                            subtasks.add(subtask);
+                        } else if (file_filter.test(entry)) {
+                            emit(entry_name);
+                        }
+                    }
+                } catch (IOException | DirectoryIteratorException e) {
+                    error.compareAndSet(null, e instanceof IOException ? (IOException) e : ((DirectoryIteratorException) e).getCause());
+                } finally {
+                    for (DirectoryTask subtask : subtasks) {
+                        subtask.quietlyJoin();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new IllegalStateException("Interrupted while walking " + root, e);
+            }
+            if (next == END) {
+                next = null;
+                finished = true;
+                pool.shutdown();
+                if (error.get() != null) {
+                    throw new UncheckedIOException(error.get());
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String path = next;
+            next = null;
+            return path;
+        }
+
+        /**
+         * Stops the walk, the paths which are not yet emitted are skipped.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            finished = true;
+            next = null;
+            queue.clear();
+            pool.shutdown();
+        }
+    }
+}
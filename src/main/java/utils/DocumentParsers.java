@@ -59,7 +59,7 @@ public class DocumentParsers {
         List<TaggedWord> sentence3 = new ArrayList<>();
         for (String s : tmp) {
             String[] key_tag = s.split("_");
-            sentence3.add(new TaggedWord(key_tag[0].intern(), key_tag[1].intern()));
+            sentence3.add(new TaggedWord(Interner.current().intern(key_tag[0]), Interner.current().intern(key_tag[1])));
         }
         Tree parse = lp.parse(sentence3);
         return parse.toString();
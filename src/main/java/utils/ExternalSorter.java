@@ -0,0 +1,464 @@
+package utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Sorts the lines of a delimited file by one or more key columns, for files which do not fit into memory. The file is
+ * read in runs of at most max_run_chars chars, which are sorted and spilled to temporary files on several threads,
+ * and the runs are merged in a k-way merge. The runs are optionally compressed, e.g. with lz4, which trades CPU for
+ * disk I/O.
+ * <p>
+ * The sort is stable, i.e. lines with equal keys keep the order of the input file. The key of a line consists of its
+ * key columns joined by the delimiter, and the keys are compared as Strings. The sorted lines are streamed through
+ * Lines, or grouped by their key through Groups, which holds only a single group in memory. Hence, the group-by-key
+ * loaders of FileUtils can process files that are much larger than the heap. The temporary runs are deleted once the
+ * iteration is finished or closed.
+ */
+public class ExternalSorter {
+    private final String delim;
+    private final int[] key_columns;
+
+    private long max_run_chars = 1 << 25;
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int max_fan_in = 64;
+    private String temp_dir = System.getProperty("java.io.tmpdir");
+    private String run_suffix = "";
+    private boolean skip_comments = true;
+
+    /**
+     * @param delim       the delimiter of the columns, which is matched literally and not as a regex.
+     * @param key_columns the columns of the key in the order in which they are compared, by default the first column.
+     */
+    public ExternalSorter(String delim, int... key_columns) {
+        this.delim = delim;
+        this.key_columns = key_columns.length == 0 ? new int[]{0} : key_columns.clone();
+    }
+
+    /**
+     * The maximal number of chars of a run, where a run is held in memory by each of the sorting threads.
+     *
+     * @param max_run_chars
+     * @return
+     */
+    public ExternalSorter setMaxRunChars(long max_run_chars) {
+        this.max_run_chars = Math.max(max_run_chars, 1);
+        return this;
+    }
+
+    /**
+     * The number of threads which sort and write the runs.
+     *
+     * @param threads
+     * @return
+     */
+    public ExternalSorter setThreads(int threads) {
+        this.threads = Math.max(threads, 1);
+        return this;
+    }
+
+    /**
+     * The maximal number of runs which are merged at once, more runs are merged in several passes.
+     *
+     * @param max_fan_in
+     * @return
+     */
+    public ExternalSorter setMaxFanIn(int max_fan_in) {
+        this.max_fan_in = Math.max(max_fan_in, 2);
+        return this;
+    }
+
+    public ExternalSorter setTempDir(String temp_dir) {
+        this.temp_dir = temp_dir;
+        return this;
+    }
+
+    /**
+     * Compresses the runs with the codec of the suffix, e.g. ".lz4" or ".gz" (see CompressionCodecs).
+     *
+     * @param run_suffix the suffix, or null or an empty string for uncompressed runs.
+     * @return
+     */
+    public ExternalSorter setRunCompression(String run_suffix) {
+        this.run_suffix = run_suffix == null ? "" : run_suffix;
+        return this;
+    }
+
+    /**
+     * Set whether lines starting with "#" are skipped, as in LineCursor.
+     *
+     * @param skip_comments
+     * @return
+     */
+    public ExternalSorter setSkipComments(boolean skip_comments) {
+        this.skip_comments = skip_comments;
+        return this;
+    }
+
+    /**
+     * Extracts the key of a line, where missing columns are empty.
+     *
+     * @param line
+     * @return
+     */
+    public String getKey(String line) {
+        if (key_columns.length == 1) {
+            return getColumn(line, key_columns[0]);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < key_columns.length; i++) {
+            if (i > 0) {
+                sb.append(delim);
+            }
+            sb.append(getColumn(line, key_columns[i]));
+        }
+        return sb.toString();
+    }
+
+    private String getColumn(String line, int column) {
+        int start = 0;
+        for (int i = 0; i < column; i++) {
+            int pos = line.indexOf(delim, start);
+            if (pos < 0) {
+                return "";
+            }
+            start = pos + delim.length();
+        }
+        int end = line.indexOf(delim, start);
+        return line.substring(start, end < 0 ? line.length() : end);
+    }
+
+    /**
+     * Sorts a file into an output file, which is compressed in case its path has a compression suffix.
+     *
+     * @param in_path
+     * @param out_path
+     * @throws IOException
+     */
+    public void sort(String in_path, String out_path) throws IOException {
+        try (Lines lines = sort(in_path)) {
+            writeLines(lines, out_path);
+        }
+    }
+
+    /**
+     * Sorts a file, and streams its sorted lines.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public Lines sort(String path) throws IOException {
+        List<File> runs = createRuns(path);
+        try {
+            while (runs.size() > max_fan_in) {
+                List<File> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += max_fan_in) {
+                    List<File> group = runs.subList(i, Math.min(i + max_fan_in, runs.size()));
+                    if (group.size() == 1) {
+                        merged.add(group.get(0));
+                        continue;
+                    }
+                    File run = createRunFile();
+                    merged.add(run);
+                    try (Lines lines = new Lines(new ArrayList<>(group))) {
+                        writeLines(lines, run.getPath());
+                    }
+                }
+                runs = merged;
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteRuns(runs);
+            throw e;
+        }
+        return new Lines(runs);
+    }
+
+    /**
+     * Sorts a file, and streams its lines grouped by their keys.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public Groups group(String path) throws IOException {
+        return new Groups(sort(path));
+    }
+
+    private File createRunFile() throws IOException {
+        return Files.createTempFile(Paths.get(temp_dir), "sort-run-", run_suffix).toFile();
+    }
+
+    /**
+     * Opens a run with the codec it was written with. Unlike FileUtils.getFileInputStream, the content is not
+     * sniffed and is never decompressed on a thread pool of its own, as many runs are open at the same time.
+     *
+     * @param run
+     * @return
+     * @throws IOException
+     */
+    private static InputStream openRun(File run) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(run), 1 << 16);
+        CompressionCodec codec = CompressionCodecs.forSuffix(run.getPath());
+        if (codec == null) {
+            return in;
+        }
+        try {
+            return codec.decompress(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private void writeLines(Iterator<String> lines, String out_path) throws IOException {
+        OutputStream stream = CompressionCodecs.forSuffix(out_path) == null ? new FileOutputStream(out_path) : FileUtils.getFileOutputStream(out_path, false);
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16)) {
+            while (lines.hasNext()) {
+                writer.write(lines.next());
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Reads the input in runs, which are sorted and written on the worker threads. At most one run per thread is
+     * held in memory at a time, besides the one that is being read.
+     */
+    private List<File> createRuns(String path) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Semaphore permits = new Semaphore(threads);
+        List<Future<File>> futures = new ArrayList<>();
+        try (LineCursor cursor = new LineCursor()) {
+            cursor.setSkipComments(skip_comments);
+            cursor.open(FileUtils.getFileReader(path));
+
+            List<String> run = new ArrayList<>();
+            long run_chars = 0;
+            for (String line : cursor) {
+                run.add(line);
+                run_chars += line.length();
+                if (run_chars >= max_run_chars) {
+                    submitRun(executor, permits, futures, run);
+                    run = new ArrayList<>();
+                    run_chars = 0;
+                }
+            }
+            if (!run.isEmpty() || futures.isEmpty()) {
+                submitRun(executor, permits, futures, run);
+            }
+
+            List<File> runs = new ArrayList<>();
+            IOException error = null;
+            for (Future<File> future : futures) {
+                try {
+                    runs.add(future.get());
+                } catch (ExecutionException e) {
+                    error = error != null ? error : e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+            if (error != null) {
+                deleteRuns(runs);
+                throw error;
+            }
+            return runs;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sorting " + path);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submitRun(ExecutorService executor, Semaphore permits, List<Future<File>> futures, List<String> lines) throws InterruptedException {
+        permits.acquire();
+        futures.add(executor.submit(() -> {
+            try {
+                return writeRun(lines);
+            } finally {
+                permits.release();
+            }
+        }));
+    }
+
+    /**
+     * Sorts the lines of a run by their keys, and writes them into a temporary file.
+     */
+    private File writeRun(List<String> lines) throws IOException {
+        String[][] records = new String[lines.size()][];
+        for (int i = 0; i < records.length; i++) {
+            String line = lines.get(i);
+            records[i] = new String[]{getKey(line), line};
+        }
+        lines.clear();
+        //the sort of objects is stable, hence, the lines with equal keys keep their order.
+        Arrays.sort(records, (a, b) -> a[0].compareTo(b[0]));
+
+        File run = createRunFile();
+        try {
+            writeLines(Arrays.stream(records).map(record -> record[1]).iterator(), run.getPath());
+        } catch (IOException | RuntimeException e) {
+            run.delete();
+            throw e;
+        }
+        return run;
+    }
+
+    private static void deleteRuns(List<File> runs) {
+        for (File run : runs) {
+            run.delete();
+        }
+    }
+
+    /**
+     * The lines of several sorted runs, merged through a priority queue over the current line of each run. For equal
+     * keys the run which was created first comes first, which keeps the sort stable.
+     */
+    public class Lines implements Iterator<String>, Iterable<String>, Closeable {
+        private final List<File> runs;
+        private final PriorityQueue<Run> queue;
+        private final List<Run> open_runs = new ArrayList<>();
+
+        private Lines(List<File> runs) {
+            this.runs = runs;
+            this.queue = new PriorityQueue<>(Math.max(runs.size(), 1), (a, b) -> {
+                int cmp = a.key.compareTo(b.key);
+                return cmp != 0 ? cmp : Integer.compare(a.index, b.index);
+            });
+            try {
+                for (int i = 0; i < runs.size(); i++) {
+                    LineCursor cursor = new LineCursor();
+                    cursor.setSkipComments(false);
+                    cursor.open(new BufferedReader(new InputStreamReader(openRun(runs.get(i)), StandardCharsets.UTF_8), 1 << 16));
+                    Run run = new Run(cursor, i);
+                    open_runs.add(run);
+                    if (run.advance()) {
+                        queue.add(run);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (queue.isEmpty()) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Run run = queue.poll();
+            String line = run.line;
+            if (run.advance()) {
+                queue.add(run);
+            }
+            return line;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return this;
+        }
+
+        /**
+         * Closes the runs and deletes their files.
+         */
+        @Override
+        public void close() {
+            queue.clear();
+            for (Run run : open_runs) {
+                run.cursor.close();
+            }
+            open_runs.clear();
+            deleteRuns(runs);
+        }
+    }
+
+    private class Run {
+        final LineCursor cursor;
+        final int index;
+        String line;
+        String key;
+
+        Run(LineCursor cursor, int index) {
+            this.cursor = cursor;
+            this.index = index;
+        }
+
+        boolean advance() {
+            if (!cursor.hasNext()) {
+                return false;
+            }
+            line = cursor.next();
+            key = getKey(line);
+            return true;
+        }
+    }
+
+    /**
+     * The lines of a sorted file grouped by their keys, where the lines of a group are in the order of the input file.
+     */
+    public class Groups implements Iterator<Map.Entry<String, List<String>>>, Iterable<Map.Entry<String, List<String>>>, Closeable {
+        private final Lines lines;
+        private String next_line;
+        private String next_key;
+
+        private Groups(Lines lines) {
+            this.lines = lines;
+            advance();
+        }
+
+        private void advance() {
+            if (lines.hasNext()) {
+                next_line = lines.next();
+                next_key = getKey(next_line);
+            } else {
+                next_line = null;
+                next_key = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next_line != null;
+        }
+
+        @Override
+        public Map.Entry<String, List<String>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String key = next_key;
+            List<String> group = new ArrayList<>();
+            while (next_line != null && next_key.equals(key)) {
+                group.add(next_line);
+                advance();
+            }
+            return new AbstractMap.SimpleImmutableEntry<>(key, group);
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, List<String>>> iterator() {
+            return this;
+        }
+
+        @Override
+        public void close() {
+            next_line = null;
+            lines.close();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package utils;
 
+import gnu.trove.TIntHashSet;
 import gnu.trove.TIntIntHashMap;
 import org.apache.commons.compress.compressors.CompressorException;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
@@ -11,48 +12,59 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
+import java.nio.charset.Charset;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 public class FileUtils {
+    //the number of threads used to decompress bz2 and gz files, with a single thread the files are decompressed as a plain stream.
+    public static int decompression_threads = Integer.getInteger("decompression.threads", Runtime.getRuntime().availableProcessors());
+    //files smaller than this are always decompressed in a single thread.
+    public static long parallel_decompression_min_size = 1 << 23;
+    //the suffix of the compression codec used by saveCompressedText for files without a known compression suffix, e.g. gz or zst.
+    public static String default_compression = System.getProperty("compression.codec", "gz");
+    //the number of chunks getFileReader reads ahead on a background thread, 0 disables the read-ahead.
+    public static int prefetch_depth = Integer.getInteger("prefetch.depth", 0);
+    //the number of chars in a read-ahead chunk.
+    public static int prefetch_chunk_size = Integer.getInteger("prefetch.chunk.size", 1 << 16);
+    //the distance in lines between the offsets of the line index used by readLargeText.
+    public static int line_index_sample = Integer.getInteger("line.index.sample", 1024);
+
+    //the long-lived writers opened through getAsyncWriter, which are closed at the latest when the JVM exits.
+    private static final Map<String, AsyncFileWriter> async_writers = new java.util.concurrent.ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(FileUtils::closeAsyncWriters));
+    }
+
     /*
-     * Gets the set of file names, from any directory structure recursively.
+     * Gets the set of file names, from any directory structure recursively. For large directory trees which should be
+     * processed while they are walked, use DirectoryWalker directly.
      */
-
     public static void getFilesList(String path, Set<String> filelist) {
-        File dir = new File(path);
-        if (dir.isFile()) {
-            filelist.add(path);
-        } else if (dir.isDirectory()) {
-            String[] list = dir.list();
-            for (String item : list) {
-                getFilesList(path + "/" + item, filelist);
-            }
-        }
+        addWalkedFiles(new DirectoryWalker(path), filelist);
     }
 
     /*
-     * Gets the set of file names, from any directory structure recursively.
+     * Gets the set of file names, from any directory structure recursively, where the entries directly under the
+     * given directory have to contain the filter in their name.
      */
     public static void getFilesList(String path, Set<String> filelist, String filter) {
-        File dir = new File(path);
-        if (dir.isFile()) {
-            filelist.add(path);
-        } else if (dir.isDirectory()) {
-            String[] list = dir.list();
-            for (String item : list) {
-                if (!item.contains(filter)) {
-                    continue;
-                }
+        java.nio.file.Path root = java.nio.file.Paths.get(path);
+        addWalkedFiles(new DirectoryWalker(path).setEntryFilter(entry -> !entry.getParent().equals(root) || entry.getFileName().toString().contains(filter)), filelist);
+    }
 
-                getFilesList(path + "/" + item, filelist);
+    private static void addWalkedFiles(DirectoryWalker walker, Set<String> filelist) {
+        try {
+            for (String file : walker) {
+                filelist.add(file);
             }
+        } catch (UncheckedIOException e) {
+            e.printStackTrace();
         }
     }
 
@@ -60,6 +72,9 @@ public class FileUtils {
      * Write textual content into a file.
      */
     public static void addTextualContentToFile(String content, String path) {
+        if (writeToAsyncWriter(content, path)) {
+            return;
+        }
         try {
             BufferedWriter writer = new BufferedWriter(new FileWriter(path, true));
             writer.append(content);
@@ -93,11 +108,16 @@ public class FileUtils {
 
     }
 
+    /*
+     * Saves textual data into a compressed file, where the codec is determined by the file suffix (.gz, .bz2, .zst,
+     * .lz4, .zip). For any other suffix the default_compression codec is used. Appending adds a new compressed stream
+     * at the end of the file, which is read entirely by getFileReader, except for ZIP files, which cannot be appended
+     * to. For large outputs which should be readable in parallel use RollingFileWriter instead.
+     */
     public static void saveCompressedText(String text, String path, boolean append) {
         BufferedWriter writer = null;
         try {
-            GZIPOutputStream zip = new GZIPOutputStream(new FileOutputStream(new File(path), append));
-            writer = new BufferedWriter(new OutputStreamWriter(zip, "UTF-8"));
+            writer = new BufferedWriter(new OutputStreamWriter(getFileOutputStream(path, append), "UTF-8"));
 
             writer.write(text);
             writer.flush();
@@ -111,6 +131,9 @@ public class FileUtils {
      * Saves textual data content, into a file.
      */
     public static void saveText(String text, String path, boolean append) {
+        if (append && writeToAsyncWriter(text, path)) {
+            return;
+        }
         try {
             BufferedWriter writer = new BufferedWriter(new FileWriter(path, append));
             writer.append(text);
@@ -121,6 +144,80 @@ public class FileUtils {
         }
     }
 
+    /*
+     * Returns the shared asynchronous writer which appends to a file, and opens it in case there is none. While the
+     * writer is open, saveText with append and addTextualContentToFile for the same path go through the writer, so
+     * that the content is not reordered. The writer is closed through closeAsyncWriter or closeAsyncWriters. The text
+     * is encoded with the platform charset, as in the synchronous writes through FileWriter.
+     */
+    public static AsyncFileWriter getAsyncWriter(String path) throws IOException {
+        try {
+            return async_writers.compute(path, (key, writer) -> {
+                if (writer != null && !writer.isClosed()) {
+                    return writer;
+                }
+                try {
+                    return new AsyncFileWriter(key, true, 1 << 23, Charset.defaultCharset());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /*
+     * Flushes and closes the shared asynchronous writer of a file, if there is one.
+     */
+    public static void closeAsyncWriter(String path) throws IOException {
+        AsyncFileWriter writer = async_writers.get(path);
+        if (writer == null) {
+            return;
+        }
+        //the writer stays registered until its queue is written, such that concurrent appends wait for it.
+        try {
+            writer.close();
+        } finally {
+            async_writers.remove(path, writer);
+        }
+    }
+
+    /*
+     * Flushes and closes all the shared asynchronous writers.
+     */
+    public static void closeAsyncWriters() {
+        for (String path : new ArrayList<>(async_writers.keySet())) {
+            try {
+                closeAsyncWriter(path);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static boolean writeToAsyncWriter(String text, String path) {
+        AsyncFileWriter writer = async_writers.get(path);
+        if (writer == null) {
+            return false;
+        }
+        try {
+            writer.write(text);
+        } catch (Exception e) {
+            if (writer.isClosed()) {
+                //the writer is being closed, the text is written synchronously once the queued text is written.
+                try {
+                    writer.close();
+                } catch (IOException close_error) {
+                    //reported to the caller which closed the writer.
+                }
+                return false;
+            }
+            e.printStackTrace();
+        }
+        return true;
+    }
+
     /*
      * Writes the content of an object, into a file.
      */
@@ -135,6 +232,20 @@ public class FileUtils {
         }
     }
 
+    /*
+     * Writes the content of an object into a file in the binary snapshot format (see Snapshots), which is optionally
+     * compressed in blocks, and which is read back through readObject. Unlike saveObject, the snapshot does not keep
+     * the object identity: an object referenced several times is written, and loaded, as separate copies, and cyclic
+     * references are not supported.
+     */
+    public static void saveSnapshot(Object obj, String path, boolean compressed) {
+        try {
+            Snapshots.save(obj, path, compressed);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     public static boolean fileExists(String path, boolean isDebug) {
         boolean rst = new File(path).exists();
 
@@ -160,11 +271,14 @@ public class FileUtils {
 
     /*
      * Reads the object content from a file, and later from the called method is 
-     * casted to the correct type.
+     * casted to the correct type. The file can be either a snapshot file or a Java serialized object.
      */
     public static Object readObject(String path) {
         if (fileExists(path, false)) {
             try {
+                if (Snapshots.isSnapshot(path)) {
+                    return Snapshots.load(path);
+                }
                 ObjectInputStream in = new ObjectInputStream(new FileInputStream(path));
                 Object obj = in.readObject();
 
@@ -211,78 +325,205 @@ public class FileUtils {
      * 
      */
     public static String readText(String path) {
-        try {
-            StringBuffer sb = new StringBuffer();
-            BufferedReader reader = getFileReader(path);
-            while (reader.ready()) {
-                String line = reader.readLine();
-                if (line.startsWith("#")) {
-                    continue;
-                }
+        return readText(getLineCursor(path));
+    }
 
-                sb.append(line);
-                sb.append("\n");
-            }
-            reader.close();
-            return sb.toString();
-        } catch (Exception e) {
-            System.out.printf("Error reading file %s with message %s\n", path, e.getMessage());
+    /*
+     * Reads all the remaining lines of a cursor into a single string.
+     */
+    private static String readText(LineCursor cursor) {
+        StringBuffer sb = new StringBuffer();
+        for (String line : cursor) {
+            sb.append(line);
+            sb.append("\n");
         }
-        return "";
+        return sb.toString();
     }
 
     /*
-   * Reads the textual contents from a file.
-   *
-   */
+     * Reads the textual contents from a file into chunks of 5000 lines.
+     */
     public static List<String> readLargeText(String path) {
-        List<String> lst_results = new ArrayList<String>();
+        return readTextChunks(new LineCursor(getPrefetchingFileReader(path, Math.max(prefetch_depth, 4), prefetch_chunk_size)));
+    }
+
+    /**
+     * Reads the textual contents of one of num_partitions byte-balanced partitions of an uncompressed file into chunks
+     * of 5000 lines. The partitions start and end on line boundaries through the line index of the file (see
+     * getLineIndex), hence, several threads or processes can each read their own partition of the same file.
+     *
+     * @param path
+     * @param partition      the partition, from 0 to num_partitions - 1.
+     * @param num_partitions
+     * @return the chunks, which are empty in case the file has fewer partitions.
+     */
+    public static List<String> readLargeText(String path, int partition, int num_partitions) {
+        LineIndex index = getLineIndex(path, line_index_sample);
+        if (index == null) {
+            return null;
+        }
+        List<LineIndex.Partition> partitions = index.getPartitions(num_partitions);
+        if (partition >= partitions.size()) {
+            return new ArrayList<>();
+        }
         try {
-            StringBuffer sb = new StringBuffer();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path)));
-            int counter = 0;
-            while (reader.ready()) {
-                String line = reader.readLine();
-                if (line.startsWith("#")) {
-                    continue;
-                }
+            return readTextChunks(new LineCursor(partitions.get(partition).getReader()));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /*
+     * Reads the lines of a cursor into chunks of 5000 lines.
+     */
+    private static List<String> readTextChunks(LineCursor cursor) {
+        List<String> lst_results = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        int counter = 0;
+        for (String line : cursor) {
+            sb.append(line);
+            sb.append("\n");
+            counter++;
+
+            if (counter == 5000) {
+                lst_results.add(sb.toString());
+                sb.setLength(0);
+                counter = 0;
+            }
+        }
 
-                sb.append(line);
-                sb.append("\n");
-                counter += 2;
+        lst_results.add(sb.toString());
+        return lst_results;
+    }
 
-                if (counter == 10000) {
-                    lst_results.add(sb.toString());
-                    sb.delete(0, sb.length());
-                    counter = 0;
+    /**
+     * Returns the line index of an uncompressed file, which is built once next to the file and reloaded from there as
+     * long as the file is not modified (see LineIndex). In case the index cannot be saved next to the file, the built
+     * index is returned nevertheless.
+     *
+     * @param path
+     * @param sample the distance in lines between the indexed offsets.
+     * @return
+     */
+    public static LineIndex getLineIndex(String path, int sample) {
+        String index_path = path + ".lidx";
+        try {
+            if (!isOutdated(index_path, path)) {
+                try {
+                    LineIndex index = LineIndex.open(index_path, path);
+                    if (index.getSample() == sample) {
+                        return index;
+                    }
+                } catch (IOException e) {
+                    //the index does not match the file anymore, hence, it is rebuilt.
                 }
             }
+            LineIndex index = LineIndex.build(path, sample);
+            try {
+                index.save(index_path);
+            } catch (IOException e) {
+                //e.g. the directory is read-only, the index is only kept in memory.
+                e.printStackTrace();
+            }
+            return index;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
 
-            lst_results.add(sb.toString());
-            reader.close();
-            return lst_results;
+    public static BufferedReader getFileReader(String path) {
+        if (prefetch_depth > 0) {
+            return getPrefetchingFileReader(path, prefetch_depth, prefetch_chunk_size);
+        }
+        try {
+            return new BufferedReader(new InputStreamReader(getFileInputStream(path)));
         } catch (Exception e) {
             e.printStackTrace();
         }
         return null;
     }
 
-    public static BufferedReader getFileReader(String path) {
+    /**
+     * Returns a reader which reads and decodes the file on a background thread, up to depth chunks of chunk_size
+     * chars ahead of the caller. The reader must be closed, or read until the end, to release the background thread.
+     *
+     * @param path
+     * @param depth
+     * @param chunk_size
+     * @return
+     */
+    public static BufferedReader getPrefetchingFileReader(String path, int depth, int chunk_size) {
         try {
-            if (path.endsWith(".gz")) {
-                return getCompressedFileReader(path);
-            } else if (path.endsWith("bz2")) {
-                return getBZip2CompressedFileReader(path);
-            } else if (path.toLowerCase().endsWith("zip")) {
-                return getZIPCompressedFileReader(path);
-            }
-            return new BufferedReader(new InputStreamReader(new FileInputStream(path)));
+            return new BufferedReader(new PrefetchingReader(new InputStreamReader(getFileInputStream(path)), depth, chunk_size));
         } catch (Exception e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * Returns the decompressed byte stream of a file. The compression codec (gzip, bzip2, zip, zstd, lz4) is
+     * detected from the first bytes of the file (see CompressionCodecs), otherwise the file is read as is. Large bz2
+     * and gz files are decompressed on decompression_threads threads.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static InputStream getFileInputStream(String path) throws IOException {
+        CompressionCodec codec = CompressionCodecs.detect(path);
+        if (codec == null) {
+            return new FileInputStream(path);
+        }
+
+        boolean parallel = decompression_threads > 1 && new File(path).length() >= parallel_decompression_min_size;
+        if (parallel && codec == CompressionCodecs.GZIP) {
+            return ParallelGzipInputStream.open(new FileInputStream(path), decompression_threads);
+        } else if (parallel && codec == CompressionCodecs.BZIP2) {
+            return new ParallelBZip2InputStream(new FileInputStream(path), decompression_threads);
+        } else if (codec == CompressionCodecs.ZIP) {
+            return getFirstZipEntryInputStream(path);
+        }
+        return codec.decompress(new BufferedInputStream(new FileInputStream(path), 1 << 16));
+    }
+
+    /**
+     * Returns a compressed output stream for a file, where the codec is determined by the file suffix (see
+     * CompressionCodecs). For any other suffix the default_compression codec is used.
+     *
+     * @param path
+     * @param append
+     * @return
+     * @throws IOException in case the file is a non-empty ZIP file and append is set.
+     */
+    public static OutputStream getFileOutputStream(String path, boolean append) throws IOException {
+        CompressionCodec codec = CompressionCodecs.forSuffix(path);
+        if (codec == null) {
+            codec = CompressionCodecs.forSuffix("." + default_compression);
+        }
+        if (codec == null) {
+            throw new IOException("Unknown compression codec " + default_compression);
+        }
+        if (append && codec == CompressionCodecs.ZIP && new File(path).length() > 0) {
+            //a second archive after the central directory of the first one would be ignored by every reader.
+            throw new IOException("Cannot append to the ZIP file " + path);
+        }
+        return codec.compress(new BufferedOutputStream(new FileOutputStream(path, append), 1 << 16));
+    }
+
+    /**
+     * Returns a streaming cursor over the lines of a file. The file can be compressed (gz, bz2, zip), in which
+     * case it is decompressed on the fly through getFileReader.
+     *
+     * @param path
+     * @return
+     */
+    public static LineCursor getLineCursor(String path) {
+        return new LineCursor(path);
+    }
+
     public static BufferedReader getBZip2CompressedFileReader(String path) throws IOException, CompressorException {
 
         FileInputStream in = new FileInputStream(path);
@@ -294,7 +535,7 @@ public class FileUtils {
 
     public static BufferedReader getCompressedFileReader(String data_path) {
         try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(data_path))));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(getFileInputStream(data_path)));
             return reader;
         } catch (Exception e) {
             e.printStackTrace();
@@ -302,39 +543,54 @@ public class FileUtils {
         return null;
     }
 
+    /*
+     * Returns a reader over the first entry of a ZIP file, the ZIP file is closed together with the reader. For
+     * archives with several entries use getZipEntries.
+     */
     public static BufferedReader getZIPCompressedFileReader(String data_path) {
         try {
-            ZipFile zipFile = new ZipFile(data_path);
-
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                InputStream stream = zipFile.getInputStream(entry);
-                return new BufferedReader(new InputStreamReader(stream));
-            }
+            return new BufferedReader(new InputStreamReader(getFirstZipEntryInputStream(data_path)));
         } catch (Exception e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /*
+     * Returns the content of the first entry of a ZIP file as a stream, which closes the ZIP file when it is closed.
+     */
+    private static InputStream getFirstZipEntryInputStream(String path) throws IOException {
+        ZipFile zipFile = new ZipFile(path);
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        if (!entries.hasMoreElements()) {
+            zipFile.close();
+            throw new IOException("Empty ZIP file " + path);
+        }
+        return new FilterInputStream(zipFile.getInputStream(entries.nextElement())) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    zipFile.close();
+                }
+            }
+        };
+    }
+
+    /*
+     * Returns all the entries of a ZIP archive as (entry name, reader) pairs, which can be iterated or processed in
+     * parallel through ZipEntries.forEach.
+     */
+    public static ZipEntries getZipEntries(String path) throws IOException {
+        return new ZipEntries(path);
+    }
+
 
     public static String readText(String path, String utf) {
         try {
-            StringBuffer sb = new StringBuffer();
             BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), utf));
-            while (reader.ready()) {
-                String line = reader.readLine();
-                if (line.startsWith("#")) {
-                    continue;
-                }
-
-                sb.append(line);
-                sb.append("\n");
-            }
-            reader.close();
-            return sb.toString();
+            return readText(new LineCursor(reader));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -342,30 +598,47 @@ public class FileUtils {
     }
 
     public static String readText(String path, boolean compressed) {
-        try {
-            StringBuffer sb = new StringBuffer();
-            BufferedReader reader = null;
-            if (compressed) {
-                reader = getCompressedFileReader(path);
-            } else {
-                reader = getFileReader(path);
-            }
+        return readText(getLineCursor(path, compressed));
+    }
 
-            while (reader.ready()) {
-                String line = reader.readLine();
-                if (line.startsWith("#")) {
-                    continue;
-                }
+    /*
+     * Returns a line cursor over a file, where in case compressed=true the file is read as a compressed file.
+     */
+    private static LineCursor getLineCursor(String path, boolean compressed) {
+        return compressed ? new LineCursor(getCompressedFileReader(path)) : getLineCursor(path);
+    }
+
+    /*
+     * Applies the case normalization of the set loaders to a single line.
+     */
+    private static String normalizeLine(String line, boolean changeCase) {
+        return changeCase ? line.trim().toLowerCase() : line;
+    }
+
+    /*
+     * Adds the items of each line, split based on a specific delimiter, into a set. Lines are always considered
+     * as item boundaries, hence, for the delimiter "\n" every line is a single item.
+     */
+    private static Set<String> readIntoSet(LineCursor cursor, String delim, boolean changeCase) {
+        return readIntoSet(cursor, delim, changeCase, new HashSet<String>());
+    }
 
-                sb.append(line);
-                sb.append("\n");
+    private static <T extends Set<String>> T readIntoSet(LineCursor cursor, String delim, boolean changeCase, T rst) {
+        forEachSetItem(cursor, delim, changeCase, rst::add);
+        return rst;
+    }
+
+    private static void forEachSetItem(LineCursor cursor, String delim, boolean changeCase, java.util.function.Consumer<String> consumer) {
+        boolean is_line_delim = delim.equals("\n");
+        for (String line : cursor) {
+            if (is_line_delim) {
+                consumer.accept(normalizeLine(line, changeCase));
+                continue;
+            }
+            for (String s : line.split(delim)) {
+                consumer.accept(normalizeLine(s, changeCase));
             }
-            reader.close();
-            return sb.toString();
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-        return "";
     }
 
     /**
@@ -377,8 +650,24 @@ public class FileUtils {
      */
     public static Map<String, Map<String, Double>> readMatrix(String path, String delim) {
         Map<String, Map<String, Double>> matrix = new TreeMap<String, Map<String, Double>>();
-        String[] str_lines = FileUtils.readText(path).split("\n");
-        for (String line : str_lines) {
+        if (DelimitedTokenizer.literalDelimiter(delim) != null) {
+            try (DelimitedTokenizer tokenizer = new DelimitedTokenizer(path, delim)) {
+                while (tokenizer.nextLine()) {
+                    String row = tokenizer.getString(0);
+                    Map<String, Double> sub_matrix = matrix.get(row);
+                    if (sub_matrix == null) {
+                        sub_matrix = new TreeMap<String, Double>();
+                        matrix.put(row, sub_matrix);
+                    }
+                    sub_matrix.put(tokenizer.getString(1), tokenizer.getDouble(2));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return matrix;
+        }
+
+        for (String line : getLineCursor(path)) {
             String[] data = line.split(delim);
             Map<String, Double> sub_matrix = matrix.get(data[0]);
             sub_matrix = sub_matrix == null ? new TreeMap<String, Double>() : sub_matrix;
@@ -389,6 +678,55 @@ public class FileUtils {
         return matrix;
     }
 
+    /**
+     * Reads a matrix from a delimited file with the columns <row, column, value> into a compact CSR matrix, instead of
+     * the nested maps of readMatrix. The binary matrix is built once next to the input file, under a name which carries
+     * the delimiter, and reloaded from there without parsing as long as the input file is not modified.
+     *
+     * @param path
+     * @param delim
+     * @param mapped map the binary matrix into memory instead of reading it onto the heap.
+     * @return
+     */
+    public static SparseMatrix readSparseMatrix(String path, String delim, boolean mapped) {
+        String matrix_path = path + cacheKey(delim) + ".spm";
+        try {
+            if (isOutdated(matrix_path, path)) {
+                buildSparseMatrix(path, delim).save(matrix_path);
+            }
+            return SparseMatrix.open(matrix_path, mapped);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Reads a matrix from a delimited file with the columns <row, column, value> into a CSR matrix on the heap.
+     *
+     * @param path
+     * @param delim
+     * @return
+     * @throws IOException
+     */
+    public static SparseMatrix buildSparseMatrix(String path, String delim) throws IOException {
+        SparseMatrix.Builder builder = new SparseMatrix.Builder();
+        if (DelimitedTokenizer.literalDelimiter(delim) != null) {
+            try (DelimitedTokenizer tokenizer = new DelimitedTokenizer(path, delim)) {
+                while (tokenizer.nextLine()) {
+                    builder.put(tokenizer.getString(0), tokenizer.getString(1), tokenizer.getDouble(2));
+                }
+            }
+            return builder.build();
+        }
+
+        for (String line : getLineCursor(path)) {
+            String[] data = line.split(delim);
+            builder.put(data[0], data[1], Double.parseDouble(data[2]));
+        }
+        return builder.build();
+    }
+
     /*
      * Reads the textual contents from a file into  a set split based on a specific delimeter.
      */
@@ -398,35 +736,54 @@ public class FileUtils {
             return null;
         }
 
-        Set<String> rst = new HashSet<String>();
+        return readIntoSet(getLineCursor(path), delim, changeCase);
+    }
 
-        String content = readText(path);
-        String[] tmp = content.split(delim);
-        for (String s : tmp) {
-            if (changeCase) {
-                rst.add(s.trim().toLowerCase());
-            } else {
-                rst.add(s);
-            }
+    /*
+     * Reads the textual contents from a file into  a set split based on a specific delimeter.
+     */
+
+    public static Set<Integer> readIntoIntSet(String path, String delim) {
+        TIntHashSet values = readIntoTIntSet(path, delim);
+        if (values == null) {
+            return null;
         }
 
+        Set<Integer> rst = new HashSet<Integer>();
+        for (int value : values.toArray()) {
+            rst.add(value);
+        }
         return rst;
     }
 
     /*
-     * Reads the textual contents from a file into  a set split based on a specific delimeter.
+     * Reads the textual contents from a file into a primitive int set split based on a specific delimeter.
      */
 
-    public static Set<Integer> readIntoIntSet(String path, String delim) {
+    public static TIntHashSet readIntoTIntSet(String path, String delim) {
         if (!FileUtils.fileExists(path, true)) {
             return null;
         }
 
-        Set<Integer> rst = new HashSet<Integer>();
+        TIntHashSet rst = new TIntHashSet();
+        if (DelimitedTokenizer.literalDelimiter(delim) != null) {
+            try (DelimitedTokenizer tokenizer = new DelimitedTokenizer(path, delim)) {
+                while (tokenizer.nextLine()) {
+                    for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+                        try {
+                            rst.add(tokenizer.getInt(i));
+                        } catch (NumberFormatException e) {
+                            System.out.printf("[UTILS] Error converting to int value %s\n", tokenizer.getString(i));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return rst;
+        }
 
-        String content = readText(path);
-        String[] tmp = content.split(delim);
-        for (String s : tmp) {
+        for (String s : readIntoSet(getLineCursor(path), delim, false)) {
             try {
                 rst.add(Integer.valueOf(s.trim()));
             } catch (Exception e) {
@@ -446,19 +803,7 @@ public class FileUtils {
             return null;
         }
 
-        Set<String> rst = new HashSet<String>();
-
-        String content = readText(path, compressed);
-        String[] tmp = content.split(delim);
-        for (String s : tmp) {
-            if (changeCase) {
-                rst.add(s.trim().toLowerCase());
-            } else {
-                rst.add(s);
-            }
-        }
-
-        return rst;
+        return readIntoSet(getLineCursor(path, compressed), delim, changeCase);
     }
 
      /*
@@ -472,11 +817,16 @@ public class FileUtils {
 
         Map<String, Integer> rst = new HashMap<String, Integer>();
 
-        String content = readText(path, compressed);
-        String[] tmp = content.split(delim);
         int counter = 0;
-        for (String s : tmp) {
-            rst.put(s, counter++);
+        boolean is_line_delim = delim.equals("\n");
+        for (String line : getLineCursor(path, compressed)) {
+            if (is_line_delim) {
+                rst.put(line, counter++);
+                continue;
+            }
+            for (String s : line.split(delim)) {
+                rst.put(s, counter++);
+            }
         }
 
         return rst;
@@ -486,10 +836,10 @@ public class FileUtils {
      * Reads the textual contents from a file into  a Map<String, String> split based on a specific delimeter.
      */
     public static Map<String, String> readIntoStringMap(String path, String delim, boolean changeCase, boolean ignoreSchema) {
-        Set<String> lines = readIntoSet(path, "\n", changeCase);
         Map<String, String> rst = new TreeMap<String, String>();
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
             String[] tmp = line.split(delim);
             if (ignoreSchema && tmp.length != 2) {
                 rst.put(tmp[0].trim(), null);
@@ -505,10 +855,97 @@ public class FileUtils {
      * Reads the textual contents from a file into  a Map<String, String> split based on a specific delimeter.
      */
     public static Map<String, String> readIntoStringMap(String path, String delim, boolean changeCase) {
-        Set<String> lines = readIntoSet(path, "\n", changeCase);
         Map<String, String> rst = new TreeMap<String, String>();
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
+            String[] tmp = line.split(delim);
+            if (tmp.length == 2) {
+                rst.put(tmp[0].trim(), tmp[1]);
+            }
+        }
+
+        return rst;
+    }
+
+    /**
+     * Reads the textual contents of a file into a set for contains checks, following the same semantics as
+     * readIntoSet, which is backed by a Bloom filter instead of the strings themselves (see MembershipSet). Optionally
+     * the hits of the filter are confirmed through an exact memory mapped dictionary. The filter and the dictionary are
+     * built once next to the input file, under names which carry the delimiter and the false positive rate, and are
+     * rebuilt only if the input file has changed.
+     *
+     * @param path
+     * @param delim
+     * @param changeCase
+     * @param false_positive_rate the false positive rate of the filter.
+     * @param exact               confirm the hits of the filter, so that contains has no false positives.
+     * @return
+     */
+    public static MembershipSet readIntoMembershipSet(String path, String delim, boolean changeCase, double false_positive_rate, boolean exact) {
+        if (!FileUtils.fileExists(path, true)) {
+            return null;
+        }
+        String base_path = path + (changeCase ? ".lc" : "");
+        String filter_path = base_path + cacheKey(delim, false_positive_rate) + ".bloom";
+        String dict_path = base_path + cacheKey(delim) + ".set.mdict";
+        try {
+            if (isOutdated(filter_path, path) || (exact && isOutdated(dict_path, path))) {
+                MappedDictionary.Builder builder = exact ? new MappedDictionary.Builder(MappedDictionary.INT_VALUES) : null;
+                long[] num_items = new long[1];
+                forEachSetItem(getLineCursor(path), delim, changeCase, s -> {
+                    num_items[0]++;
+                    if (builder != null) {
+                        builder.put(s, 0);
+                    }
+                });
+
+                BloomFilter filter = new BloomFilter(num_items[0], false_positive_rate);
+                forEachSetItem(getLineCursor(path), delim, changeCase, filter::add);
+                filter.save(filter_path);
+                if (builder != null) {
+                    builder.write(dict_path);
+                }
+            }
+            return new MembershipSet(BloomFilter.open(filter_path, true), exact ? MappedDictionary.openIntMap(dict_path) : null);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Reads the textual contents of a file into a set, following the same semantics as readIntoSet, where the strings
+     * are stored compactly as UTF-8 bytes (see StringArena).
+     *
+     * @param path
+     * @param delim
+     * @param changeCase
+     * @return
+     */
+    public static ArenaStringSet readIntoArenaSet(String path, String delim, boolean changeCase) {
+        if (!FileUtils.fileExists(path, true)) {
+            return null;
+        }
+
+        return readIntoSet(getLineCursor(path), delim, changeCase, new ArenaStringSet());
+    }
+
+    /**
+     * Reads a delimited file into a Map<String, String>, following the same semantics as readIntoStringMap, where the
+     * keys and values are stored compactly as UTF-8 bytes (see StringArena). Different from readIntoStringMap the
+     * entries are iterated in the order of the file and not sorted.
+     *
+     * @param path
+     * @param delim
+     * @param changeCase
+     * @return
+     */
+    public static ArenaStringMap readIntoArenaStringMap(String path, String delim, boolean changeCase) {
+        ArenaStringMap rst = new ArenaStringMap();
+
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
             String[] tmp = line.split(delim);
             if (tmp.length == 2) {
                 rst.put(tmp[0].trim(), tmp[1]);
@@ -522,10 +959,10 @@ public class FileUtils {
      * Reads the textual contents from a file into  a Map<String, String> split based on a specific delimeter.
      */
     public static Map<Integer, String> readIntoIntStringMap(String path, String delim, boolean changeCase) {
-        Set<String> lines = readIntoSet(path, "\n", changeCase);
         Map<Integer, String> rst = new HashMap<Integer, String>();
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
             String[] tmp = line.split(delim);
             if (tmp.length == 2) {
                 rst.put(Integer.valueOf(tmp[0].trim()), tmp[1]);
@@ -539,10 +976,22 @@ public class FileUtils {
      * Reads the textual contents from a file into  a Map<String, String> split based on a specific delimeter.
      */
     public static Map<String, Double> readIntoStringDoubleMap(String path, String delim, boolean changeCase) {
-        String[] lines = readText(path).split("\n");
         Map<String, Double> rst = new HashMap<String, Double>();
+        if (DelimitedTokenizer.literalDelimiter(delim) != null) {
+            try (DelimitedTokenizer tokenizer = new DelimitedTokenizer(path, delim)) {
+                while (tokenizer.nextLine()) {
+                    if (tokenizer.isBlankLine()) {
+                        continue;
+                    }
+                    rst.put(tokenizer.getString(0).trim(), tokenizer.getDouble(1));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return rst;
+        }
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
             if (line.trim().isEmpty()) {
                 continue;
             }
@@ -558,10 +1007,10 @@ public class FileUtils {
      * Reads the textual contents from a file into  a Map<String, String> split based on a specific delimeter.
      */
     public static Map<Double, Double> readIntoDoubleMap(String path, String delim, boolean changeCase) {
-        Set<String> lines = readIntoSet(path, "\n", changeCase);
         Map<Double, Double> rst = new TreeMap<Double, Double>();
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
             String[] tmp = line.split(delim);
             rst.put(Double.parseDouble(tmp[0].trim()), Double.parseDouble(tmp[1]));
         }
@@ -573,10 +1022,10 @@ public class FileUtils {
      * Reads the textual contents from a file into  a Map<String, String> split based on a specific delimeter.
      */
     public static Map<String, Integer> readIntoStringIntMap(String path, String delim, boolean changeCase) {
-        Set<String> lines = readIntoSet(path, "\n", changeCase);
         Map<String, Integer> rst = new TreeMap<String, Integer>();
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
             String[] tmp = line.split(delim);
             rst.put(tmp[0].trim(), Integer.valueOf(tmp[1]));
         }
@@ -588,10 +1037,17 @@ public class FileUtils {
      */
 
     public static TIntIntHashMap readIntoIntMap(String path, String delim) {
-        String[] lines = readText(path).split("\n");
         TIntIntHashMap rst = new TIntIntHashMap();
+        if (DelimitedTokenizer.literalDelimiter(delim) != null) {
+            try (DelimitedTokenizer tokenizer = new DelimitedTokenizer(path, delim)) {
+                readIntoIntMap(tokenizer, rst);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return rst;
+        }
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
             String[] tmp = line.split(delim);
             if (line.trim().isEmpty() || tmp.length != 2) {
                 continue;
@@ -604,16 +1060,38 @@ public class FileUtils {
         return rst;
     }
 
+    /*
+     * Reads the int pairs of the two column lines of a tokenizer into a map.
+     */
+    private static void readIntoIntMap(DelimitedTokenizer tokenizer, TIntIntHashMap rst) throws IOException {
+        while (tokenizer.nextLine()) {
+            if (tokenizer.getFieldCount() != 2 || tokenizer.isBlankLine()) {
+                continue;
+            }
+            rst.put(tokenizer.getInt(0), tokenizer.getInt(1));
+        }
+    }
+
     /*
      * Reads the textual contents from a file into  a Map<String, String> split based on a specific delimeter.
      */
 
     public static TIntIntHashMap readCompressedIntoIntMap(String path, String delim) {
+        byte[] literal_delim = DelimitedTokenizer.literalDelimiter(delim);
+        if (literal_delim != null) {
+            TIntIntHashMap rst = new TIntIntHashMap();
+            try (DelimitedTokenizer tokenizer = new DelimitedTokenizer(getFileInputStream(path), literal_delim)) {
+                readIntoIntMap(tokenizer, rst);
+                return rst;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+
         try {
             TIntIntHashMap rst = new TIntIntHashMap();
-            BufferedReader reader = getCompressedFileReader(path);
-            while (reader.ready()) {
-                String line = reader.readLine();
+            for (String line : getLineCursor(path, true)) {
                 String[] tmp = line.split(delim);
                 if (line.trim().isEmpty() || tmp.length != 2) {
                     continue;
@@ -634,10 +1112,10 @@ public class FileUtils {
      * Reads the textual contents from a file into  a Map<String, String> split based on a specific delimeter.
      */
     public static Map<String, String> readIntoStringMap(String path, String delim, boolean changeCase, String filter) {
-        Set<String> lines = readIntoSet(path, "\n", changeCase);
         Map<String, String> rst = new TreeMap<String, String>();
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
             String[] tmp = line.split(delim);
             if (!filter.contains(tmp[1])) {
                 continue;
@@ -649,6 +1127,146 @@ public class FileUtils {
         return rst;
     }
 
+    /**
+     * Reads a delimited file into a memory mapped Map<String, String>, following the same semantics as
+     * readIntoStringMap. The binary dictionary is built once next to the input file, under a name which carries the
+     * delimiter, and is rebuilt only if the input file has changed, hence, every subsequent call only maps the binary
+     * file into memory.
+     *
+     * @param path
+     * @param delim
+     * @param changeCase
+     * @return
+     */
+    public static MappedDictionary<String> readIntoMappedStringMap(String path, String delim, boolean changeCase) {
+        String dict_path = path + (changeCase ? ".lc" : "") + cacheKey(delim) + ".str.mdict";
+        try {
+            if (isOutdated(dict_path, path)) {
+                buildMappedStringMap(path, delim, changeCase, dict_path);
+            }
+            return MappedDictionary.openStringMap(dict_path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Reads a delimited file into a memory mapped Map<String, Integer>, following the same semantics as
+     * readIntoStringIntMap. The binary dictionary is built once next to the input file.
+     *
+     * @param path
+     * @param delim
+     * @param changeCase
+     * @return
+     */
+    public static MappedDictionary<Integer> readIntoMappedStringIntMap(String path, String delim, boolean changeCase) {
+        String dict_path = path + (changeCase ? ".lc" : "") + cacheKey(delim) + ".int.mdict";
+        try {
+            if (isOutdated(dict_path, path)) {
+                buildMappedStringIntMap(path, delim, changeCase, dict_path);
+            }
+            return MappedDictionary.openIntMap(dict_path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Reads the items of a file into a memory mapped Map<String, Integer>, where each item is mapped to its position
+     * in the file, following the same semantics as readIntoIndexedSet. The binary dictionary is built once next to the
+     * input file.
+     *
+     * @param path
+     * @param delim
+     * @param compressed
+     * @return
+     */
+    public static MappedDictionary<Integer> readIntoMappedIndexedSet(String path, String delim, boolean compressed) {
+        if (!FileUtils.fileExists(path, true)) {
+            return null;
+        }
+        String dict_path = path + cacheKey(delim) + ".idx.mdict";
+        try {
+            if (isOutdated(dict_path, path)) {
+                MappedDictionary.Builder builder = new MappedDictionary.Builder(MappedDictionary.INT_VALUES);
+                int counter = 0;
+                boolean is_line_delim = delim.equals("\n");
+                for (String line : getLineCursor(path, compressed)) {
+                    if (is_line_delim) {
+                        builder.put(line, counter++);
+                        continue;
+                    }
+                    for (String s : line.split(delim)) {
+                        builder.put(s, counter++);
+                    }
+                }
+                builder.write(dict_path);
+            }
+            return MappedDictionary.openIntMap(dict_path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Builds a binary memory mapped dictionary from a delimited file with two columns <key, value>.
+     *
+     * @param path
+     * @param delim
+     * @param changeCase
+     * @param dict_path
+     * @throws IOException
+     */
+    public static void buildMappedStringMap(String path, String delim, boolean changeCase, String dict_path) throws IOException {
+        MappedDictionary.Builder builder = new MappedDictionary.Builder(MappedDictionary.STRING_VALUES);
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
+            String[] tmp = line.split(delim);
+            if (tmp.length == 2) {
+                builder.put(tmp[0].trim(), tmp[1]);
+            }
+        }
+        builder.write(dict_path);
+    }
+
+    /**
+     * Builds a binary memory mapped dictionary from a delimited file with two columns <key, int value>.
+     *
+     * @param path
+     * @param delim
+     * @param changeCase
+     * @param dict_path
+     * @throws IOException
+     */
+    public static void buildMappedStringIntMap(String path, String delim, boolean changeCase, String dict_path) throws IOException {
+        MappedDictionary.Builder builder = new MappedDictionary.Builder(MappedDictionary.INT_VALUES);
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
+            String[] tmp = line.split(delim);
+            builder.put(tmp[0].trim(), Integer.valueOf(tmp[1]));
+        }
+        builder.write(dict_path);
+    }
+
+    /*
+     * Returns the part of the name of a file derived from a source file which identifies the parameters it was built
+     * with, such that a derived file is not reused for a call with different parameters.
+     */
+    private static String cacheKey(Object... params) {
+        return "." + Integer.toHexString(Arrays.deepHashCode(params));
+    }
+
+    /*
+     * Checks whether a file derived from a source file does not exist or is older than the source file.
+     */
+    private static boolean isOutdated(String derived_path, String source_path) {
+        File derived = new File(derived_path);
+        return !derived.exists() || derived.lastModified() < new File(source_path).lastModified();
+    }
+
     public static void getDirList(String path, Set<String> dirlist) {
         File dir = new File(path);
         File[] dirs = dir.listFiles((FileFilter) DirectoryFileFilter.DIRECTORY);
@@ -661,10 +1279,10 @@ public class FileUtils {
      * Reads the textual contents from a file into  a Map<String, String> split based on a specific delimeter.
      */
     public static Map<String, Entry<String, String>> readIntoEntryMap(String path, String delim, boolean changeCase) {
-        Set<String> lines = readIntoSet(path, "\n", changeCase);
         Map<String, Entry<String, String>> rst = new TreeMap<String, Entry<String, String>>();
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
 
             String[] tmp = line.split(delim);
             if (tmp.length < 3) {
@@ -681,9 +1299,9 @@ public class FileUtils {
      * Reads the textual contents from a file into  a Map<String, String> split based on a specific delimeter.
      */
     public static void readIntoEntryMap1(Map<String, Entry<String, String>> rst, String path, String delim, boolean changeCase) {
-        Set<String> lines = readIntoSet(path, "\n", changeCase);
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
             String[] tmp = line.split(delim);
             if (tmp.length < 3) {
                 continue;
@@ -702,9 +1320,9 @@ public class FileUtils {
      * Reads the textual contents from a file into  a Map<String, String> split based on a specific delimeter.
      */
     public static Map<String, Entry<String, String>> readIntoEntryMap(Map<String, Entry<String, String>> rst, String path, String delim, boolean changeCase) {
-        Set<String> lines = readIntoSet(path, "\n", changeCase);
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
+            line = normalizeLine(line, changeCase);
 
             String[] tmp = line.split(delim);
             if (tmp.length < 3) {
@@ -724,12 +1342,13 @@ public class FileUtils {
     public static Set<String> readIntoSetFileNames(String path) {
         Set<String> rst = new HashSet<String>();
 
-        Set<String> tmp = new HashSet<String>();
-        getFilesList(path, tmp);
-
-        for (String file : tmp) {
-            String s = file.substring(file.lastIndexOf("/") + 1).trim();
-            rst.add(s);
+        try {
+            for (String file : new DirectoryWalker(path)) {
+                String s = file.substring(file.lastIndexOf("/") + 1).trim();
+                rst.add(s);
+            }
+        } catch (UncheckedIOException e) {
+            e.printStackTrace();
         }
 
         return rst;
@@ -745,10 +1364,9 @@ public class FileUtils {
      * @return
      */
     public static Map<String, List<String>> readMapList(String path, String delim, String delim_1) {
-        String[] lines = readText(path).split("\n");
         Map<String, List<String>> map_list = new TreeMap<String, List<String>>();
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
             String[] data = line.split(delim);
 
             List<String> list = new ArrayList<String>();
@@ -772,10 +1390,9 @@ public class FileUtils {
      * @return
      */
     public static Map<String, Set<String>> readMapSet(String path, String delim, String delim_1) {
-        String[] lines = readText(path).split("\n");
         Map<String, Set<String>> map_list = new TreeMap<>();
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
             String[] data = line.split(delim);
 
             Set<String> list = new HashSet<>();
@@ -798,10 +1415,9 @@ public class FileUtils {
      * @return
      */
     public static Map<String, Set<String>> readMapSet(String path, String delim) {
-        String[] lines = readText(path).split("\n");
         Map<String, Set<String>> map_list = new HashMap<>();
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
             String[] data = line.split(delim);
             if (data.length != 2) {
                 continue;
@@ -815,6 +1431,99 @@ public class FileUtils {
         return map_list;
     }
 
+    /**
+     * Streams the lines of a delimited file grouped by their key columns, where the lines of each group are in the
+     * order of the file. The file is sorted externally (see ExternalSorter), hence, only a single group is held in
+     * memory, which is the alternative to readMapSet and readMapList for files that do not fit into memory. The
+     * returned groups must be closed, or read until the end, to delete the temporary sorted runs.
+     *
+     * @param path
+     * @param delim       the delimiter, which is matched literally.
+     * @param key_columns the columns of the key, by default the first column.
+     * @return
+     */
+    public static ExternalSorter.Groups getGroupedLines(String path, String delim, int... key_columns) {
+        try {
+            return new ExternalSorter(delim, key_columns).group(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Sorts a delimited file by its key columns into out_path, which is compressed in case it has a compression
+     * suffix. The sort is stable and runs in bounded memory (see ExternalSorter).
+     *
+     * @param path
+     * @param out_path
+     * @param delim       the delimiter, which is matched literally.
+     * @param key_columns the columns of the key, by default the first column.
+     */
+    public static void sortFile(String path, String out_path, String delim, int... key_columns) {
+        try {
+            new ExternalSorter(delim, key_columns).sort(path, out_path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Joins delimited files on their first column with a streaming merge-join (see MergeJoin), instead of loading one
+     * of the files through readIntoStringMap. Each row is written as the lines of the files concatenated with the
+     * delimiter, where the lines of missing files in a LEFT join are empty. The output is compressed in case out_path
+     * has a compression suffix.
+     *
+     * @param out_path
+     * @param delim  the delimiter, which is matched literally.
+     * @param type   INNER or LEFT.
+     * @param sorted whether the files are sorted by their first column, otherwise they are sorted externally first.
+     * @param paths
+     */
+    public static void joinFiles(String out_path, String delim, MergeJoin.Type type, boolean sorted, String... paths) {
+        MergeJoin join = new MergeJoin(delim).setSorted(sorted);
+        for (String path : paths) {
+            join.addInput(path, 0);
+        }
+        try (MergeJoin.Rows rows = join.rows(type);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(CompressionCodecs.forSuffix(out_path) == null ? new FileOutputStream(out_path) : getFileOutputStream(out_path, false), "UTF-8"))) {
+            for (String[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) {
+                        writer.write(delim);
+                    }
+                    writer.write(row[i] == null ? "" : row[i]);
+                }
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads a delimited file with the columns <key, target> into a compact CSR structure, instead of the boxed sets of
+     * readIntMapSet. The binary file is built once next to the input file in two passes over the input, under a name
+     * which carries the delimiter, and reopened from there as long as the input file is not modified.
+     *
+     * @param path
+     * @param delim
+     * @param mapped map the binary file into memory instead of reading it onto the heap.
+     * @return
+     */
+    public static IntAdjacency readIntAdjacency(String path, String delim, boolean mapped) {
+        String adjacency_path = path + cacheKey(delim) + ".adj";
+        try {
+            if (isOutdated(adjacency_path, path)) {
+                IntAdjacency.build(path, delim, adjacency_path);
+            }
+            return IntAdjacency.open(adjacency_path, mapped);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
     /**
      * Reads a text file into a map data structures. The structure is the
      * following item_i = x1,x2...
@@ -824,10 +1533,28 @@ public class FileUtils {
      * @return
      */
     public static Map<Integer, Set<Integer>> readIntMapSet(String path, String delim) {
-        String[] lines = readText(path).split("\n");
         Map<Integer, Set<Integer>> map_list = new HashMap<Integer, Set<Integer>>();
+        if (DelimitedTokenizer.literalDelimiter(delim) != null) {
+            try (DelimitedTokenizer tokenizer = new DelimitedTokenizer(path, delim)) {
+                while (tokenizer.nextLine()) {
+                    if (tokenizer.getFieldCount() != 2) {
+                        continue;
+                    }
+                    int key = tokenizer.getInt(0);
+                    Set<Integer> list = map_list.get(key);
+                    if (list == null) {
+                        list = new HashSet<Integer>();
+                        map_list.put(key, list);
+                    }
+                    list.add(tokenizer.getInt(1));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return map_list;
+        }
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
             String[] data = line.split(delim);
             if (data.length != 2) {
                 continue;
@@ -857,10 +1584,28 @@ public class FileUtils {
         if (!FileUtils.fileExists(path, false)) {
             return new HashMap<Integer, Set<String>>();
         }
-        String[] lines = readText(path).split("\n");
         Map<Integer, Set<String>> map_list = new HashMap<Integer, Set<String>>();
+        if (DelimitedTokenizer.literalDelimiter(delim) != null) {
+            try (DelimitedTokenizer tokenizer = new DelimitedTokenizer(path, delim)) {
+                while (tokenizer.nextLine()) {
+                    if (tokenizer.getFieldCount() != 2) {
+                        continue;
+                    }
+                    int key = tokenizer.getInt(0);
+                    Set<String> list = map_list.get(key);
+                    if (list == null) {
+                        list = new HashSet<String>();
+                        map_list.put(key, list);
+                    }
+                    list.add(tokenizer.getString(1));
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return map_list;
+        }
 
-        for (String line : lines) {
+        for (String line : getLineCursor(path)) {
             String[] data = line.split(delim);
             if (data.length != 2) {
                 continue;
@@ -0,0 +1,412 @@
+package utils;
+
+import gnu.trove.TIntIntHashMap;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * A read-only mapping of int keys to sets of int targets, e.g. the links or categories of entities, stored in the
+ * compressed sparse row (CSR) format: the sorted keys, the offset of the targets of each key, and the targets of all
+ * the keys one after the other, where the targets of a key are sorted and unique. Compared to a
+ * Map<Integer, Set<Integer>> a pair takes 4 bytes instead of a boxed Integer within a HashSet.
+ * <p>
+ * The structure is built from a delimited file of <key, target> pairs in two streaming passes: the first pass counts
+ * the targets of each key, and the second one writes the targets into their place in a memory mapped scratch file,
+ * from which they are sorted key by key into the binary file. Hence, the pairs never have to fit into the heap. The file can be opened onto the
+ * heap, or memory mapped, where only the keys are kept on the heap. The binary layout of the file is the following:
+ * <pre>
+ *     header: MAGIC(int) VERSION(int) num_keys(int) unused(int) num_targets(long) unused(long)
+ *     keys: int * num_keys, sorted
+ *     offsets: long * (num_keys + 1), the position of the first target of each key within the targets
+ *     targets: int * num_targets
+ * </pre>
+ */
+public class IntAdjacency implements Closeable {
+    public static final int MAGIC = 0x49414443;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    //the targets are written through mappings of 2^28 ints, i.e. 1GB.
+    private static final int CHUNK_BITS = 28;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final int[] keys;
+    private final long num_targets;
+
+    //the arrays on the heap, or null in case the structure is memory mapped.
+    private long[] offsets;
+    private int[] targets;
+
+    //the memory mapped arrays.
+    private MappedFile file;
+    private long offsets_pos;
+    private long targets_pos;
+
+    private IntAdjacency(int[] keys, long num_targets) {
+        this.keys = keys;
+        this.num_targets = num_targets;
+    }
+
+    public int getNumKeys() {
+        return keys.length;
+    }
+
+    /**
+     * The number of <key, target> pairs.
+     *
+     * @return
+     */
+    public long getNumTargets() {
+        return num_targets;
+    }
+
+    public boolean isMapped() {
+        return file != null;
+    }
+
+    /**
+     * The sorted keys, which must not be modified.
+     *
+     * @return
+     */
+    public int[] getKeys() {
+        return keys;
+    }
+
+    public boolean containsKey(int key) {
+        return Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    private long offset(int index) {
+        return file == null ? offsets[index] : file.getLong(offsets_pos + 8L * index);
+    }
+
+    private int target(long pos) {
+        return file == null ? targets[(int) pos] : file.getInt(targets_pos + 4L * pos);
+    }
+
+    /**
+     * The number of targets of a key.
+     *
+     * @param key
+     * @return
+     */
+    public int degree(int key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? 0 : (int) (offset(index + 1) - offset(index));
+    }
+
+    /**
+     * Checks if a key has a specific target, through binary search on the targets of the key.
+     *
+     * @param key
+     * @param target
+     * @return
+     */
+    public boolean contains(int key, int target) {
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            return false;
+        }
+        long low = offset(index);
+        long high = offset(index + 1) - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            int value = target(mid);
+            if (value < target) {
+                low = mid + 1;
+            } else if (value > target) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a copy of the sorted targets of a key.
+     *
+     * @param key
+     * @return the targets, or an empty array in case the key does not exist.
+     */
+    public int[] getTargets(int key) {
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            return new int[0];
+        }
+        long start = offset(index);
+        int[] rst = new int[(int) (offset(index + 1) - start)];
+        if (file == null) {
+            System.arraycopy(targets, (int) start, rst, 0, rst.length);
+        } else {
+            for (int i = 0; i < rst.length; i++) {
+                rst[i] = target(start + i);
+            }
+        }
+        return rst;
+    }
+
+    /**
+     * Calls the consumer for each target of a key in sorted order.
+     *
+     * @param key
+     * @param consumer
+     */
+    public void forEachTarget(int key, IntConsumer consumer) {
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            return;
+        }
+        long end = offset(index + 1);
+        for (long pos = offset(index); pos < end; pos++) {
+            consumer.accept(target(pos));
+        }
+    }
+
+    /**
+     * Iterates over the targets of a key in sorted order.
+     *
+     * @param key
+     * @return
+     */
+    public PrimitiveIterator.OfInt targets(int key) {
+        int index = Arrays.binarySearch(keys, key);
+        long start = index < 0 ? 0 : offset(index);
+        long end = index < 0 ? 0 : offset(index + 1);
+        return new PrimitiveIterator.OfInt() {
+            long pos = start;
+
+            @Override
+            public boolean hasNext() {
+                return pos < end;
+            }
+
+            @Override
+            public int nextInt() {
+                if (pos >= end) {
+                    throw new NoSuchElementException();
+                }
+                return target(pos++);
+            }
+        };
+    }
+
+    /**
+     * Releases the mapped file, in case the structure is memory mapped.
+     */
+    @Override
+    public void close() {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    /**
+     * Opens the binary file.
+     *
+     * @param path
+     * @param mapped map the offsets and targets into memory instead of reading them onto the heap, which is required
+     *               for more than 2^31 targets.
+     * @return
+     * @throws IOException
+     */
+    public static IntAdjacency open(String path, boolean mapped) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an adjacency file: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported adjacency version " + version + " in file " + path);
+            }
+            int num_keys = in.readInt();
+            in.readInt();
+            long num_targets = in.readLong();
+            in.readLong();
+            if (!mapped && num_targets > Integer.MAX_VALUE - 8) {
+                throw new IOException("The adjacency " + path + " has too many targets to be loaded onto the heap: " + num_targets);
+            }
+
+            int[] keys = new int[num_keys];
+            for (int i = 0; i < num_keys; i++) {
+                keys[i] = in.readInt();
+            }
+            IntAdjacency adjacency = new IntAdjacency(keys, num_targets);
+            if (mapped) {
+                adjacency.file = new MappedFile(path, 8);
+                adjacency.offsets_pos = HEADER_SIZE + 4L * num_keys;
+                adjacency.targets_pos = adjacency.offsets_pos + 8L * (num_keys + 1);
+                return adjacency;
+            }
+
+            adjacency.offsets = new long[num_keys + 1];
+            for (int i = 0; i <= num_keys; i++) {
+                adjacency.offsets[i] = in.readLong();
+            }
+            adjacency.targets = new int[(int) num_targets];
+            for (int i = 0; i < num_targets; i++) {
+                adjacency.targets[i] = in.readInt();
+            }
+            return adjacency;
+        }
+    }
+
+    /**
+     * Builds the binary file from a delimited file with two int columns <key, target>, in two passes over the input.
+     * Lines with a different number of columns are skipped, as in FileUtils.readIntMapSet.
+     *
+     * @param path
+     * @param delim
+     * @param out_path
+     * @throws IOException
+     */
+    public static void build(String path, String delim, String out_path) throws IOException {
+        //first pass: count the pairs of each key.
+        TIntIntHashMap counts = new TIntIntHashMap();
+        long[] num_pairs = new long[1];
+        forEachPair(path, delim, (key, target) -> {
+            counts.adjustOrPutValue(key, 1, 1);
+            num_pairs[0]++;
+        });
+
+        int[] keys = counts.keys();
+        Arrays.sort(keys);
+        long[] offsets = new long[keys.length + 1];
+        //the counts are replaced by the index of the key, which is used to look up the write position of the targets.
+        for (int i = 0; i < keys.length; i++) {
+            offsets[i + 1] = offsets[i] + counts.get(keys[i]);
+            counts.put(keys[i], i);
+        }
+
+        long offsets_pos = HEADER_SIZE + 4L * keys.length;
+        long targets_pos = offsets_pos + 8L * offsets.length;
+        File out_file = new File(out_path).getAbsoluteFile();
+        File scratch_file = File.createTempFile(out_file.getName(), ".targets", out_file.getParentFile());
+        try {
+            //the scratch file is sized before it is mapped and is never resized, the output file is never mapped.
+            BinaryFiles.writeAtomically(out_path, tmp_file -> {
+                try (RandomAccessFile scratch = new RandomAccessFile(scratch_file, "rw"); FileChannel scratch_channel = scratch.getChannel();
+                     FileChannel channel = FileChannel.open(tmp_file.toPath(), StandardOpenOption.WRITE)) {
+                    scratch.setLength(4L * num_pairs[0]);
+                    TargetChunks chunks = new TargetChunks(scratch_channel, num_pairs[0]);
+
+                    //second pass: write the targets of each key into its range of the scratch file.
+                    long[] next = Arrays.copyOf(offsets, keys.length);
+                    forEachPair(path, delim, (key, target) -> chunks.put(next[counts.get(key)]++, target));
+
+                    //sort the targets of each key, remove the duplicates, and append them to the output file.
+                    ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+                    channel.position(targets_pos);
+                    long write_pos = 0;
+                    int[] row = new int[0];
+                    for (int i = 0; i < keys.length; i++) {
+                        long start = offsets[i];
+                        int length = (int) (offsets[i + 1] - start);
+                        offsets[i] = write_pos;
+                        if (row.length < length) {
+                            row = new int[Math.max(length, row.length * 2)];
+                        }
+                        for (int k = 0; k < length; k++) {
+                            row[k] = chunks.get(start + k);
+                        }
+                        Arrays.sort(row, 0, length);
+                        for (int k = 0; k < length; k++) {
+                            if (k > 0 && row[k] == row[k - 1]) {
+                                continue;
+                            }
+                            if (buffer.remaining() < 4) {
+                                BinaryFiles.flush(buffer, channel);
+                            }
+                            buffer.putInt(row[k]);
+                            write_pos++;
+                        }
+                    }
+                    offsets[keys.length] = write_pos;
+                    BinaryFiles.flush(buffer, channel);
+
+                    buffer.putInt(MAGIC).putInt(VERSION).putInt(keys.length).putInt(0).putLong(write_pos).putLong(0);
+                    channel.position(0);
+                    for (int key : keys) {
+                        if (buffer.remaining() < 4) {
+                            BinaryFiles.flush(buffer, channel);
+                        }
+                        buffer.putInt(key);
+                    }
+                    for (long offset : offsets) {
+                        if (buffer.remaining() < 8) {
+                            BinaryFiles.flush(buffer, channel);
+                        }
+                        buffer.putLong(offset);
+                    }
+                    BinaryFiles.flush(buffer, channel);
+                }
+            });
+        } finally {
+            //the mapping of the scratch file is released only once it is garbage collected, which on some platforms
+            //prevents the deletion until then.
+            if (!scratch_file.delete()) {
+                scratch_file.deleteOnExit();
+            }
+        }
+    }
+
+    private interface PairConsumer {
+        void accept(int key, int target);
+    }
+
+    private static void forEachPair(String path, String delim, PairConsumer consumer) throws IOException {
+        if (DelimitedTokenizer.literalDelimiter(delim) != null) {
+            try (DelimitedTokenizer tokenizer = new DelimitedTokenizer(path, delim)) {
+                while (tokenizer.nextLine()) {
+                    if (tokenizer.getFieldCount() != 2) {
+                        continue;
+                    }
+                    consumer.accept(tokenizer.getInt(0), tokenizer.getInt(1));
+                }
+            }
+            return;
+        }
+
+        for (String line : FileUtils.getLineCursor(path)) {
+            String[] data = line.split(delim);
+            if (data.length != 2) {
+                continue;
+            }
+            consumer.accept(Integer.valueOf(data[0]), Integer.valueOf(data[1]));
+        }
+    }
+
+    /**
+     * A writable memory mapping of the unsorted targets in the scratch file, in chunks of 1GB.
+     */
+    private static class TargetChunks {
+        private final MappedByteBuffer[] chunks;
+
+        TargetChunks(FileChannel channel, long num_targets) throws IOException {
+            int num_chunks = (int) ((num_targets + CHUNK_MASK) >>> CHUNK_BITS);
+            chunks = new MappedByteBuffer[num_chunks];
+            for (int i = 0; i < num_chunks; i++) {
+                long start = (long) i << CHUNK_BITS;
+                long length = Math.min(1L << CHUNK_BITS, num_targets - start);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, 4L * start, 4L * length);
+            }
+        }
+
+        int get(long pos) {
+            return chunks[(int) (pos >>> CHUNK_BITS)].getInt(((int) pos & CHUNK_MASK) << 2);
+        }
+
+        void put(long pos, int value) {
+            chunks[(int) (pos >>> CHUNK_BITS)].putInt(((int) pos & CHUNK_MASK) << 2, value);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent replacement of String.intern for the tokens of the parsing and counting methods, which does not use
+ * the JVM string table. Each string gets a stable int id in the order in which it is first seen, and the canonical
+ * string can be looked up by its id.
+ * <p>
+ * The strings are kept in a ConcurrentHashMap, whose lookups do not lock and whose insertions only lock a single bin,
+ * hence, the threads contend only when they add the same new string at the same time. The number of strings is
+ * bounded by max_size: once the interner is full, strings which are not interned yet are returned as they are and do
+ * not get an id, while the existing strings keep their ids. The hits, misses and rejected strings are counted.
+ * <p>
+ * The token processing methods of Utils, SimilarityMeasures, WikiUtils and DocumentParsers intern through current(),
+ * which is the shared DEFAULT interner, unless the calling thread opened the scope of its own interner. A job which
+ * processes a bounded corpus can thus own its interner, whose strings are released together with it once the scope
+ * is closed, instead of filling the DEFAULT interner for the lifetime of the JVM:
+ * <pre>
+ *     try (Interner.Scope scope = new Interner(1 << 20).open()) {
+ *         ...
+ *     }
+ * </pre>
+ */
+public class Interner {
+    //the interner shared by the token processing methods, for the threads which did not open a scope.
+    public static final Interner DEFAULT = new Interner(Integer.getInteger("interner.max.size", 1 << 22));
+    private static final ThreadLocal<Interner> scoped = new ThreadLocal<>();
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final int max_size;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    //the canonical strings by id, in chunks which are allocated as the ids grow.
+    private final String[][] strings;
+    private int size = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private static class Entry {
+        final String value;
+        final int id;
+
+        Entry(String value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+    }
+
+    /**
+     * @param max_size the maximal number of strings, after which new strings are not interned anymore.
+     */
+    public Interner(int max_size) {
+        this.max_size = Math.max(max_size, 0);
+        this.strings = new String[(this.max_size >>> CHUNK_BITS) + 1][];
+    }
+
+    /**
+     * Returns the interner of the scope which the current thread opened, or DEFAULT in case there is none.
+     *
+     * @return
+     */
+    public static Interner current() {
+        Interner interner = scoped.get();
+        return interner == null ? DEFAULT : interner;
+    }
+
+    /**
+     * Makes this interner the current one of the calling thread, until the returned scope is closed. Scopes can be
+     * nested, closing a scope restores the interner which was current before. Threads which are started within the
+     * scope do not inherit it.
+     *
+     * @return
+     */
+    public Scope open() {
+        return new Scope(this);
+    }
+
+    /**
+     * The scope of an interner on the thread which opened it.
+     */
+    public static class Scope implements AutoCloseable {
+        private final Interner previous;
+
+        private Scope(Interner interner) {
+            previous = scoped.get();
+            scoped.set(interner);
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                scoped.remove();
+            } else {
+                scoped.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical instance of a string.
+     *
+     * @param s
+     * @return the canonical string, or s itself in case it is not interned yet and the interner is full.
+     */
+    public String intern(String s) {
+        Entry entry = lookup(s);
+        return entry == null ? s : entry.value;
+    }
+
+    /**
+     * Interns a string and returns its id.
+     *
+     * @param s
+     * @return the id, or -1 in case the string is not interned yet and the interner is full.
+     */
+    public int id(String s) {
+        Entry entry = lookup(s);
+        return entry == null ? -1 : entry.id;
+    }
+
+    /**
+     * Returns the id of a string without interning it.
+     *
+     * @param s
+     * @return the id, or -1 in case the string is not interned.
+     */
+    public int getId(String s) {
+        Entry entry = entries.get(s);
+        return entry == null ? -1 : entry.id;
+    }
+
+    /**
+     * Returns the canonical string of an id.
+     *
+     * @param id
+     * @return
+     */
+    public String get(int id) {
+        if (id < 0 || id >= max_size) {
+            throw new IndexOutOfBoundsException("No string with id " + id);
+        }
+        String[] chunk = strings[id >>> CHUNK_BITS];
+        String value = chunk == null ? null : chunk[id & (CHUNK_SIZE - 1)];
+        if (value == null) {
+            throw new IndexOutOfBoundsException("No string with id " + id);
+        }
+        return value;
+    }
+
+    private Entry lookup(String s) {
+        Entry entry = entries.get(s);
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+        boolean[] added = new boolean[1];
+        entry = entries.computeIfAbsent(s, key -> {
+            int id = nextId(key);
+            if (id < 0) {
+                return null;
+            }
+            added[0] = true;
+            return new Entry(key, id);
+        });
+        if (entry == null) {
+            rejected.increment();
+        } else if (added[0]) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Reserves the next id and stores the string under it.
+     *
+     * @return the id, or -1 in case the interner is full.
+     */
+    private synchronized int nextId(String s) {
+        if (size >= max_size) {
+            return -1;
+        }
+        int id = size++;
+        String[] chunk = strings[id >>> CHUNK_BITS];
+        if (chunk == null) {
+            chunk = new String[CHUNK_SIZE];
+            strings[id >>> CHUNK_BITS] = chunk;
+        }
+        chunk[id & (CHUNK_SIZE - 1)] = s;
+        return id;
+    }
+
+    /**
+     * Removes all the strings and resets the statistics, hence, the ids are assigned again from 0. The ids which were
+     * handed out before are no longer valid. It must not be called while other threads use the interner.
+     */
+    public void clear() {
+        synchronized (this) {
+            entries.clear();
+            Arrays.fill(strings, null);
+            size = 0;
+        }
+        hits.reset();
+        misses.reset();
+        rejected.reset();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return max_size;
+    }
+
+    public boolean isFull() {
+        return size() >= max_size;
+    }
+
+    /**
+     * The number of lookups of strings which were already interned.
+     *
+     * @return
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of strings which were interned the first time.
+     *
+     * @return
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * The number of lookups of new strings, which were not interned since the interner was full.
+     *
+     * @return
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public String getStats() {
+        return String.format("size=%d/%d, hits=%d, misses=%d, rejected=%d", size(), max_size, getHits(), getMisses(), getRejected());
+    }
+}
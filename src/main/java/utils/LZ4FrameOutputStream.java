@@ -0,0 +1,198 @@
+package utils;
+
+import org.apache.commons.codec.digest.XXHash32;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes the LZ4 frame format with independent blocks of 4MB, which can be read by the lz4 command line tool and by
+ * FramedLZ4CompressorInputStream. The blocks are compressed with the greedy single hash table match finder of the
+ * reference LZ4 implementation, which is much faster than the LZ77 compressor of commons-compress.
+ */
+public class LZ4FrameOutputStream extends FilterOutputStream {
+    private static final int MAGIC = 0x184D2204;
+    //version 01 with independent blocks and without checksums.
+    private static final int FLG = 0x60;
+    //maximal block size of 4MB.
+    private static final int BD = 0x70;
+    private static final int BLOCK_SIZE = 1 << 22;
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int HASH_BITS = 16;
+
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final byte[] compressed = new byte[BLOCK_SIZE + BLOCK_SIZE / 255 + 16];
+    private final int[] hash_table = new int[1 << HASH_BITS];
+    private int block_length = 0;
+    private boolean closed = false;
+
+    public LZ4FrameOutputStream(OutputStream out) throws IOException {
+        super(out);
+        XXHash32 hash = new XXHash32();
+        hash.update(new byte[]{(byte) FLG, (byte) BD}, 0, 2);
+
+        writeIntLE(MAGIC);
+        out.write(FLG);
+        out.write(BD);
+        out.write((int) ((hash.getValue() >> 8) & 0xFF));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (block_length == BLOCK_SIZE) {
+            writeBlock();
+        }
+        block[block_length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (block_length == BLOCK_SIZE) {
+                writeBlock();
+            }
+            int chunk = Math.min(len, BLOCK_SIZE - block_length);
+            System.arraycopy(b, off, block, block_length, chunk);
+            block_length += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeBlock();
+            //the end mark of the frame.
+            writeIntLE(0);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (block_length == 0) {
+            return;
+        }
+        int compressed_length = compressBlock(block, block_length, compressed, hash_table);
+        if (compressed_length < block_length) {
+            writeIntLE(compressed_length);
+            out.write(compressed, 0, compressed_length);
+        } else {
+            //the highest bit marks an uncompressed block.
+            writeIntLE(block_length | 0x80000000);
+            out.write(block, 0, block_length);
+        }
+        block_length = 0;
+    }
+
+    private void writeIntLE(int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static int readInt(byte[] data, int pos) {
+        return (data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8) | ((data[pos + 2] & 0xFF) << 16) | ((data[pos + 3] & 0xFF) << 24);
+    }
+
+    private static int hash(int value) {
+        return (value * -1640531535) >>> (32 - HASH_BITS);
+    }
+
+    /**
+     * Compresses the data into the LZ4 block format.
+     *
+     * @param src
+     * @param length
+     * @param dst        must hold at least length + length / 255 + 16 bytes.
+     * @param hash_table
+     * @return the compressed length.
+     */
+    static int compressBlock(byte[] src, int length, byte[] dst, int[] hash_table) {
+        Arrays.fill(hash_table, -1);
+        int anchor = 0;
+        int op = 0;
+        int ip = 0;
+        int match_limit = length - LAST_LITERALS;
+        int mf_limit = length - MF_LIMIT;
+
+        while (ip < mf_limit) {
+            int sequence = readInt(src, ip);
+            int h = hash(sequence);
+            int ref = hash_table[h];
+            hash_table[h] = ip;
+            if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                //skip faster over data which does not compress.
+                ip += 1 + ((ip - anchor) >>> 6);
+                continue;
+            }
+
+            while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                ip--;
+                ref--;
+            }
+            int match_length = MIN_MATCH;
+            while (ip + match_length < match_limit && src[ref + match_length] == src[ip + match_length]) {
+                match_length++;
+            }
+
+            op = writeSequence(src, anchor, ip - anchor, ip - ref, match_length, dst, op);
+            ip += match_length;
+            anchor = ip;
+        }
+        return writeLastLiterals(src, anchor, length - anchor, dst, op);
+    }
+
+    private static int writeSequence(byte[] src, int literal_start, int literal_length, int offset, int match_length, byte[] dst, int op) {
+        int token_pos = op++;
+        int extra_match = match_length - MIN_MATCH;
+        dst[token_pos] = (byte) ((Math.min(literal_length, 15) << 4) | Math.min(extra_match, 15));
+        op = writeLength(literal_length, dst, op);
+        System.arraycopy(src, literal_start, dst, op, literal_length);
+        op += literal_length;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        return writeLength(extra_match, dst, op);
+    }
+
+    private static int writeLastLiterals(byte[] src, int literal_start, int literal_length, byte[] dst, int op) {
+        dst[op++] = (byte) (Math.min(literal_length, 15) << 4);
+        op = writeLength(literal_length, dst, op);
+        System.arraycopy(src, literal_start, dst, op, literal_length);
+        return op + literal_length;
+    }
+
+    /**
+     * Writes the remainder of a length that does not fit into the 4 bits of the token.
+     */
+    private static int writeLength(int length, byte[] dst, int op) {
+        if (length < 15) {
+            return op;
+        }
+        length -= 15;
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+}
@@ -0,0 +1,147 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A streaming cursor over the lines of a (possibly compressed) text file. The file is opened through
+ * FileUtils.getFileReader, hence, gz, bz2 and zip files are supported transparently.
+ * <p>
+ * Only a single line is held in memory at any point in time, which allows the loaders in FileUtils to process
+ * files that are much larger than the available heap. Similar to FileUtils.readText, lines starting with "#" are
+ * considered as comments and are skipped by default.
+ * <p>
+ * The cursor can be reused for several files through the open methods, and it closes the underlying reader once
+ * the end of the file is reached.
+ */
+public class LineCursor implements Iterator<String>, Iterable<String>, Closeable {
+    //the reader from which we consume the lines.
+    private BufferedReader reader;
+
+    //the next line that will be returned by the cursor.
+    private String next_line;
+
+    //the number of lines read so far, including the comment lines.
+    private long line_number;
+
+    //determine whether we skip lines starting with "#"
+    private boolean skip_comments = true;
+
+    public LineCursor() {
+    }
+
+    public LineCursor(String path) {
+        open(path);
+    }
+
+    public LineCursor(BufferedReader reader) {
+        open(reader);
+    }
+
+    /**
+     * Set whether lines starting with "#" are skipped. Must be set before the cursor is opened.
+     *
+     * @param skip_comments
+     */
+    public void setSkipComments(boolean skip_comments) {
+        this.skip_comments = skip_comments;
+    }
+
+    public boolean getSkipComments() {
+        return skip_comments;
+    }
+
+    /**
+     * Open the cursor over a file. In case the cursor was previously opened its reader is closed first.
+     *
+     * @param path
+     * @return
+     */
+    public LineCursor open(String path) {
+        return open(FileUtils.getFileReader(path));
+    }
+
+    /**
+     * Open the cursor over an existing reader. In case the reader is null the cursor is empty.
+     *
+     * @param reader
+     * @return
+     */
+    public LineCursor open(BufferedReader reader) {
+        close();
+        this.reader = reader;
+        this.line_number = 0;
+        advance();
+        return this;
+    }
+
+    /**
+     * Returns the number of lines read from the underlying reader so far.
+     *
+     * @return
+     */
+    public long getLineNumber() {
+        return line_number;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next_line != null;
+    }
+
+    @Override
+    public String next() {
+        if (next_line == null) {
+            throw new NoSuchElementException();
+        }
+        String line = next_line;
+        advance();
+        return line;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return this;
+    }
+
+    @Override
+    public void close() {
+        next_line = null;
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        reader = null;
+    }
+
+    /**
+     * Reads the next non-comment line from the reader. Once the end of the file is reached the reader is closed.
+     */
+    private void advance() {
+        next_line = null;
+        if (reader == null) {
+            return;
+        }
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line_number++;
+                if (skip_comments && line.startsWith("#")) {
+                    continue;
+                }
+                next_line = line;
+                return;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        close();
+    }
+}
@@ -0,0 +1,323 @@
+package utils;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sparse index of the line offsets of an uncompressed text file, which stores the byte offset of every sample-th
+ * line. The index allows to start reading a file at any line, and to split a file into partitions of about the same
+ * number of bytes which start and end on line boundaries, such that several threads or processes can each read
+ * their own partition of the same file without any coordination.
+ * <p>
+ * A line ends with '\n', and the lines are counted as in the file, i.e. including the comment lines. The index is
+ * saved next to the file (see FileUtils.getLineIndex), where the offsets are stored as varint deltas. The binary
+ * layout of the file is the following:
+ * <pre>
+ *     header:  MAGIC(int) VERSION(int) sample(int) unused(int) num_lines(long) file_size(long) num_offsets(long)
+ *     offsets: varint * num_offsets, the difference of each offset to the previous one
+ * </pre>
+ */
+public class LineIndex {
+    public static final int MAGIC = 0x4C494458;
+    public static final int VERSION = 1;
+
+    private final String path;
+    private final int sample;
+    private final long num_lines;
+    private final long file_size;
+    //the offset of the lines i * sample.
+    private final long[] offsets;
+
+    private LineIndex(String path, int sample, long num_lines, long file_size, long[] offsets) {
+        this.path = path;
+        this.sample = sample;
+        this.num_lines = num_lines;
+        this.file_size = file_size;
+        this.offsets = offsets;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getSample() {
+        return sample;
+    }
+
+    public long getNumLines() {
+        return num_lines;
+    }
+
+    public long getFileSize() {
+        return file_size;
+    }
+
+    /**
+     * Scans a file and indexes the offset of every sample-th line.
+     *
+     * @param path   an uncompressed file, compressed files cannot be read from an offset.
+     * @param sample the distance in lines between the indexed offsets.
+     * @return
+     * @throws IOException
+     */
+    public static LineIndex build(String path, int sample) throws IOException {
+        if (CompressionCodecs.detect(path) != null) {
+            throw new IOException("The compressed file " + path + " cannot be indexed by line offsets.");
+        }
+        sample = Math.max(sample, 1);
+        long[] offsets = new long[16];
+        int num_offsets = 0;
+        long num_lines = 0;
+        long pos = 0;
+        boolean line_start = true;
+
+        try (InputStream in = new FileInputStream(path)) {
+            byte[] buffer = new byte[1 << 16];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                for (int i = 0; i < read; i++, pos++) {
+                    if (line_start) {
+                        if (num_lines % sample == 0) {
+                            if (num_offsets == offsets.length) {
+                                offsets = Arrays.copyOf(offsets, num_offsets * 2);
+                            }
+                            offsets[num_offsets++] = pos;
+                        }
+                        num_lines++;
+                        line_start = false;
+                    }
+                    if (buffer[i] == '\n') {
+                        line_start = true;
+                    }
+                }
+            }
+        }
+        return new LineIndex(path, sample, num_lines, pos, Arrays.copyOf(offsets, num_offsets));
+    }
+
+    /**
+     * Writes the index into the binary format.
+     *
+     * @param out_path
+     * @throws IOException
+     */
+    public void save(String out_path) throws IOException {
+        BinaryFiles.writeAtomically(out_path, tmp_file -> {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp_file), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(sample);
+                out.writeInt(0);
+                out.writeLong(num_lines);
+                out.writeLong(file_size);
+                out.writeLong(offsets.length);
+                long prev = 0;
+                for (long offset : offsets) {
+                    long delta = offset - prev;
+                    while ((delta & ~0x7FL) != 0) {
+                        out.writeByte((int) ((delta & 0x7F) | 0x80));
+                        delta >>>= 7;
+                    }
+                    out.writeByte((int) delta);
+                    prev = offset;
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the index of a file from the binary format.
+     *
+     * @param index_path
+     * @param path       the indexed file.
+     * @return
+     * @throws IOException in case the index is invalid, or the size of the file has changed.
+     */
+    public static LineIndex open(String index_path, String path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index_path), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a line index file: " + index_path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported line index version " + version + " in file " + index_path);
+            }
+            int sample = in.readInt();
+            in.readInt();
+            long num_lines = in.readLong();
+            long file_size = in.readLong();
+            if (file_size != new File(path).length()) {
+                throw new IOException("The line index " + index_path + " does not match the size of the file " + path);
+            }
+
+            long[] offsets = new long[(int) in.readLong()];
+            long prev = 0;
+            for (int i = 0; i < offsets.length; i++) {
+                long delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = in.readByte();
+                    delta |= (long) (b & 0x7F) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                prev += delta;
+                offsets[i] = prev;
+            }
+            return new LineIndex(path, sample, num_lines, file_size, offsets);
+        }
+    }
+
+    /**
+     * Returns the byte offset of a line, which is read from the closest indexed line before it.
+     *
+     * @param line
+     * @return the offset, or the file size for the line after the last one.
+     * @throws IOException
+     */
+    public long getLineOffset(long line) throws IOException {
+        if (line < 0 || line > num_lines) {
+            throw new IndexOutOfBoundsException("No line " + line + " in file " + path + " with " + num_lines + " lines.");
+        }
+        if (line == num_lines) {
+            return file_size;
+        }
+        long pos = offsets[(int) (line / sample)];
+        long skip = line % sample;
+        if (skip == 0) {
+            return pos;
+        }
+        try (InputStream in = getInputStream(pos, file_size)) {
+            byte[] buffer = new byte[1 << 14];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n' && --skip == 0) {
+                        return pos + i + 1;
+                    }
+                }
+                pos += read;
+            }
+        }
+        return file_size;
+    }
+
+    /**
+     * Returns a cursor over the lines of the file starting at the given line. The cursor does not skip the comment
+     * lines, such that line i of the file is always the i-th line of the cursor from line 0.
+     *
+     * @param line
+     * @return
+     * @throws IOException
+     */
+    public LineCursor getLines(long line) throws IOException {
+        LineCursor cursor = new LineCursor();
+        cursor.setSkipComments(false);
+        return cursor.open(getReader(getLineOffset(line), file_size));
+    }
+
+    /**
+     * Splits the file into at most num_partitions partitions of about the same number of bytes, which start on
+     * indexed lines. Since the partitions start only on every sample-th line, small files have fewer partitions.
+     *
+     * @param num_partitions
+     * @return
+     */
+    public List<Partition> getPartitions(int num_partitions) {
+        List<Partition> partitions = new ArrayList<>();
+        long start = 0;
+        long first_line = 0;
+        for (int p = 1; p <= num_partitions; p++) {
+            long end = file_size;
+            long end_line = num_lines;
+            if (p < num_partitions) {
+                int idx = firstOffsetAtLeast(file_size * p / num_partitions);
+                if (idx < offsets.length) {
+                    end = offsets[idx];
+                    end_line = (long) idx * sample;
+                }
+            }
+            if (end > start) {
+                partitions.add(new Partition(start, end, first_line, end_line));
+                start = end;
+                first_line = end_line;
+            }
+        }
+        return partitions;
+    }
+
+    private int firstOffsetAtLeast(long pos) {
+        int low = 0, high = offsets.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (offsets[mid] < pos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns a reader over a byte range of the file, which should start and end on line boundaries.
+     *
+     * @param start
+     * @param end
+     * @return
+     * @throws IOException
+     */
+    public BufferedReader getReader(long start, long end) throws IOException {
+        return new BufferedReader(new InputStreamReader(getInputStream(start, end)), 1 << 16);
+    }
+
+    private InputStream getInputStream(long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.READ);
+        channel.position(start);
+        return new BufferedInputStream(new BinaryFiles.ChannelInputStream(channel, Math.max(end - start, 0), true), 1 << 16);
+    }
+
+    /**
+     * A byte range of the file, which starts and ends on line boundaries.
+     */
+    public class Partition {
+        private final long start;
+        private final long end;
+        private final long first_line;
+        private final long end_line;
+
+        Partition(long start, long end, long first_line, long end_line) {
+            this.start = start;
+            this.end = end;
+            this.first_line = first_line;
+            this.end_line = end_line;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * The number of the first line of the partition within the file.
+         *
+         * @return
+         */
+        public long getFirstLine() {
+            return first_line;
+        }
+
+        public long getNumLines() {
+            return end_line - first_line;
+        }
+
+        public BufferedReader getReader() throws IOException {
+            return LineIndex.this.getReader(start, end);
+        }
+    }
+}
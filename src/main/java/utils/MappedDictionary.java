@@ -0,0 +1,412 @@
+package utils;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A read-only dictionary which maps String keys to String or int values, and which is stored in a sorted binary
+ * file that is memory mapped. Lookups are performed through binary search directly on the mapped file, hence, the
+ * dictionary does not occupy any heap memory and opening it is instant, regardless of the number of entries.
+ * <p>
+ * The dictionaries are created through the Builder class, or from TSV files through the FileUtils.readIntoMapped*
+ * methods. The binary layout of the file is the following:
+ * <pre>
+ *     header: MAGIC(int) VERSION(int) value_type(int) max_record_length(int) entry_count(long) index_offset(long)
+ *     records: key_length(int) key(UTF-8) value, where value is an int or value_length(int) value(UTF-8)
+ *     index: the offset(long) of each record, sorted by the UTF-8 bytes of the keys
+ * </pre>
+ * A value_length of -1 denotes a null value. The iteration order of the entries is the byte order of the UTF-8
+ * encoded keys, which is the same as the natural String order for all characters outside of the surrogate range.
+ *
+ * @param <V> the value type, either String or Integer.
+ */
+public class MappedDictionary<V> extends AbstractMap<String, V> implements Closeable {
+    public static final int MAGIC = 0x4D444943;
+    public static final int VERSION = 1;
+    public static final int STRING_VALUES = 0;
+    public static final int INT_VALUES = 1;
+
+    private static final int HEADER_SIZE = 32;
+
+    private final MappedFile file;
+    private final int value_type;
+    private final long entry_count;
+    private final long index_offset;
+
+    private Set<Entry<String, V>> entry_set;
+
+    private MappedDictionary(String path, int expected_value_type) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(path));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a mapped dictionary file: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported mapped dictionary version " + version + " in file " + path);
+            }
+            value_type = in.readInt();
+            if (value_type != expected_value_type) {
+                throw new IOException("The mapped dictionary " + path + " has values of type " + value_type + " instead of " + expected_value_type);
+            }
+            int max_record_length = in.readInt();
+            entry_count = in.readLong();
+            index_offset = in.readLong();
+            file = new MappedFile(path, max_record_length);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Opens a dictionary with String values.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static MappedDictionary<String> openStringMap(String path) throws IOException {
+        return new MappedDictionary<>(path, STRING_VALUES);
+    }
+
+    /**
+     * Opens a dictionary with int values.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static MappedDictionary<Integer> openIntMap(String path) throws IOException {
+        return new MappedDictionary<>(path, INT_VALUES);
+    }
+
+    /**
+     * Returns the number of entries. In case the dictionary has more than Integer.MAX_VALUE entries, use
+     * getEntryCount instead.
+     *
+     * @return
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(entry_count, Integer.MAX_VALUE);
+    }
+
+    public long getEntryCount() {
+        return entry_count;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof CharSequence && find(encode((CharSequence) key)) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (!(key instanceof CharSequence)) {
+            return null;
+        }
+        long index = find(encode((CharSequence) key));
+        return index < 0 ? null : (V) valueAt(index);
+    }
+
+    /**
+     * Returns the int value of a key without boxing it. Applies only for dictionaries with int values.
+     *
+     * @param key
+     * @param missing_value the value returned in case the key does not exist.
+     * @return
+     */
+    public int getInt(CharSequence key, int missing_value) {
+        if (value_type != INT_VALUES) {
+            throw new UnsupportedOperationException("The dictionary does not have int values.");
+        }
+        long index = find(encode(key));
+        if (index < 0) {
+            return missing_value;
+        }
+        long pos = recordOffset(index);
+        return file.getInt(pos + 4 + file.getInt(pos));
+    }
+
+    /**
+     * Returns the key of the entry at the given position in the sorted order.
+     *
+     * @param index
+     * @return
+     */
+    public String keyAt(long index) {
+        long pos = recordOffset(index);
+        return readString(pos + 4, file.getInt(pos));
+    }
+
+    /**
+     * Returns the value of the entry at the given position in the sorted order.
+     *
+     * @param index
+     * @return
+     */
+    public Object valueAt(long index) {
+        long pos = recordOffset(index);
+        pos += 4 + file.getInt(pos);
+        if (value_type == INT_VALUES) {
+            return file.getInt(pos);
+        }
+        int length = file.getInt(pos);
+        return length < 0 ? null : readString(pos + 4, length);
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        if (entry_set == null) {
+            entry_set = new AbstractSet<Entry<String, V>>() {
+                @Override
+                public Iterator<Entry<String, V>> iterator() {
+                    return new Iterator<Entry<String, V>>() {
+                        long index = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < entry_count;
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Entry<String, V> next() {
+                            if (index >= entry_count) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, V> entry = new SimpleImmutableEntry<>(keyAt(index), (V) valueAt(index));
+                            index++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return MappedDictionary.this.size();
+                }
+            };
+        }
+        return entry_set;
+    }
+
+    @Override
+    public void close() {
+        file.close();
+    }
+
+    private long recordOffset(long index) {
+        return file.getLong(index_offset + 8 * index);
+    }
+
+    private String readString(long pos, int length) {
+        byte[] bytes = new byte[length];
+        file.get(pos, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(CharSequence key) {
+        return key.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Binary search for the key in the sorted index.
+     *
+     * @param key
+     * @return the position of the key, or -1 if the key does not exist.
+     */
+    private long find(byte[] key) {
+        long low = 0;
+        long high = entry_count - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            int cmp = compareKey(recordOffset(mid), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the key of the record at the given position with the given key, where the bytes are compared as
+     * unsigned values.
+     *
+     * @param pos
+     * @param key
+     * @return
+     */
+    private int compareKey(long pos, byte[] key) {
+        int length = file.getInt(pos);
+        MappedByteBuffer segment = file.getSegment(pos);
+        int offset = MappedFile.getSegmentOffset(pos) + 4;
+        int min_length = Math.min(length, key.length);
+        for (int i = 0; i < min_length; i++) {
+            int cmp = (segment.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int min_length = Math.min(a.length, b.length);
+        for (int i = 0; i < min_length; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * Collects the entries of a dictionary in memory, and writes them sorted into the binary dictionary format.
+     * In case a key is added several times, the last value is kept.
+     * <p>
+     * Only the opened dictionary is off-heap: while building, every key and String value is held on the heap as a
+     * UTF-8 byte[] (roughly its length plus 16 bytes of array header, and 4-8 bytes of list reference), and the
+     * write sorts two int arrays of the size of the entries. A dictionary of n entries with keys and values of
+     * average length l thus needs about n * (2 * l + 48) bytes of heap at build time.
+     */
+    public static class Builder {
+        private final int value_type;
+        private final List<byte[]> keys = new ArrayList<>();
+        private final List<byte[]> string_values = new ArrayList<>();
+        private int[] int_values = new int[1024];
+
+        public Builder(int value_type) {
+            if (value_type != STRING_VALUES && value_type != INT_VALUES) {
+                throw new IllegalArgumentException("Unknown value type " + value_type);
+            }
+            this.value_type = value_type;
+        }
+
+        public int size() {
+            return keys.size();
+        }
+
+        public void put(String key, String value) {
+            if (value_type != STRING_VALUES) {
+                throw new UnsupportedOperationException("The dictionary has int values.");
+            }
+            keys.add(key.getBytes(StandardCharsets.UTF_8));
+            string_values.add(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public void put(String key, int value) {
+            if (value_type != INT_VALUES) {
+                throw new UnsupportedOperationException("The dictionary has String values.");
+            }
+            if (keys.size() == int_values.length) {
+                int_values = Arrays.copyOf(int_values, int_values.length * 2);
+            }
+            int_values[keys.size()] = value;
+            keys.add(key.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Sorts the entries and writes the dictionary file.
+         *
+         * @param out_path
+         * @throws IOException
+         */
+        public void write(String out_path) throws IOException {
+            //sort the entry positions by key, the sort is stable so that for duplicate keys the last one added is last.
+            int[] order = new int[keys.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            sort(order, new int[order.length], 0, order.length);
+
+            int unique_count = 0;
+            for (int i = 0; i < order.length; i++) {
+                if (i + 1 < order.length && compareBytes(keys.get(order[i]), keys.get(order[i + 1])) == 0) {
+                    continue;
+                }
+                order[unique_count++] = order[i];
+            }
+            int[] unique = order;
+
+            int num_unique = unique_count;
+            BinaryFiles.writeAtomically(out_path, tmp_file -> {
+                long[] offsets = new long[num_unique];
+                int max_record_length = 0;
+                long pos = HEADER_SIZE;
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp_file), 1 << 16))) {
+                    //the header is written at the end once the index offset is known.
+                    out.write(new byte[HEADER_SIZE]);
+                    for (int i = 0; i < num_unique; i++) {
+                        int entry = unique[i];
+                        byte[] key = keys.get(entry);
+                        offsets[i] = pos;
+
+                        out.writeInt(key.length);
+                        out.write(key);
+                        int record_length = 8 + key.length;
+                        if (value_type == INT_VALUES) {
+                            out.writeInt(int_values[entry]);
+                        } else {
+                            byte[] value = string_values.get(entry);
+                            out.writeInt(value == null ? -1 : value.length);
+                            if (value != null) {
+                                out.write(value);
+                                record_length += value.length;
+                            }
+                        }
+                        max_record_length = Math.max(max_record_length, record_length);
+                        pos += record_length;
+                    }
+                    for (long offset : offsets) {
+                        out.writeLong(offset);
+                    }
+                }
+
+                try (RandomAccessFile header = new RandomAccessFile(tmp_file, "rw")) {
+                    header.writeInt(MAGIC);
+                    header.writeInt(VERSION);
+                    header.writeInt(value_type);
+                    header.writeInt(max_record_length);
+                    header.writeLong(num_unique);
+                    header.writeLong(pos);
+                }
+            });
+        }
+
+        /**
+         * Stable merge sort of the entry positions by the UTF-8 bytes of their keys, on primitive ints so that the
+         * order does not need a boxed Integer per entry.
+         */
+        private void sort(int[] order, int[] buffer, int from, int to) {
+            if (to - from < 2) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            sort(order, buffer, from, mid);
+            sort(order, buffer, mid, to);
+            if (compareBytes(keys.get(order[mid - 1]), keys.get(order[mid])) <= 0) {
+                return;
+            }
+            System.arraycopy(order, from, buffer, from, to - from);
+            int i = from, j = mid, k = from;
+            while (i < mid && j < to) {
+                order[k++] = compareBytes(keys.get(buffer[j]), keys.get(buffer[i])) < 0 ? buffer[j++] : buffer[i++];
+            }
+            while (i < mid) {
+                order[k++] = buffer[i++];
+            }
+            while (j < to) {
+                order[k++] = buffer[j++];
+            }
+        }
+    }
+}
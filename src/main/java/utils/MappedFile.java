@@ -0,0 +1,117 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only memory mapping of a file of arbitrary size. Since a single MappedByteBuffer is limited to 2GB, the file
+ * is mapped in segments of 1GB, where each segment overlaps with the next one by a fixed number of bytes. Any value
+ * or record that is not longer than the overlap can therefore be read from a single segment, regardless of where it
+ * starts.
+ * <p>
+ * The mapped data lives in the OS page cache and not on the Java heap, hence, several JVMs on the same node which
+ * map the same file share a single copy of it.
+ */
+public class MappedFile implements Closeable {
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private MappedByteBuffer[] segments;
+    private final long size;
+
+    /**
+     * Maps the entire file. The overlap determines the maximal length of a value which can be read contiguously
+     * through getSegment, it is at least 8 bytes so that all the primitive values can be read.
+     *
+     * @param path
+     * @param overlap
+     * @throws IOException
+     */
+    public MappedFile(String path, int overlap) throws IOException {
+        overlap = Math.max(overlap, 8);
+        try (RandomAccessFile file = new RandomAccessFile(path, "r"); FileChannel channel = file.getChannel()) {
+            size = channel.size();
+            int num_segments = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            segments = new MappedByteBuffer[Math.max(num_segments, 1)];
+            for (int i = 0; i < num_segments; i++) {
+                long start = i * SEGMENT_SIZE;
+                long length = Math.min(SEGMENT_SIZE + overlap, size - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+            if (num_segments == 0) {
+                segments[0] = channel.map(FileChannel.MapMode.READ_ONLY, 0, 0);
+            }
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the segment which contains the given position. The position within the segment is given by
+     * getSegmentOffset.
+     *
+     * @param pos
+     * @return
+     */
+    public MappedByteBuffer getSegment(long pos) {
+        return segments[(int) (pos >>> SEGMENT_BITS)];
+    }
+
+    public static int getSegmentOffset(long pos) {
+        return (int) (pos & SEGMENT_MASK);
+    }
+
+    public byte get(long pos) {
+        return getSegment(pos).get(getSegmentOffset(pos));
+    }
+
+    public int getInt(long pos) {
+        return getSegment(pos).getInt(getSegmentOffset(pos));
+    }
+
+    public long getLong(long pos) {
+        return getSegment(pos).getLong(getSegmentOffset(pos));
+    }
+
+    public double getDouble(long pos) {
+        return getSegment(pos).getDouble(getSegmentOffset(pos));
+    }
+
+    /**
+     * Copies len bytes starting at the given position into the destination array.
+     *
+     * @param pos
+     * @param dst
+     * @param off
+     * @param len
+     */
+    public void get(long pos, byte[] dst, int off, int len) {
+        MappedByteBuffer segment = getSegment(pos);
+        int segment_offset = getSegmentOffset(pos);
+        if (segment_offset + len <= segment.limit()) {
+            ByteBuffer buffer = segment.duplicate();
+            buffer.position(segment_offset);
+            buffer.get(dst, off, len);
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            dst[off + i] = get(pos + i);
+        }
+    }
+
+    /**
+     * Releases the references to the mapped segments. The mappings themselves are released by the JVM once the
+     * segments are garbage collected.
+     */
+    @Override
+    public void close() {
+        segments = null;
+    }
+}
@@ -0,0 +1,67 @@
+package utils;
+
+import java.io.Closeable;
+
+/**
+ * A read-only set for contains checks on large sets of strings, where most of the checked strings are not in the
+ * set. The checks are first answered by a BloomFilter, which rejects most of the missing strings within a single
+ * cache line. In case the set has an exact dictionary on disk (see MappedDictionary), the strings which pass the
+ * filter are confirmed through it, otherwise contains returns true also for the false positives of the filter.
+ */
+public class MembershipSet implements Closeable {
+    private final BloomFilter filter;
+    private final MappedDictionary<?> exact;
+
+    private long num_checks = 0;
+    private long num_filtered = 0;
+
+    /**
+     * @param filter
+     * @param exact  the dictionary whose keys are the exact set, or null in case the false positives are accepted.
+     */
+    public MembershipSet(BloomFilter filter, MappedDictionary<?> exact) {
+        this.filter = filter;
+        this.exact = exact;
+    }
+
+    public BloomFilter getFilter() {
+        return filter;
+    }
+
+    public boolean isExact() {
+        return exact != null;
+    }
+
+    /**
+     * Checks if a string is in the set.
+     *
+     * @param s
+     * @return
+     */
+    public boolean contains(CharSequence s) {
+        num_checks++;
+        if (!filter.mightContain(s)) {
+            num_filtered++;
+            return false;
+        }
+        return exact == null || exact.containsKey(s);
+    }
+
+    /**
+     * The ratio of the checked strings which were rejected by the filter, without a lookup in the exact dictionary.
+     * The counts are not synchronized, hence, with concurrent checks the ratio is approximate.
+     *
+     * @return
+     */
+    public double getFilteredRatio() {
+        return num_checks == 0 ? 0 : (double) num_filtered / num_checks;
+    }
+
+    @Override
+    public void close() {
+        filter.close();
+        if (exact != null) {
+            exact.close();
+        }
+    }
+}
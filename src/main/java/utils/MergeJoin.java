@@ -0,0 +1,371 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Joins two or more delimited files on their key columns in a single streaming pass, instead of loading one side into
+ * a map and probing it while scanning the other. The files must be sorted by their keys in String order, as written
+ * by ExternalSorter, or they are sorted first in case setSorted(false) is set. Only the lines of the current key of
+ * each file are held in memory, and each file is read and decompressed on a background thread of its own.
+ * <p>
+ * The join produces either rows, i.e. one line per file for each combination of lines with the same key, for the
+ * INNER join (the key exists in all files) or the LEFT join (the key exists in the first file, the lines of the
+ * missing files are null), or groups, i.e. all the lines of a key per file, for the GROUP join, which contains the keys
+ * of all files. A join can be iterated only once, and has to be closed unless it is read until the end.
+ */
+public class MergeJoin implements Closeable {
+    public enum Type {
+        INNER, LEFT, GROUP
+    }
+
+    private final String delim;
+    private final List<String> paths = new ArrayList<>();
+    private final List<ExternalSorter> keys = new ArrayList<>();
+
+    private boolean sorted = true;
+    private boolean skip_comments = true;
+    private String temp_dir = System.getProperty("java.io.tmpdir");
+
+    private Input[] inputs;
+
+    /**
+     * @param delim the delimiter of the columns, which is matched literally and not as a regex.
+     */
+    public MergeJoin(String delim) {
+        this.delim = delim;
+    }
+
+    /**
+     * Adds a file to the join, where the order of the files is the order of the lines within the rows and groups.
+     *
+     * @param path
+     * @param key_columns the columns of the key, by default the first column.
+     * @return
+     */
+    public MergeJoin addInput(String path, int... key_columns) {
+        paths.add(path);
+        keys.add(new ExternalSorter(delim, key_columns));
+        return this;
+    }
+
+    /**
+     * Set whether the files are already sorted by their keys, otherwise they are sorted with an ExternalSorter before
+     * they are joined.
+     *
+     * @param sorted
+     * @return
+     */
+    public MergeJoin setSorted(boolean sorted) {
+        this.sorted = sorted;
+        return this;
+    }
+
+    /**
+     * Set whether lines starting with "#" are skipped, as in LineCursor.
+     *
+     * @param skip_comments
+     * @return
+     */
+    public MergeJoin setSkipComments(boolean skip_comments) {
+        this.skip_comments = skip_comments;
+        return this;
+    }
+
+    /**
+     * The directory of the sorted runs, in case the files are not sorted.
+     *
+     * @param temp_dir
+     * @return
+     */
+    public MergeJoin setTempDir(String temp_dir) {
+        this.temp_dir = temp_dir;
+        return this;
+    }
+
+    /**
+     * Joins the files into rows with one line per file.
+     *
+     * @param type INNER or LEFT.
+     * @return
+     * @throws IOException
+     */
+    public Rows rows(Type type) throws IOException {
+        if (type == Type.GROUP) {
+            throw new IllegalArgumentException("The GROUP join produces groups and not rows.");
+        }
+        return new Rows(groups(type));
+    }
+
+    /**
+     * Joins the files into groups with all the lines of a key per file.
+     *
+     * @param type the join type, which determines which keys are returned.
+     * @return
+     * @throws IOException
+     */
+    public Groups groups(Type type) throws IOException {
+        if (inputs != null) {
+            throw new IllegalStateException("The join has already been iterated.");
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalStateException("The join has no input files.");
+        }
+        inputs = new Input[paths.size()];
+        try {
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = new Input(paths.get(i), keys.get(i));
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        return new Groups(type);
+    }
+
+    @Override
+    public void close() {
+        if (inputs == null) {
+            return;
+        }
+        for (Input input : inputs) {
+            if (input != null) {
+                input.close();
+            }
+        }
+    }
+
+    /**
+     * A file which is read group by group, where a group are the consecutive lines with the same key.
+     */
+    private class Input {
+        final String path;
+        final ExternalSorter key;
+        final Iterator<String> lines;
+        final Closeable closeable;
+
+        String next_line;
+        String next_key;
+        String group_key;
+        List<String> group = new ArrayList<>();
+
+        Input(String path, ExternalSorter key) throws IOException {
+            this.path = path;
+            this.key = key;
+            if (sorted) {
+                LineCursor cursor = new LineCursor();
+                cursor.setSkipComments(skip_comments);
+                cursor.open(FileUtils.getPrefetchingFileReader(path, Math.max(FileUtils.prefetch_depth, 4), FileUtils.prefetch_chunk_size));
+                lines = cursor;
+                closeable = cursor;
+            } else {
+                ExternalSorter.Lines sorted_lines = key.setSkipComments(skip_comments).setTempDir(temp_dir).sort(path);
+                lines = sorted_lines;
+                closeable = sorted_lines;
+            }
+            advanceLine();
+            advanceGroup();
+        }
+
+        private void advanceLine() {
+            if (!lines.hasNext()) {
+                next_line = null;
+                next_key = null;
+                return;
+            }
+            String line = lines.next();
+            String line_key = key.getKey(line);
+            if (next_key != null && line_key.compareTo(next_key) < 0) {
+                throw new IllegalStateException("The file " + path + " is not sorted by its key, \"" + line_key + "\" follows \"" + next_key + "\".");
+            }
+            next_line = line;
+            next_key = line_key;
+        }
+
+        /**
+         * Reads the lines of the next key, and returns false at the end of the file.
+         */
+        boolean advanceGroup() {
+            group = new ArrayList<>();
+            group_key = next_key;
+            while (next_line != null && next_key.equals(group_key)) {
+                group.add(next_line);
+                advanceLine();
+            }
+            return group_key != null;
+        }
+
+        void close() {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A key and the lines of each file with that key, where the list of a file without that key is empty.
+     */
+    public static class Group {
+        private final String key;
+        private final List<List<String>> lines;
+
+        Group(String key, List<List<String>> lines) {
+            this.key = key;
+            this.lines = lines;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * The lines of the i-th file with the key.
+         *
+         * @param i
+         * @return
+         */
+        public List<String> getLines(int i) {
+            return lines.get(i);
+        }
+
+        public List<List<String>> getLines() {
+            return lines;
+        }
+    }
+
+    /**
+     * The groups of the join in the order of their keys.
+     */
+    public class Groups implements Iterator<Group>, Iterable<Group>, Closeable {
+        private final Type type;
+        private Group next_group;
+
+        private Groups(Type type) {
+            this.type = type;
+            advance();
+        }
+
+        private void advance() {
+            next_group = null;
+            while (next_group == null) {
+                String min_key = null;
+                for (Input input : inputs) {
+                    if (input.group_key != null && (min_key == null || input.group_key.compareTo(min_key) < 0)) {
+                        min_key = input.group_key;
+                    }
+                }
+                if (min_key == null) {
+                    close();
+                    return;
+                }
+
+                List<List<String>> lines = new ArrayList<>(inputs.length);
+                boolean all = true;
+                for (Input input : inputs) {
+                    if (min_key.equals(input.group_key)) {
+                        lines.add(input.group);
+                        try {
+                            input.advanceGroup();
+                        } catch (IllegalStateException e) {
+                            close();
+                            throw e;
+                        }
+                    } else {
+                        lines.add(Collections.emptyList());
+                        all = false;
+                    }
+                }
+                boolean matches = type == Type.GROUP || (type == Type.LEFT ? !lines.get(0).isEmpty() : all);
+                if (matches) {
+                    next_group = new Group(min_key, lines);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next_group != null;
+        }
+
+        @Override
+        public Group next() {
+            if (next_group == null) {
+                throw new NoSuchElementException();
+            }
+            Group group = next_group;
+            advance();
+            return group;
+        }
+
+        @Override
+        public Iterator<Group> iterator() {
+            return this;
+        }
+
+        @Override
+        public void close() {
+            next_group = null;
+            MergeJoin.this.close();
+        }
+    }
+
+    /**
+     * The rows of the join, i.e. the combinations of the lines of each group with one line per file. For a LEFT join
+     * the lines of the files without the key are null.
+     */
+    public class Rows implements Iterator<String[]>, Iterable<String[]>, Closeable {
+        private final Groups groups;
+        private Group group;
+        //the position of the current row within the lines of each file of the group.
+        private int[] positions;
+
+        private Rows(Groups groups) {
+            this.groups = groups;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return group != null || groups.hasNext();
+        }
+
+        @Override
+        public String[] next() {
+            if (group == null) {
+                group = groups.next();
+                positions = new int[inputs.length];
+            }
+            String[] row = new String[inputs.length];
+            for (int i = 0; i < row.length; i++) {
+                List<String> lines = group.getLines(i);
+                row[i] = lines.isEmpty() ? null : lines.get(positions[i]);
+            }
+
+            //move to the next combination, where the last file changes fastest.
+            int i = row.length - 1;
+            for (; i >= 0; i--) {
+                if (++positions[i] < group.getLines(i).size()) {
+                    break;
+                }
+                positions[i] = 0;
+            }
+            if (i < 0) {
+                group = null;
+            }
+            return row;
+        }
+
+        @Override
+        public Iterator<String[]> iterator() {
+            return this;
+        }
+
+        @Override
+        public void close() {
+            group = null;
+            groups.close();
+        }
+    }
+}
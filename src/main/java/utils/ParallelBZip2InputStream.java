@@ -0,0 +1,237 @@
+package utils;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decompresses a bz2 file in parallel. A bz2 stream consists of blocks of at most 900KB uncompressed data, which are
+ * compressed independently and start with a 48 bit magic number. The blocks are not byte aligned, hence, the file is
+ * scanned bit by bit for the block magic and for the end of stream magic. Each block is then shifted into a standalone
+ * bz2 stream (header, block, end of stream marker, and the block CRC as the stream CRC), which is decompressed by one
+ * of the worker threads.
+ * <p>
+ * Files with several concatenated bz2 streams (e.g. from pbzip2) are decompressed entirely.
+ */
+public class ParallelBZip2InputStream extends ParallelDecompressionInputStream<ParallelBZip2InputStream.Block> {
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long EOS_MAGIC = 0x177245385090L;
+    private static final long MAGIC_MASK = (1L << 48) - 1;
+    private static final byte[] STREAM_HEADER = {'B', 'Z', 'h', '9'};
+    //a block which was split through a false positive magic is merged with at most this many following blocks.
+    private static final int MAX_MERGED_BLOCKS = 16;
+
+    //the position of the next byte to be scanned.
+    private long scan_pos = 0;
+    private long scan_window = 0;
+    //the start of the current block in bits, -1 if no magic has been found yet.
+    private long block_start = -1;
+    private boolean block_eos = false;
+    private boolean scan_done = false;
+
+    /**
+     * The bits of a single bz2 block starting with its magic number, or the end of stream marker and the data until
+     * the next block in case eos is true.
+     */
+    static class Block {
+        final byte[] data;
+        final int bit_offset;
+        final long bit_length;
+        final long position;
+        final boolean eos;
+
+        Block(byte[] data, int bit_offset, long bit_length, long position, boolean eos) {
+            this.data = data;
+            this.bit_offset = bit_offset;
+            this.bit_length = bit_length;
+            this.position = position;
+            this.eos = eos;
+        }
+    }
+
+    public ParallelBZip2InputStream(InputStream in, int threads) {
+        super(in, threads);
+    }
+
+    @Override
+    protected Block nextSegment() throws IOException {
+        while (!scan_done) {
+            if (scan_pos == buffer_start + buffer_length && !fillBuffer()) {
+                scan_done = true;
+                if (block_start < 0) {
+                    return null;
+                }
+                return createBlock(scan_pos * 8);
+            }
+
+            scan_window = (scan_window << 8) | (buffer[(int) (scan_pos - buffer_start)] & 0xFF);
+            scan_pos++;
+            if (scan_pos < 6) {
+                continue;
+            }
+
+            for (int shift = 7; shift >= 0; shift--) {
+                long magic = (scan_window >>> shift) & MAGIC_MASK;
+                if (magic != BLOCK_MAGIC && magic != EOS_MAGIC) {
+                    continue;
+                }
+                long magic_start = scan_pos * 8 - shift - 48;
+                if (magic_start < 0 || (block_start >= 0 && magic_start < block_start + 48)) {
+                    continue;
+                }
+
+                Block block = block_start < 0 ? null : createBlock(magic_start);
+                block_start = magic_start;
+                block_eos = magic == EOS_MAGIC;
+                discardBuffer(block_start >>> 3);
+                if (block != null) {
+                    return block;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Block createBlock(long block_end) {
+        int from = (int) ((block_start >>> 3) - buffer_start);
+        int to = (int) (((block_end + 7) >>> 3) - buffer_start);
+        byte[] data = Arrays.copyOfRange(buffer, from, to);
+        return new Block(data, (int) (block_start & 7), block_end - block_start, block_start, block_eos);
+    }
+
+    @Override
+    protected byte[] decode(Block block) throws Exception {
+        return decode(Collections.singletonList(block));
+    }
+
+    /**
+     * Decompresses a sequence of consecutive blocks as a single block.
+     *
+     * @param blocks
+     * @return
+     * @throws IOException
+     */
+    private byte[] decode(List<Block> blocks) throws IOException {
+        Block first = blocks.get(0);
+        if (first.eos) {
+            return new byte[0];
+        }
+        if (first.bit_length < 80) {
+            throw new IOException("Truncated bz2 block at bit " + first.position);
+        }
+
+        BitWriter writer = new BitWriter(first.data.length + 16);
+        for (byte b : STREAM_HEADER) {
+            writer.write(b & 0xFF, 8);
+        }
+        for (Block block : blocks) {
+            writer.write(block.data, block.bit_offset, block.bit_length);
+        }
+        //the stream CRC of a stream with a single block is the block CRC, which follows the block magic.
+        long block_crc = readBits(first.data, first.bit_offset + 48, 32);
+        writer.write(EOS_MAGIC >>> 24, 24);
+        writer.write(EOS_MAGIC & 0xFFFFFF, 24);
+        writer.write(block_crc, 32);
+
+        try (InputStream in = new BZip2CompressorInputStream(new ByteArrayInputStream(writer.toByteArray()), false)) {
+            return IOUtils.toByteArray(in);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted bz2 block at bit " + first.position, e);
+        }
+    }
+
+    /**
+     * A block which cannot be decompressed was split by a false positive magic number inside its compressed data,
+     * hence, it is merged with the following blocks until it can be decompressed.
+     *
+     * @param block
+     * @return
+     * @throws IOException
+     */
+    @Override
+    protected InputStream recover(Block block) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        blocks.add(block);
+        IOException error = null;
+        while (blocks.size() <= MAX_MERGED_BLOCKS) {
+            Block next = takeSegment();
+            if (next == null) {
+                break;
+            }
+            blocks.add(next);
+            try {
+                return new ByteArrayInputStream(decode(blocks));
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        throw new IOException("Corrupted bz2 block at bit " + block.position, error);
+    }
+
+    private static long readBits(byte[] data, long bit_pos, int num_bits) {
+        long value = 0;
+        for (int i = 0; i < num_bits; i++, bit_pos++) {
+            value = (value << 1) | ((data[(int) (bit_pos >>> 3)] >>> (7 - (bit_pos & 7))) & 1);
+        }
+        return value;
+    }
+
+    /**
+     * Appends bit sequences at arbitrary bit offsets into a byte array.
+     */
+    private static class BitWriter {
+        private byte[] bytes;
+        private int length = 0;
+        private long bits = 0;
+        private int num_bits = 0;
+
+        BitWriter(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void write(long value, int count) {
+            bits = (bits << count) | (value & ((1L << count) - 1));
+            num_bits += count;
+            while (num_bits >= 8) {
+                num_bits -= 8;
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                bytes[length++] = (byte) (bits >>> num_bits);
+            }
+        }
+
+        void write(byte[] data, int bit_offset, long bit_length) {
+            long pos = bit_offset;
+            long end = bit_offset + bit_length;
+            if (bit_offset == 0) {
+                for (; pos + 8 <= end; pos += 8) {
+                    write(data[(int) (pos >>> 3)] & 0xFF, 8);
+                }
+            } else {
+                for (; pos + 8 <= end; pos += 8) {
+                    int index = (int) (pos >>> 3);
+                    int value = ((data[index] & 0xFF) << 8) | (data[index + 1] & 0xFF);
+                    write(value >>> (8 - bit_offset), 8);
+                }
+            }
+            if (pos < end) {
+                write(readBits(data, pos, (int) (end - pos)), (int) (end - pos));
+            }
+        }
+
+        byte[] toByteArray() {
+            if (num_bits > 0) {
+                write(0, 8 - num_bits);
+            }
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
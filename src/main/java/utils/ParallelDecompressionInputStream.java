@@ -0,0 +1,275 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decompresses a file on several worker threads, and hands the decompressed content back as an ordered stream.
+ * <p>
+ * The compressed file is split at the boundaries of its independently compressed units (bz2 blocks, gzip members),
+ * which are found by scanning for their magic bytes. Each unit is decompressed by a worker, while the results are
+ * returned in the file order. Since the magic bytes can also appear by chance inside the compressed data, a unit for
+ * which the decompression fails is recovered by the subclass, usually by merging it with the following units.
+ * <p>
+ * The number of units which are decompressed ahead of the reader is bounded, hence, the memory consumption is bounded
+ * as well, regardless of the file size.
+ *
+ * @param <S> the type of the compressed units.
+ */
+public abstract class ParallelDecompressionInputStream<S> extends InputStream {
+    private static final byte[] EMPTY = new byte[0];
+    private static final AtomicInteger stream_counter = new AtomicInteger();
+
+    protected final InputStream in;
+    private final ExecutorService executor;
+    private final int window;
+    private final Deque<Chunk<S>> pending = new ArrayDeque<>();
+    private boolean input_done = false;
+
+    private byte[] current = EMPTY;
+    private int current_pos = 0;
+    private InputStream recovery;
+
+    //the compressed bytes which were read but not yet assigned to a unit, buffer[0] is at the position buffer_start.
+    protected byte[] buffer = new byte[1 << 20];
+    protected long buffer_start = 0;
+    protected int buffer_length = 0;
+
+    private static class Chunk<S> {
+        final S segment;
+        //null in case the unit cannot be decompressed on its own.
+        final Future<byte[]> result;
+
+        Chunk(S segment, Future<byte[]> result) {
+            this.segment = segment;
+            this.result = result;
+        }
+    }
+
+    /**
+     * @param in      the compressed input.
+     * @param threads the number of decompression threads.
+     */
+    protected ParallelDecompressionInputStream(InputStream in, int threads) {
+        this.in = in;
+        this.window = 2 * threads;
+
+        String name = "decompression-" + stream_counter.incrementAndGet() + "-";
+        AtomicInteger thread_counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, name + thread_counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Scans the compressed input for the next unit.
+     *
+     * @return the next unit or null in case the end of the input is reached.
+     * @throws IOException
+     */
+    protected abstract S nextSegment() throws IOException;
+
+    /**
+     * Decompresses a single unit. This method is called from the worker threads.
+     *
+     * @param segment
+     * @return
+     * @throws Exception in case the unit cannot be decompressed on its own.
+     */
+    protected abstract byte[] decode(S segment) throws Exception;
+
+    /**
+     * Checks whether a unit can be decompressed on its own, otherwise it is not handed to the workers but recovered
+     * right away in the reader thread, e.g. a part of a unit which is too large to be scanned at once.
+     *
+     * @param segment
+     * @return
+     */
+    protected boolean canDecode(S segment) {
+        return true;
+    }
+
+    /**
+     * Called from the reader thread when the unit could not be decompressed on its own. The implementation can take
+     * the following units through takeSegment, and returns a stream with their decompressed content.
+     *
+     * @param segment
+     * @return
+     * @throws IOException in case the input is corrupted.
+     */
+    protected abstract InputStream recover(S segment) throws IOException;
+
+    /**
+     * Takes the next unit out of the queue of units that are being decompressed, and discards its result.
+     *
+     * @return the next unit or null in case the end of the input is reached.
+     * @throws IOException
+     */
+    protected S takeSegment() throws IOException {
+        Chunk<S> chunk = pending.poll();
+        if (chunk != null) {
+            if (chunk.result != null) {
+                chunk.result.cancel(false);
+            }
+            return chunk.segment;
+        }
+        if (input_done) {
+            return null;
+        }
+        S segment = nextSegment();
+        if (segment == null) {
+            endOfInput();
+        }
+        return segment;
+    }
+
+    /**
+     * Reads more of the compressed input into the buffer, which is grown if necessary.
+     *
+     * @return false in case the end of the input is reached.
+     * @throws IOException
+     */
+    protected boolean fillBuffer() throws IOException {
+        if (buffer_length == buffer.length) {
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, buffer_length);
+            buffer = grown;
+        }
+        int read = in.read(buffer, buffer_length, buffer.length - buffer_length);
+        if (read < 0) {
+            return false;
+        }
+        buffer_length += read;
+        return true;
+    }
+
+    /**
+     * Removes the buffered bytes before the given position of the input.
+     *
+     * @param position
+     */
+    protected void discardBuffer(long position) {
+        int discard = (int) (position - buffer_start);
+        System.arraycopy(buffer, discard, buffer, 0, buffer_length - discard);
+        buffer_length -= discard;
+        buffer_start = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read(b, 0, 1);
+        return read < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (recovery != null) {
+                int read = recovery.read(b, off, len);
+                if (read > 0) {
+                    return read;
+                }
+                closeRecovery();
+            }
+            if (current_pos < current.length) {
+                int read = Math.min(len, current.length - current_pos);
+                System.arraycopy(current, current_pos, b, off, read);
+                current_pos += read;
+                return read;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+        }
+    }
+
+    @Override
+    public int available() {
+        return current.length - current_pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        pending.clear();
+        try {
+            closeRecovery();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Schedules the decompression of the following units and waits for the next unit in order.
+     *
+     * @return false in case there are no more units.
+     * @throws IOException
+     */
+    private boolean nextChunk() throws IOException {
+        fillWindow();
+        Chunk<S> chunk = pending.poll();
+        if (chunk == null) {
+            return false;
+        }
+        fillWindow();
+
+        current = EMPTY;
+        current_pos = 0;
+        if (chunk.result == null) {
+            closeRecovery();
+            recovery = recover(chunk.segment);
+            return true;
+        }
+        try {
+            current = chunk.result.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while waiting for the decompression.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            closeRecovery();
+            recovery = recover(chunk.segment);
+        }
+        return true;
+    }
+
+    /*
+     * Marks the input as consumed. No further units are submitted, hence, the worker threads are released as soon as
+     * the pending units are decompressed, instead of lingering until the stream is closed.
+     */
+    private void endOfInput() {
+        input_done = true;
+        executor.shutdown();
+    }
+
+    private void closeRecovery() throws IOException {
+        if (recovery != null) {
+            InputStream stream = recovery;
+            recovery = null;
+            stream.close();
+        }
+    }
+
+    private void fillWindow() throws IOException {
+        while (!input_done && pending.size() < window) {
+            S segment = nextSegment();
+            if (segment == null) {
+                endOfInput();
+                break;
+            }
+            pending.add(new Chunk<>(segment, canDecode(segment) ? executor.submit(() -> decode(segment)) : null));
+        }
+    }
+}
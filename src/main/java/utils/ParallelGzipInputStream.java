@@ -0,0 +1,355 @@
+package utils;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses a multi-member gzip file in parallel, e.g. files written by pigz or bgzip, or files which were
+ * concatenated from several gzip files. The members of BGZF files are found through the block size in their header,
+ * for other files the members are found by scanning for the gzip magic bytes.
+ * <p>
+ * A gzip file with a single member cannot be split, hence, open hands such files to a GZIPInputStream. A member
+ * which is larger than the scanned length is decompressed in the reader thread as well, while the members around it
+ * are decompressed in parallel.
+ */
+public class ParallelGzipInputStream extends ParallelDecompressionInputStream<ParallelGzipInputStream.Member> {
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    //the maximal number of bytes which are scanned for the next member, larger members are split into several parts.
+    private static final int MAX_MEMBER_LENGTH = 1 << 22;
+    //the maximal output of a single member which is decompressed by the worker threads.
+    private static final int MAX_MEMBER_OUTPUT = 1 << 28;
+
+    private long member_start = 0;
+    private boolean scan_done = false;
+
+    /**
+     * A gzip member, or part of one in case the member is larger than MAX_MEMBER_LENGTH or a false positive magic was
+     * found inside its compressed data.
+     */
+    static class Member {
+        final byte[] data;
+        final long position;
+        //false in case the part was cut at MAX_MEMBER_LENGTH, i.e. it is not followed by a member or the end of input.
+        final boolean complete;
+
+        Member(byte[] data, long position, boolean complete) {
+            this.data = data;
+            this.position = position;
+            this.complete = complete;
+        }
+    }
+
+    public ParallelGzipInputStream(InputStream in, int threads) {
+        super(in, threads);
+    }
+
+    /**
+     * Opens a gzip stream, which is decompressed in parallel only in case it consists of several members, i.e. it is
+     * a BGZF file or a second member starts within the first MAX_MEMBER_LENGTH bytes. Otherwise, e.g. for the common
+     * single-member files, scanning and splitting the input gains nothing over a GZIPInputStream.
+     *
+     * @param in
+     * @param threads
+     * @return
+     * @throws IOException
+     */
+    public static InputStream open(InputStream in, int threads) throws IOException {
+        byte[] head = new byte[MAX_MEMBER_LENGTH + 4];
+        int length = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        InputStream stream = new SequenceInputStream(new ByteArrayInputStream(head, 0, length), in);
+        if (getBGZFBlockSize(head, 0, length) > 0 || findMember(head, 1, length) >= 0) {
+            return new ParallelGzipInputStream(stream, threads);
+        }
+        return new GZIPInputStream(stream, 1 << 16);
+    }
+
+    /**
+     * Returns the position of the first gzip magic in the range of the data.
+     *
+     * @param data
+     * @param from
+     * @param to
+     * @return the position or -1 in case there is none.
+     */
+    private static int findMember(byte[] data, int from, int to) {
+        for (int i = from; i + 4 <= to; i++) {
+            if (data[i] == 0x1f && data[i + 1] == (byte) 0x8b && data[i + 2] == 8 && (data[i + 3] & 0xE0) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected Member nextSegment() throws IOException {
+        if (scan_done || !ensureBuffered(member_start + 1)) {
+            scan_done = true;
+            return null;
+        }
+
+        int bgzf_size = ensureBuffered(member_start + 18) ? getBGZFBlockSize(buffer, (int) (member_start - buffer_start), buffer_length) : -1;
+        long member_end;
+        boolean complete = true;
+        if (bgzf_size > 0 && ensureBuffered(member_start + bgzf_size)) {
+            member_end = member_start + bgzf_size;
+        } else {
+            ensureBuffered(member_start + MAX_MEMBER_LENGTH + 4);
+            int from = (int) (member_start - buffer_start);
+            int index = findMember(buffer, from + 1, (int) Math.min(buffer_length, from + (long) MAX_MEMBER_LENGTH + 3));
+            if (index >= 0) {
+                member_end = buffer_start + index;
+            } else if (buffer_length - from <= MAX_MEMBER_LENGTH) {
+                member_end = buffer_start + buffer_length;
+            } else {
+                member_end = member_start + MAX_MEMBER_LENGTH;
+                complete = false;
+            }
+        }
+
+        int from = (int) (member_start - buffer_start);
+        Member member = new Member(Arrays.copyOfRange(buffer, from, from + (int) (member_end - member_start)), member_start, complete);
+        discardBuffer(member_end);
+        member_start = member_end;
+        return member;
+    }
+
+    private boolean ensureBuffered(long position) throws IOException {
+        while (buffer_start + buffer_length < position) {
+            if (!fillBuffer()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the length of a BGZF member from the BC extra field of its header.
+     *
+     * @param b
+     * @param offset
+     * @param length the number of valid bytes in b.
+     * @return the member length, or -1 in case the member is not a BGZF block.
+     */
+    private static int getBGZFBlockSize(byte[] b, int offset, int length) {
+        if (length - offset < 18 || b[offset] != 0x1f || b[offset + 1] != (byte) 0x8b || b[offset + 2] != 8 || (b[offset + 3] & FEXTRA) == 0) {
+            return -1;
+        }
+        int xlen = (b[offset + 10] & 0xFF) | ((b[offset + 11] & 0xFF) << 8);
+        if (xlen < 6 || b[offset + 12] != 'B' || b[offset + 13] != 'C' || b[offset + 14] != 2 || b[offset + 15] != 0) {
+            return -1;
+        }
+        return ((b[offset + 16] & 0xFF) | ((b[offset + 17] & 0xFF) << 8)) + 1;
+    }
+
+    /**
+     * Returns the length of the gzip header at the beginning of the data.
+     *
+     * @param data
+     * @return the header length, or -1 in case the header is incomplete.
+     * @throws IOException in case the data does not start with a gzip header.
+     */
+    private static int readHeader(byte[] data) throws IOException {
+        if (data.length < 10) {
+            return -1;
+        }
+        if (data[0] != 0x1f || data[1] != (byte) 0x8b || data[2] != 8) {
+            throw new IOException("Not in GZIP format");
+        }
+        int flags = data[3] & 0xFF;
+        int pos = 10;
+        if ((flags & FEXTRA) != 0) {
+            if (pos + 2 > data.length) {
+                return -1;
+            }
+            pos += 2 + ((data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8));
+        }
+        if ((flags & FNAME) != 0) {
+            while (pos < data.length && data[pos] != 0) {
+                pos++;
+            }
+            pos++;
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (pos < data.length && data[pos] != 0) {
+                pos++;
+            }
+            pos++;
+        }
+        if ((flags & FHCRC) != 0) {
+            pos += 2;
+        }
+        return pos > data.length ? -1 : pos;
+    }
+
+    private static long readTrailerInt(byte[] data, int offset) {
+        return (data[offset] & 0xFFL) | ((data[offset + 1] & 0xFFL) << 8) | ((data[offset + 2] & 0xFFL) << 16) | ((data[offset + 3] & 0xFFL) << 24);
+    }
+
+    /**
+     * A part which was cut at MAX_MEMBER_LENGTH cannot be inflated to its end, and a part which does not start with
+     * the gzip magic is the continuation of such a part.
+     */
+    @Override
+    protected boolean canDecode(Member member) {
+        byte[] data = member.data;
+        return member.complete && data.length >= 4 && data[0] == 0x1f && data[1] == (byte) 0x8b;
+    }
+
+    @Override
+    protected byte[] decode(Member member) throws Exception {
+        byte[] data = member.data;
+        int header_length = readHeader(data);
+        if (header_length < 0) {
+            throw new EOFException("Incomplete gzip header at " + member.position);
+        }
+
+        //the last four bytes of a complete member contain the uncompressed size, the buffer grows for incomplete ones.
+        long expected_size = data.length >= 18 ? readTrailerInt(data, data.length - 4) : 0;
+        byte[] output = new byte[(int) Math.min(Math.max(expected_size, data.length), 1 << 24)];
+        int output_length = 0;
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, header_length, data.length - header_length);
+            while (!inflater.finished()) {
+                if (output_length == output.length) {
+                    if (output.length >= MAX_MEMBER_OUTPUT) {
+                        throw new IOException("The gzip member at " + member.position + " is too large.");
+                    }
+                    output = Arrays.copyOf(output, Math.min(output.length * 2, MAX_MEMBER_OUTPUT));
+                }
+                int inflated = inflater.inflate(output, output_length, output.length - output_length);
+                output_length += inflated;
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Incomplete gzip member at " + member.position);
+                }
+            }
+
+            int trailer = data.length - inflater.getRemaining();
+            if (trailer + 8 > data.length) {
+                throw new EOFException("Incomplete gzip trailer at " + member.position);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(output, 0, output_length);
+            if (readTrailerInt(data, trailer) != crc.getValue() || readTrailerInt(data, trailer + 4) != (output_length & 0xFFFFFFFFL)) {
+                throw new IOException("Corrupted gzip member at " + member.position);
+            }
+        } finally {
+            inflater.end();
+        }
+        return output_length == output.length ? output : Arrays.copyOf(output, output_length);
+    }
+
+    @Override
+    protected InputStream recover(Member member) throws IOException {
+        return new MemberInputStream(member);
+    }
+
+    /**
+     * Decompresses a member which is split into several parts in the reader thread, by streaming its parts through an
+     * Inflater.
+     */
+    private class MemberInputStream extends InputStream {
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final long position;
+        private Member part;
+        private long size = 0;
+        private boolean finished = false;
+
+        MemberInputStream(Member member) throws IOException {
+            position = member.position;
+            part = member;
+            int header_length;
+            while ((header_length = readHeader(part.data)) < 0) {
+                Member next = takeSegment();
+                if (next == null) {
+                    throw new EOFException("Incomplete gzip header at " + position);
+                }
+                byte[] merged = Arrays.copyOf(part.data, part.data.length + next.data.length);
+                System.arraycopy(next.data, 0, merged, part.data.length, next.data.length);
+                part = new Member(merged, position, false);
+            }
+            inflater.setInput(part.data, header_length, part.data.length - header_length);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int read = read(b, 0, 1);
+            return read < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (!finished) {
+                int inflated;
+                try {
+                    inflated = inflater.inflate(b, off, len);
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupted gzip member at " + position, e);
+                }
+                if (inflated > 0) {
+                    crc.update(b, off, inflated);
+                    size += inflated;
+                    return inflated;
+                }
+                if (inflater.finished()) {
+                    readTrailer();
+                } else if (inflater.needsDictionary()) {
+                    throw new IOException("Corrupted gzip member at " + position);
+                } else if (inflater.needsInput()) {
+                    part = takeSegment();
+                    if (part == null) {
+                        throw new EOFException("Unexpected end of gzip input at " + position);
+                    }
+                    inflater.setInput(part.data);
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+
+        /**
+         * Verifies the CRC and size of the member, the trailer can be split over two parts.
+         *
+         * @throws IOException
+         */
+        private void readTrailer() throws IOException {
+            byte[] trailer = new byte[8];
+            int offset = part.data.length - inflater.getRemaining();
+            int length = Math.min(8, part.data.length - offset);
+            System.arraycopy(part.data, offset, trailer, 0, length);
+            while (length < 8) {
+                Member next = takeSegment();
+                if (next == null) {
+                    throw new EOFException("Incomplete gzip trailer at " + position);
+                }
+                int copy = Math.min(8 - length, next.data.length);
+                System.arraycopy(next.data, 0, trailer, length, copy);
+                length += copy;
+            }
+            inflater.end();
+            finished = true;
+
+            if (readTrailerInt(trailer, 0) != crc.getValue() || readTrailerInt(trailer, 4) != (size & 0xFFFFFFFFL)) {
+                throw new IOException("Corrupted gzip member at " + position);
+            }
+        }
+    }
+}
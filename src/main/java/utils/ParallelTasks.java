@@ -0,0 +1,68 @@
+package utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a task for each item of a collection on a fixed number of threads, and reports the first failure to the
+ * caller. Once a task fails the items which did not start yet are skipped, and the error is thrown after the running
+ * tasks are finished.
+ */
+public class ParallelTasks {
+    /**
+     * The task which is run for a single item.
+     *
+     * @param <T>
+     */
+    public interface Task<T> {
+        void run(T item) throws Exception;
+    }
+
+    /**
+     * Runs the task for each item, concurrently on the given number of threads.
+     *
+     * @param items
+     * @param threads
+     * @param item_type the description of the items in the error message, e.g. "segment".
+     * @param task
+     * @throws IOException the first error of a task, wrapped with the item at which it occurred.
+     */
+    public static <T> void forEach(Iterable<T> items, int threads, String item_type, Task<T> task) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (T item : items) {
+                futures.add(executor.submit(() -> {
+                    if (error.get() != null) {
+                        return;
+                    }
+                    try {
+                        task.run(item);
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, new IOException("Error at " + item_type + " " + item, e));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            error.compareAndSet(null, e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Throwable e = error.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e != null) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * A reader which reads and decodes the underlying reader on a background thread in chunks of chunk_size chars,
+ * keeping at most depth chunks ahead of the consumer. This way the reading and decompression of a file overlap with
+ * the parsing of its content. The stall times (see ReadAhead) show if reading the file is I/O-bound or CPU-bound.
+ */
+public class PrefetchingReader extends Reader {
+    private final Reader reader;
+    private final ReadAhead<char[]> chunks;
+
+    private char[] chunk = new char[0];
+    private int chunk_pos = 0;
+
+    /**
+     * @param reader     the underlying reader, which is closed together with this reader.
+     * @param depth      the number of chunks that are read ahead.
+     * @param chunk_size the number of chars in a chunk.
+     */
+    public PrefetchingReader(Reader reader, int depth, int chunk_size) {
+        this.reader = reader;
+        this.chunks = new ReadAhead<>(() -> readChunk(reader, chunk_size), depth);
+    }
+
+    private static char[] readChunk(Reader reader, int chunk_size) throws IOException {
+        char[] chunk = new char[chunk_size];
+        int length = 0;
+        while (length < chunk_size) {
+            int read = reader.read(chunk, length, chunk_size - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        if (length == 0) {
+            return null;
+        }
+        if (length < chunk_size) {
+            char[] last_chunk = new char[length];
+            System.arraycopy(chunk, 0, last_chunk, 0, length);
+            return last_chunk;
+        }
+        return chunk;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (chunk_pos == chunk.length) {
+            try {
+                if (!chunks.hasNext()) {
+                    return -1;
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            chunk = chunks.next();
+            chunk_pos = 0;
+        }
+        int read = Math.min(len, chunk.length - chunk_pos);
+        System.arraycopy(chunk, chunk_pos, cbuf, off, read);
+        chunk_pos += read;
+        return read;
+    }
+
+    /**
+     * Returns the read-ahead of this reader, e.g. to check its stall times.
+     *
+     * @return
+     */
+    public ReadAhead<char[]> getReadAhead() {
+        return chunks;
+    }
+
+    /**
+     * Stops the read-ahead and closes the underlying reader once the background thread has left it, since a Reader
+     * must not be closed while it is read.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        chunks.close();
+        chunks.awaitTermination();
+        reader.close();
+    }
+}
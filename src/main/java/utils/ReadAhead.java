@@ -0,0 +1,206 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Produces items on a background thread ahead of the consumer, e.g. decoded chunks of a file or the contents of the
+ * next files to be processed, such that reading and processing overlap. The produced items are kept in a bounded
+ * queue, hence, at most depth items are held in memory.
+ * <p>
+ * The time which the consumer waits for the producer and the time which the producer waits for a free slot in the
+ * queue are measured. In case the consumer waits most of the time, the job is I/O-bound (reading and decompressing),
+ * otherwise it is CPU-bound (processing the items).
+ *
+ * @param <T>
+ */
+public class ReadAhead<T> implements Iterator<T>, Closeable {
+    private static final Object END = new Object();
+    private static final AtomicInteger thread_counter = new AtomicInteger();
+
+    /**
+     * Produces the items in the background thread.
+     *
+     * @param <T>
+     */
+    public interface Producer<T> {
+        /**
+         * @return the next item, or null in case there are no more items.
+         * @throws IOException
+         */
+        T next() throws IOException;
+    }
+
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+    private volatile boolean closed = false;
+    private volatile Throwable error;
+
+    private Object next;
+    private long num_items = 0;
+    private long consumer_stall_time = 0;
+    private volatile long producer_stall_time = 0;
+
+    /**
+     * Starts the background thread.
+     *
+     * @param producer
+     * @param depth    the maximal number of items that are produced ahead.
+     */
+    public ReadAhead(Producer<T> producer, int depth) {
+        queue = new ArrayBlockingQueue<>(Math.max(depth, 1));
+        thread = new Thread(() -> produce(producer), "read-ahead-" + thread_counter.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void produce(Producer<T> producer) {
+        try {
+            T item;
+            while (!closed && (item = producer.next()) != null) {
+                put(item);
+            }
+        } catch (InterruptedException e) {
+            return;
+        } catch (Throwable e) {
+            //any failure, including Errors, is handed to the consumer, which otherwise would wait forever for END.
+            error = e;
+        }
+
+        try {
+            put(END);
+        } catch (InterruptedException e) {
+            //the consumer closed the read-ahead.
+        }
+    }
+
+    private void put(Object item) throws InterruptedException {
+        if (!queue.offer(item)) {
+            long time = System.nanoTime();
+            queue.put(item);
+            producer_stall_time += System.nanoTime() - time;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = queue.poll();
+            if (next == null) {
+                long time = System.nanoTime();
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new IOException("Interrupted while waiting for the read-ahead."));
+                }
+                consumer_stall_time += System.nanoTime() - time;
+            }
+        }
+        if (next == END) {
+            if (error instanceof Error) {
+                throw (Error) error;
+            } else if (error instanceof IOException) {
+                throw new UncheckedIOException((IOException) error);
+            } else if (error != null) {
+                throw new UncheckedIOException(new IOException(error));
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T item = (T) next;
+        next = null;
+        num_items++;
+        return item;
+    }
+
+    /**
+     * The number of items which were consumed.
+     *
+     * @return
+     */
+    public long getNumItems() {
+        return num_items;
+    }
+
+    /**
+     * The time in nanoseconds which the consumer waited for the producer.
+     *
+     * @return
+     */
+    public long getConsumerStallTime() {
+        return consumer_stall_time;
+    }
+
+    /**
+     * The time in nanoseconds which the producer waited for the consumer.
+     *
+     * @return
+     */
+    public long getProducerStallTime() {
+        return producer_stall_time;
+    }
+
+    /**
+     * Check if the consumer waited longer for the producer than the other way round.
+     *
+     * @return
+     */
+    public boolean isIOBound() {
+        return consumer_stall_time > producer_stall_time;
+    }
+
+    /**
+     * Returns a short summary of the stall times.
+     *
+     * @return
+     */
+    public String getStats() {
+        return String.format("items=%d, consumer stalled %dms, producer stalled %dms (%s-bound)", num_items, consumer_stall_time / 1000000,
+                producer_stall_time / 1000000, isIOBound() ? "I/O" : "CPU");
+    }
+
+    /**
+     * Stops the background thread, the items which were not consumed are discarded. The producer may still be inside
+     * its current call when this method returns, see awaitTermination.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        queue.clear();
+    }
+
+    /**
+     * Waits until the background thread has stopped, e.g. after close and before the resources of the producer are
+     * released. The producer finishes its current item first, in case it does not react to the interrupt. An interrupt
+     * of the calling thread does not end the wait, but it is restored afterwards.
+     */
+    public void awaitTermination() {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
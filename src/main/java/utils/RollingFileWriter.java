@@ -0,0 +1,202 @@
+package utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Writes records (e.g. lines) into a sequence of numbered segment files, instead of a single ever-growing file. A new
+ * segment is started once the current one exceeds max_segment_bytes uncompressed bytes or max_segment_records
+ * records, where records are never split between segments. Each segment is compressed independently with the codec
+ * of the path suffix (see CompressionCodecs), hence, the segments can be read in parallel.
+ * <p>
+ * For the path out/data.json.gz the segments are out/data.json.00000.gz, out/data.json.00001.gz, ... and the manifest is
+ * out/data.json.manifest. The manifest lists the finished segments as lines of segment file name, number of records
+ * and number of uncompressed bytes, separated by tabs. It is rewritten after every finished segment, so that a partial
+ * output is readable too.
+ */
+public class RollingFileWriter implements Closeable {
+    private static final String MANIFEST_SUFFIX = ".manifest";
+
+    private final String prefix;
+    private final String suffix;
+    private final long max_segment_bytes;
+    private final long max_segment_records;
+
+    private final List<String> manifest = new ArrayList<>();
+    private OutputStream out;
+    private int segment_no;
+    private long segment_bytes;
+    private long segment_records;
+    private boolean closed = false;
+
+    /**
+     * @param path                the path of the output, whose compression suffix determines the codec of the segments.
+     * @param max_segment_bytes   the maximal number of uncompressed bytes in a segment, values <= 0 disable the limit.
+     * @param max_segment_records the maximal number of records in a segment, values <= 0 disable the limit.
+     * @param append              continue after the segments of an existing manifest, otherwise the manifest is emptied
+     *                            and its segments are deleted right away.
+     * @throws IOException
+     */
+    public RollingFileWriter(String path, long max_segment_bytes, long max_segment_records, boolean append) throws IOException {
+        CompressionCodec codec = CompressionCodecs.forSuffix(path);
+        this.suffix = codec == null ? "" : codec.getSuffix();
+        this.prefix = path.substring(0, path.length() - suffix.length());
+        this.max_segment_bytes = max_segment_bytes <= 0 ? Long.MAX_VALUE : max_segment_bytes;
+        this.max_segment_records = max_segment_records <= 0 ? Long.MAX_VALUE : max_segment_records;
+
+        File manifest_file = new File(prefix + MANIFEST_SUFFIX);
+        if (append && manifest_file.exists()) {
+            manifest.addAll(Files.readAllLines(manifest_file.toPath(), StandardCharsets.UTF_8));
+        } else if (manifest_file.exists()) {
+            //the empty manifest replaces the old one before its segments are deleted, such that readers never see a
+            //manifest with missing or partially rewritten segments.
+            List<String> stale_segments = getSegmentPaths(manifest_file.getPath());
+            writeManifest();
+            for (String segment : stale_segments) {
+                Files.deleteIfExists(new File(segment).toPath());
+            }
+        }
+        segment_no = manifest.size();
+    }
+
+    public RollingFileWriter(String path, long max_segment_bytes) throws IOException {
+        this(path, max_segment_bytes, 0, false);
+    }
+
+    /**
+     * The path of the manifest file.
+     *
+     * @return
+     */
+    public String getManifestPath() {
+        return prefix + MANIFEST_SUFFIX;
+    }
+
+    /**
+     * Writes a single record, which is always stored entirely within one segment.
+     *
+     * @param record
+     * @throws IOException
+     */
+    public synchronized void write(String record) throws IOException {
+        if (closed) {
+            throw new IOException("The writer for " + prefix + " is closed.");
+        }
+        byte[] data = record.getBytes(StandardCharsets.UTF_8);
+        if (out != null && (segment_records >= max_segment_records || segment_bytes + data.length > max_segment_bytes)) {
+            finishSegment();
+        }
+        if (out == null) {
+            startSegment();
+        }
+        out.write(data);
+        segment_bytes += data.length;
+        segment_records++;
+    }
+
+    /**
+     * Writes a line as a single record.
+     *
+     * @param line
+     * @throws IOException
+     */
+    public void writeLine(String line) throws IOException {
+        write(line + "\n");
+    }
+
+    /**
+     * Finishes the current segment, the next record starts a new one.
+     *
+     * @throws IOException
+     */
+    public synchronized void roll() throws IOException {
+        if (out != null) {
+            finishSegment();
+        }
+    }
+
+    private String segmentName(int segment_no) {
+        return String.format("%s.%05d%s", new File(prefix).getName(), segment_no, suffix);
+    }
+
+    private void startSegment() throws IOException {
+        String path = new File(new File(prefix).getAbsoluteFile().getParentFile(), segmentName(segment_no)).getPath();
+        out = suffix.isEmpty() ? new BufferedOutputStream(new FileOutputStream(path), 1 << 16) : FileUtils.getFileOutputStream(path, false);
+        segment_bytes = 0;
+        segment_records = 0;
+    }
+
+    private void finishSegment() throws IOException {
+        out.close();
+        out = null;
+        manifest.add(segmentName(segment_no) + "\t" + segment_records + "\t" + segment_bytes);
+        segment_no++;
+        writeManifest();
+    }
+
+    /**
+     * Writes the manifest into a temporary file first, hence, the readers never see a partially written manifest.
+     */
+    private void writeManifest() throws IOException {
+        File manifest_file = new File(prefix + MANIFEST_SUFFIX);
+        File tmp_file = new File(manifest_file.getPath() + ".tmp");
+        Files.write(tmp_file.toPath(), manifest, StandardCharsets.UTF_8);
+        Files.move(tmp_file.toPath(), manifest_file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (out != null) {
+            finishSegment();
+        } else if (!new File(prefix + MANIFEST_SUFFIX).exists()) {
+            writeManifest();
+        }
+    }
+
+    /**
+     * Returns the paths of the segments listed in a manifest.
+     *
+     * @param manifest_path
+     * @return
+     * @throws IOException
+     */
+    public static List<String> getSegmentPaths(String manifest_path) throws IOException {
+        File manifest_file = new File(manifest_path);
+        File dir = manifest_file.getAbsoluteFile().getParentFile();
+        List<String> paths = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest_file.toPath(), StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            paths.add(new File(dir, line.split("\t")[0]).getPath());
+        }
+        return paths;
+    }
+
+    /**
+     * Reads the segments of a manifest on several threads, one segment per thread at a time. The consumer is called
+     * concurrently with the segment path and its reader, hence, it must be thread-safe. The reader is closed once the
+     * consumer returns.
+     *
+     * @param manifest_path
+     * @param threads
+     * @param consumer
+     * @throws IOException
+     */
+    public static void forEachSegment(String manifest_path, int threads, BiConsumer<String, BufferedReader> consumer) throws IOException {
+        ParallelTasks.forEach(getSegmentPaths(manifest_path), threads, "segment", segment -> {
+            try (BufferedReader reader = FileUtils.getFileReader(segment)) {
+                consumer.accept(segment, reader);
+            }
+        });
+    }
+}
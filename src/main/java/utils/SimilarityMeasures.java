@@ -201,7 +201,8 @@ public class SimilarityMeasures {
                 token_stemmed = p.getCurrent();
             }
 
-            Integer count = freq.get(token_stemmed.intern());
+            token_stemmed = Interner.current().intern(token_stemmed);
+            Integer count = freq.get(token_stemmed);
             count = count == null ? 0 : count;
             count += 1;
             freq.put(token_stemmed, count);
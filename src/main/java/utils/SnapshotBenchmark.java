@@ -0,0 +1,90 @@
+package utils;
+
+import gnu.trove.TIntIntHashMap;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compares the save and load times, and the file sizes of Java serialization against the snapshot format, for the
+ * typical data structures which are cached through FileUtils.saveObject and FileUtils.saveSnapshot.
+ * <p>
+ * Usage: SnapshotBenchmark [num_entries] [out_dir]
+ */
+public class SnapshotBenchmark {
+    public static void main(String[] args) throws Exception {
+        int num_entries = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        String out_dir = args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir");
+        Random random = new Random(1);
+
+        Map<String, Integer> string_int_map = new HashMap<>();
+        Map<String, Set<String>> string_set_map = new HashMap<>();
+        TIntIntHashMap int_map = new TIntIntHashMap();
+        for (int i = 0; i < num_entries; i++) {
+            String key = "entity_" + Integer.toString(random.nextInt(Integer.MAX_VALUE), 36);
+            string_int_map.put(key, random.nextInt(1000));
+            int_map.put(random.nextInt(), random.nextInt(1000));
+
+            if (i % 10 == 0) {
+                Set<String> values = new HashSet<>();
+                int num_values = 1 + random.nextInt(10);
+                for (int j = 0; j < num_values; j++) {
+                    values.add("Category:" + Integer.toString(random.nextInt(100000), 36));
+                }
+                string_set_map.put(key, values);
+            }
+        }
+
+        run("Map<String, Integer>", string_int_map, out_dir);
+        run("Map<String, Set<String>>", string_set_map, out_dir);
+        run("TIntIntHashMap", int_map, out_dir);
+    }
+
+    private static void run(String name, Object obj, String out_dir) throws Exception {
+        String java_path = out_dir + "/snapshot_benchmark.ser";
+        String snapshot_path = out_dir + "/snapshot_benchmark.snap";
+        String compressed_path = out_dir + "/snapshot_benchmark.snap.z";
+
+        long time = System.nanoTime();
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(java_path)))) {
+            out.writeObject(obj);
+        }
+        long java_save = System.nanoTime() - time;
+
+        time = System.nanoTime();
+        Object java_obj;
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(java_path)))) {
+            java_obj = in.readObject();
+        }
+        long java_load = System.nanoTime() - time;
+
+        time = System.nanoTime();
+        Snapshots.save(obj, snapshot_path, false);
+        long snapshot_save = System.nanoTime() - time;
+
+        time = System.nanoTime();
+        Object snapshot_obj = Snapshots.load(snapshot_path);
+        long snapshot_load = System.nanoTime() - time;
+
+        time = System.nanoTime();
+        Snapshots.save(obj, compressed_path, true);
+        long compressed_save = System.nanoTime() - time;
+
+        time = System.nanoTime();
+        Object compressed_obj = Snapshots.load(compressed_path);
+        long compressed_load = System.nanoTime() - time;
+
+        System.out.println(name);
+        print("java serialization", java_save, java_load, java_path, java_obj.equals(obj));
+        print("snapshot", snapshot_save, snapshot_load, snapshot_path, snapshot_obj.equals(obj));
+        print("snapshot compressed", compressed_save, compressed_load, compressed_path, compressed_obj.equals(obj));
+
+        new File(java_path).delete();
+        new File(snapshot_path).delete();
+        new File(compressed_path).delete();
+    }
+
+    private static void print(String format, long save_time, long load_time, String path, boolean equal) {
+        System.out.printf("\t%-20s save=%6dms\tload=%6dms\tsize=%10d bytes\tequal=%s\n", format, save_time / 1000000, load_time / 1000000, new File(path).length(), equal);
+    }
+}
@@ -0,0 +1,15 @@
+package utils;
+
+import java.io.IOException;
+
+/**
+ * Writes and reads the values of a specific type in the snapshot format. Codecs are registered in Snapshots together
+ * with a fixed tag that identifies the type in the snapshot files.
+ *
+ * @param <T>
+ */
+public interface SnapshotCodec<T> {
+    void write(SnapshotOutput out, T value) throws IOException;
+
+    T read(SnapshotInput in) throws IOException;
+}
@@ -0,0 +1,225 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the binary snapshot format written by SnapshotOutput through a buffered NIO file channel.
+ */
+public class SnapshotInput implements Closeable {
+    private final FileChannel channel;
+    //the buffer holds a full block next to the bytes which were not consumed from the previous block.
+    private final ByteBuffer buffer = ByteBuffer.allocate(2 * SnapshotOutput.BLOCK_SIZE);
+    private final boolean compressed;
+    private final int version;
+
+    private Inflater inflater;
+    private ByteBuffer compressed_block;
+    private ByteBuffer block_header;
+
+    public SnapshotInput(String path) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+
+        ByteBuffer header = ByteBuffer.allocate(6);
+        readFully(header);
+        header.flip();
+        if (header.getInt() != SnapshotOutput.MAGIC) {
+            channel.close();
+            throw new IOException("Not a snapshot file: " + path);
+        }
+        version = header.get();
+        if (version > SnapshotOutput.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported snapshot version " + version + " in file " + path);
+        }
+        compressed = (header.get() & SnapshotOutput.FLAG_COMPRESSED) != 0;
+        if (compressed) {
+            inflater = new Inflater();
+            compressed_block = ByteBuffer.allocate(SnapshotOutput.BLOCK_SIZE + SnapshotOutput.BLOCK_SIZE / 2);
+            block_header = ByteBuffer.allocate(8);
+        }
+
+        //start with an empty buffer, which is filled on the first read.
+        buffer.flip();
+    }
+
+    /**
+     * The format version of the snapshot file.
+     *
+     * @return
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public int readByte() throws IOException {
+        ensure(1);
+        return buffer.get();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public int readInt() throws IOException {
+        ensure(4);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException {
+        ensure(8);
+        return buffer.getLong();
+    }
+
+    public double readDouble() throws IOException {
+        ensure(8);
+        return buffer.getDouble();
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length int.");
+    }
+
+    public int readSignedVarInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readSignedVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        throw new IOException("Malformed variable length long.");
+    }
+
+    public String readString() throws IOException {
+        int length = readVarInt();
+        if (buffer.remaining() >= length) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        readBytes(bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void readBytes(byte[] bytes, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining() && !fill()) {
+                throw new EOFException();
+            }
+            int chunk = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            if (!fill()) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Refills the buffer with the next block, keeping the bytes which were not consumed yet.
+     *
+     * @return false if the end of the file was reached.
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        buffer.compact();
+        if (!compressed) {
+            int read = channel.read(buffer);
+            buffer.flip();
+            return read > 0;
+        }
+
+        block_header.clear();
+        if (!readFully(block_header)) {
+            buffer.flip();
+            return false;
+        }
+        block_header.flip();
+        int raw_length = block_header.getInt();
+        int compressed_length = block_header.getInt();
+
+        if (compressed_length == 0) {
+            ByteBuffer raw = buffer.duplicate();
+            raw.limit(raw.position() + raw_length);
+            readFully(raw);
+            buffer.position(buffer.position() + raw_length);
+        } else {
+            compressed_block.clear();
+            compressed_block.limit(compressed_length);
+            readFully(compressed_block);
+            inflater.reset();
+            inflater.setInput(compressed_block.array(), 0, compressed_length);
+            try {
+                int inflated = inflater.inflate(buffer.array(), buffer.arrayOffset() + buffer.position(), raw_length);
+                if (inflated != raw_length) {
+                    throw new IOException("Corrupted snapshot block.");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupted snapshot block.", e);
+            }
+            buffer.position(buffer.position() + raw_length);
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * Reads from the channel until the buffer is full.
+     *
+     * @param data
+     * @return false in case the end of the channel was reached before reading anything.
+     * @throws IOException
+     */
+    private boolean readFully(ByteBuffer data) throws IOException {
+        int total = 0;
+        while (data.hasRemaining()) {
+            int read = channel.read(data);
+            if (read < 0) {
+                if (total == 0) {
+                    return false;
+                }
+                throw new EOFException();
+            }
+            total += read;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,188 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the binary snapshot format through a buffered NIO file channel. The file starts with a small uncompressed
+ * header (MAGIC, VERSION, flags), which is followed by the content. In case compression is enabled, the content is
+ * written in independent blocks of 64KB, each compressed with the fastest Deflater level:
+ * <pre>
+ *     block: raw_length(int) compressed_length(int) data, where compressed_length=0 denotes an uncompressed block.
+ * </pre>
+ * Integers are written as variable length values, Strings as their UTF-8 bytes prefixed by the byte length.
+ */
+public class SnapshotOutput implements Closeable {
+    public static final int MAGIC = 0x534E4150;
+    public static final byte VERSION = 3;
+    public static final byte FLAG_COMPRESSED = 1;
+    static final int BLOCK_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+    private final boolean compressed;
+
+    private Deflater deflater;
+    private byte[] compressed_block;
+    private ByteBuffer block_header;
+
+    public SnapshotOutput(String path, boolean compressed) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.compressed = compressed;
+
+        ByteBuffer header = ByteBuffer.allocate(6);
+        header.putInt(MAGIC).put(VERSION).put(compressed ? FLAG_COMPRESSED : 0);
+        header.flip();
+        writeFully(header);
+
+        if (compressed) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            compressed_block = new byte[BLOCK_SIZE + BLOCK_SIZE / 2];
+            block_header = ByteBuffer.allocate(8);
+        }
+    }
+
+    public void writeByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    public void writeDouble(double value) throws IOException {
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Writes a non-negative int value (e.g. a size) in 1 to 5 bytes.
+     *
+     * @param value
+     * @throws IOException
+     */
+    public void writeVarInt(int value) throws IOException {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes an int value with zig-zag encoding, so that small negative values take few bytes as well.
+     *
+     * @param value
+     * @throws IOException
+     */
+    public void writeSignedVarInt(int value) throws IOException {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    public void writeSignedVarLong(long value) throws IOException {
+        value = (value << 1) ^ (value >> 63);
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    public void writeBytes(byte[] bytes, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                flushBlock();
+            }
+            int chunk = Math.min(len, buffer.remaining());
+            buffer.put(bytes, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+        } finally {
+            channel.close();
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Writes the buffered content to the channel, compressing it first if necessary.
+     *
+     * @throws IOException
+     */
+    private void flushBlock() throws IOException {
+        buffer.flip();
+        int raw_length = buffer.remaining();
+        if (raw_length == 0) {
+            buffer.clear();
+            return;
+        }
+
+        if (!compressed) {
+            writeFully(buffer);
+            buffer.clear();
+            return;
+        }
+
+        deflater.reset();
+        deflater.setInput(buffer.array(), 0, raw_length);
+        deflater.finish();
+        int compressed_length = deflater.deflate(compressed_block);
+        boolean store_raw = !deflater.finished() || compressed_length >= raw_length;
+
+        block_header.clear();
+        block_header.putInt(raw_length).putInt(store_raw ? 0 : compressed_length);
+        block_header.flip();
+        writeFully(block_header);
+        if (store_raw) {
+            writeFully(buffer);
+        } else {
+            writeFully(ByteBuffer.wrap(compressed_block, 0, compressed_length));
+        }
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package utils;
+
+import entities.WikiSection;
+import entities.WikipediaEntity;
+import gnu.trove.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Saves and loads objects in a compact binary snapshot format, which is much faster to read than Java serialization
+ * for the data structures we typically cache between runs: String/int maps, Trove maps, maps of sets, and
+ * WikipediaEntity/WikiSection trees.
+ * <p>
+ * Every value is written as a type tag followed by its content, where the collections are written as their size
+ * followed by their elements. The concrete collection class (HashMap, TreeMap, LinkedHashMap etc.) is part of the
+ * tag, so that a loaded object can be cast to the same type as the saved one. Values for which there is no codec are
+ * embedded through Java serialization, hence, any Serializable object can be saved.
+ * <p>
+ * Contrary to Java serialization, the format does not preserve object identity: an object which is referenced
+ * several times, e.g. the same set as value of two keys, is written once per reference and loaded as separate equal
+ * copies, and an object which references itself cannot be saved. For this reason FileUtils.saveObject keeps writing
+ * Java serialization, and the snapshot format is used only when asked for through FileUtils.saveSnapshot.
+ * <p>
+ * Additional types can be supported by registering a SnapshotCodec with a tag between 64 and 127.
+ */
+public class Snapshots {
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_INT = 2;
+    private static final int TAG_LONG = 3;
+    private static final int TAG_DOUBLE = 4;
+    private static final int TAG_BOOLEAN = 5;
+    private static final int TAG_HASH_MAP = 6;
+    private static final int TAG_TREE_MAP = 7;
+    private static final int TAG_LINKED_HASH_MAP = 8;
+    private static final int TAG_HASH_SET = 9;
+    private static final int TAG_TREE_SET = 10;
+    private static final int TAG_LINKED_HASH_SET = 11;
+    private static final int TAG_ARRAY_LIST = 12;
+    private static final int TAG_LINKED_LIST = 13;
+    private static final int TAG_SIMPLE_ENTRY = 14;
+    private static final int TAG_T_HASH_MAP = 15;
+    private static final int TAG_T_INT_INT_MAP = 16;
+    private static final int TAG_T_INT_SET = 17;
+    private static final int TAG_T_OBJECT_INT_MAP = 18;
+    private static final int TAG_SERIALIZED = 63;
+
+    public static final int MIN_CUSTOM_TAG = 64;
+    public static final int MAX_CUSTOM_TAG = 127;
+
+    private static final SnapshotCodec<?>[] codecs_by_tag = new SnapshotCodec<?>[MAX_CUSTOM_TAG + 1];
+    private static final Map<Class<?>, Integer> tags_by_class = new HashMap<>();
+
+    static {
+        register(64, WikipediaEntity.class, new SnapshotCodec<WikipediaEntity>() {
+            @Override
+            public void write(SnapshotOutput out, WikipediaEntity value) throws IOException {
+                value.writeSnapshot(out);
+            }
+
+            @Override
+            public WikipediaEntity read(SnapshotInput in) throws IOException {
+                return WikipediaEntity.readSnapshot(in);
+            }
+        });
+        register(65, WikiSection.class, new SnapshotCodec<WikiSection>() {
+            @Override
+            public void write(SnapshotOutput out, WikiSection value) throws IOException {
+                value.writeSnapshot(out);
+            }
+
+            @Override
+            public WikiSection read(SnapshotInput in) throws IOException {
+                return WikiSection.readSnapshot(in);
+            }
+        });
+    }
+
+    /**
+     * Registers a codec for a specific class. The tag is stored in the snapshot files, hence, it must not change once
+     * snapshots have been written with it.
+     *
+     * @param tag
+     * @param type
+     * @param codec
+     * @param <T>
+     */
+    public static synchronized <T> void register(int tag, Class<T> type, SnapshotCodec<T> codec) {
+        if (tag < MIN_CUSTOM_TAG || tag > MAX_CUSTOM_TAG) {
+            throw new IllegalArgumentException("Custom snapshot tags must be between " + MIN_CUSTOM_TAG + " and " + MAX_CUSTOM_TAG);
+        }
+        if (codecs_by_tag[tag] != null && !type.equals(classForTag(tag))) {
+            throw new IllegalArgumentException("The snapshot tag " + tag + " is already registered.");
+        }
+        codecs_by_tag[tag] = codec;
+        tags_by_class.put(type, tag);
+    }
+
+    private static Class<?> classForTag(int tag) {
+        for (Map.Entry<Class<?>, Integer> entry : tags_by_class.entrySet()) {
+            if (entry.getValue() == tag) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Saves an object into a snapshot file.
+     *
+     * @param obj
+     * @param path
+     * @param compressed whether the content is compressed in blocks.
+     * @throws IOException
+     */
+    public static void save(Object obj, String path, boolean compressed) throws IOException {
+        try (SnapshotOutput out = new SnapshotOutput(path, compressed)) {
+            writeValue(out, obj);
+        }
+    }
+
+    /**
+     * Loads an object from a snapshot file.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static Object load(String path) throws IOException {
+        try (SnapshotInput in = new SnapshotInput(path)) {
+            return readValue(in);
+        }
+    }
+
+    /**
+     * Check if a file is in the snapshot format, otherwise it is most likely a Java serialized object.
+     *
+     * @param path
+     * @return
+     */
+    public static boolean isSnapshot(String path) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(path))) {
+            return in.readInt() == SnapshotOutput.MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a tagged value.
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public static void writeValue(SnapshotOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+            return;
+        }
+
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            out.writeByte(TAG_STRING);
+            out.writeString((String) value);
+        } else if (type == Integer.class) {
+            out.writeByte(TAG_INT);
+            out.writeSignedVarInt((Integer) value);
+        } else if (type == Long.class) {
+            out.writeByte(TAG_LONG);
+            out.writeSignedVarLong((Long) value);
+        } else if (type == Double.class) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (type == Boolean.class) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (type == HashMap.class) {
+            writeMap(out, TAG_HASH_MAP, (Map<Object, Object>) value);
+        } else if (type == TreeMap.class && ((TreeMap<?, ?>) value).comparator() == null) {
+            writeMap(out, TAG_TREE_MAP, (Map<Object, Object>) value);
+        } else if (type == LinkedHashMap.class) {
+            writeMap(out, TAG_LINKED_HASH_MAP, (Map<Object, Object>) value);
+        } else if (type == THashMap.class) {
+            writeMap(out, TAG_T_HASH_MAP, (Map<Object, Object>) value);
+        } else if (type == HashSet.class) {
+            writeCollection(out, TAG_HASH_SET, (Collection<?>) value);
+        } else if (type == TreeSet.class && ((TreeSet<?>) value).comparator() == null) {
+            writeCollection(out, TAG_TREE_SET, (Collection<?>) value);
+        } else if (type == LinkedHashSet.class) {
+            writeCollection(out, TAG_LINKED_HASH_SET, (Collection<?>) value);
+        } else if (type == ArrayList.class) {
+            writeCollection(out, TAG_ARRAY_LIST, (Collection<?>) value);
+        } else if (type == LinkedList.class) {
+            writeCollection(out, TAG_LINKED_LIST, (Collection<?>) value);
+        } else if (type == AbstractMap.SimpleEntry.class) {
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) value;
+            out.writeByte(TAG_SIMPLE_ENTRY);
+            writeValue(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        } else if (type == TIntIntHashMap.class) {
+            TIntIntHashMap map = (TIntIntHashMap) value;
+            out.writeByte(TAG_T_INT_INT_MAP);
+            out.writeVarInt(map.size());
+            for (TIntIntIterator it = map.iterator(); it.hasNext(); ) {
+                it.advance();
+                out.writeSignedVarInt(it.key());
+                out.writeSignedVarInt(it.value());
+            }
+        } else if (type == TIntHashSet.class) {
+            TIntHashSet set = (TIntHashSet) value;
+            out.writeByte(TAG_T_INT_SET);
+            out.writeVarInt(set.size());
+            for (TIntIterator it = set.iterator(); it.hasNext(); ) {
+                out.writeSignedVarInt(it.next());
+            }
+        } else if (type == TObjectIntHashMap.class) {
+            TObjectIntHashMap<Object> map = (TObjectIntHashMap<Object>) value;
+            out.writeByte(TAG_T_OBJECT_INT_MAP);
+            out.writeVarInt(map.size());
+            for (TObjectIntIterator<Object> it = map.iterator(); it.hasNext(); ) {
+                it.advance();
+                writeValue(out, it.key());
+                out.writeSignedVarInt(it.value());
+            }
+        } else if (tags_by_class.containsKey(type)) {
+            int tag = tags_by_class.get(type);
+            out.writeByte(tag);
+            ((SnapshotCodec<Object>) codecs_by_tag[tag]).write(out, value);
+        } else {
+            writeSerialized(out, value);
+        }
+    }
+
+    /**
+     * Reads a tagged value.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static Object readValue(SnapshotInput in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return in.readString();
+            case TAG_INT:
+                return in.readSignedVarInt();
+            case TAG_LONG:
+                return in.readSignedVarLong();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_HASH_MAP: {
+                int size = in.readVarInt();
+                return readMap(in, new HashMap<>(capacity(size)), size);
+            }
+            case TAG_TREE_MAP:
+                return readMap(in, new TreeMap<>(), in.readVarInt());
+            case TAG_LINKED_HASH_MAP: {
+                int size = in.readVarInt();
+                return readMap(in, new LinkedHashMap<>(capacity(size)), size);
+            }
+            case TAG_T_HASH_MAP: {
+                int size = in.readVarInt();
+                return readMap(in, new THashMap<>(capacity(size)), size);
+            }
+            case TAG_HASH_SET: {
+                int size = in.readVarInt();
+                return readCollection(in, new HashSet<>(capacity(size)), size);
+            }
+            case TAG_TREE_SET:
+                return readCollection(in, new TreeSet<>(), in.readVarInt());
+            case TAG_LINKED_HASH_SET: {
+                int size = in.readVarInt();
+                return readCollection(in, new LinkedHashSet<>(capacity(size)), size);
+            }
+            case TAG_ARRAY_LIST: {
+                int size = in.readVarInt();
+                return readCollection(in, new ArrayList<>(size), size);
+            }
+            case TAG_LINKED_LIST:
+                return readCollection(in, new LinkedList<>(), in.readVarInt());
+            case TAG_SIMPLE_ENTRY: {
+                Object key = readValue(in);
+                return new AbstractMap.SimpleEntry<>(key, readValue(in));
+            }
+            case TAG_T_INT_INT_MAP: {
+                int size = in.readVarInt();
+                TIntIntHashMap map = new TIntIntHashMap(capacity(size));
+                for (int i = 0; i < size; i++) {
+                    int key = in.readSignedVarInt();
+                    map.put(key, in.readSignedVarInt());
+                }
+                return map;
+            }
+            case TAG_T_INT_SET: {
+                int size = in.readVarInt();
+                TIntHashSet set = new TIntHashSet(capacity(size));
+                for (int i = 0; i < size; i++) {
+                    set.add(in.readSignedVarInt());
+                }
+                return set;
+            }
+            case TAG_T_OBJECT_INT_MAP: {
+                int size = in.readVarInt();
+                TObjectIntHashMap<Object> map = new TObjectIntHashMap<>(capacity(size));
+                for (int i = 0; i < size; i++) {
+                    Object key = readValue(in);
+                    map.put(key, in.readSignedVarInt());
+                }
+                return map;
+            }
+            case TAG_SERIALIZED:
+                return readSerialized(in);
+            default:
+                if (tag >= MIN_CUSTOM_TAG && tag <= MAX_CUSTOM_TAG && codecs_by_tag[tag] != null) {
+                    return codecs_by_tag[tag].read(in);
+                }
+                throw new IOException("Unknown snapshot tag " + tag);
+        }
+    }
+
+    private static int capacity(int size) {
+        return Math.max((int) (size / 0.75f) + 1, 16);
+    }
+
+    private static void writeMap(SnapshotOutput out, int tag, Map<Object, Object> map) throws IOException {
+        out.writeByte(tag);
+        out.writeVarInt(map.size());
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            writeValue(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static Map<Object, Object> readMap(SnapshotInput in, Map<Object, Object> map, int size) throws IOException {
+        for (int i = 0; i < size; i++) {
+            Object key = readValue(in);
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private static void writeCollection(SnapshotOutput out, int tag, Collection<?> collection) throws IOException {
+        out.writeByte(tag);
+        out.writeVarInt(collection.size());
+        for (Object value : collection) {
+            writeValue(out, value);
+        }
+    }
+
+    private static Collection<Object> readCollection(SnapshotInput in, Collection<Object> collection, int size) throws IOException {
+        for (int i = 0; i < size; i++) {
+            collection.add(readValue(in));
+        }
+        return collection;
+    }
+
+    private static void writeSerialized(SnapshotOutput out, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(value);
+        oos.close();
+
+        out.writeByte(TAG_SERIALIZED);
+        out.writeVarInt(bytes.size());
+        out.writeBytes(bytes.toByteArray(), 0, bytes.size());
+    }
+
+    private static Object readSerialized(SnapshotInput in) throws IOException {
+        byte[] bytes = new byte[in.readVarInt()];
+        in.readBytes(bytes, 0, bytes.length);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
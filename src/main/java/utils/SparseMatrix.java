@@ -0,0 +1,556 @@
+package utils;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A read-only sparse matrix with String row and column keys and double values, stored in the compressed sparse row
+ * (CSR) format. The row and column keys are dictionary encoded into sorted arrays, and the cells are stored in
+ * primitive arrays: the offset of each row, and the column id and value of each cell, where the cells of a row are
+ * sorted by column. A cell takes 12 bytes, instead of the entry objects of a TreeMap<String, TreeMap<String, Double>>.
+ * <p>
+ * The matrix can be saved into a binary file, which is loaded without parsing, either onto the heap or memory mapped,
+ * where only the keys are kept on the heap. The binary layout of the file is the following:
+ * <pre>
+ *     header: MAGIC(int) VERSION(int) num_rows(int) num_columns(int) num_cells(long) keys_length(long)
+ *     keys: the row keys followed by the column keys, each as length(int) key(UTF-8)
+ *     arrays: row offsets(int * (num_rows + 1)), column ids(int * num_cells), values(double * num_cells)
+ * </pre>
+ */
+public class SparseMatrix implements Iterable<SparseMatrix.Row>, Closeable {
+    public static final int MAGIC = 0x53504D58;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+
+    private final String[] row_keys;
+    private final String[] column_keys;
+    private final int num_cells;
+
+    //the arrays on the heap, or null in case the matrix is memory mapped.
+    private int[] row_offsets;
+    private int[] columns;
+    private double[] values;
+
+    //the memory mapped arrays.
+    private MappedFile file;
+    private long row_offsets_pos;
+    private long columns_pos;
+    private long values_pos;
+
+    private SparseMatrix(String[] row_keys, String[] column_keys, int[] row_offsets, int[] columns, double[] values) {
+        this.row_keys = row_keys;
+        this.column_keys = column_keys;
+        this.row_offsets = row_offsets;
+        this.columns = columns;
+        this.values = values;
+        this.num_cells = row_offsets[row_keys.length];
+    }
+
+    private SparseMatrix(String[] row_keys, String[] column_keys, int num_cells, MappedFile file, long arrays_pos) {
+        this.row_keys = row_keys;
+        this.column_keys = column_keys;
+        this.num_cells = num_cells;
+        this.file = file;
+        this.row_offsets_pos = arrays_pos;
+        this.columns_pos = row_offsets_pos + 4L * (row_keys.length + 1);
+        this.values_pos = columns_pos + 4L * num_cells;
+    }
+
+    public int getNumRows() {
+        return row_keys.length;
+    }
+
+    public int getNumColumns() {
+        return column_keys.length;
+    }
+
+    public int getNumCells() {
+        return num_cells;
+    }
+
+    public boolean isMapped() {
+        return file != null;
+    }
+
+    /**
+     * The id of a row key, which is its position in the sorted row keys.
+     *
+     * @param row
+     * @return the id, or -1 in case the row does not exist.
+     */
+    public int getRowId(String row) {
+        int id = Arrays.binarySearch(row_keys, row);
+        return id < 0 ? -1 : id;
+    }
+
+    /**
+     * The id of a column key, which is its position in the sorted column keys.
+     *
+     * @param column
+     * @return the id, or -1 in case the column does not exist.
+     */
+    public int getColumnId(String column) {
+        int id = Arrays.binarySearch(column_keys, column);
+        return id < 0 ? -1 : id;
+    }
+
+    public String getRowKey(int row_id) {
+        return row_keys[row_id];
+    }
+
+    public String getColumnKey(int column_id) {
+        return column_keys[column_id];
+    }
+
+    private int rowOffset(int row_id) {
+        return file == null ? row_offsets[row_id] : file.getInt(row_offsets_pos + 4L * row_id);
+    }
+
+    private int column(int cell) {
+        return file == null ? columns[cell] : file.getInt(columns_pos + 4L * cell);
+    }
+
+    private double value(int cell) {
+        return file == null ? values[cell] : file.getDouble(values_pos + 8L * cell);
+    }
+
+    /**
+     * Finds a cell through binary search on the columns of its row.
+     *
+     * @param row_id
+     * @param column_id
+     * @return the position of the cell, or -1 in case the cell does not exist.
+     */
+    private int findCell(int row_id, int column_id) {
+        int low = rowOffset(row_id);
+        int high = rowOffset(row_id + 1) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int column = column(mid);
+            if (column < column_id) {
+                low = mid + 1;
+            } else if (column > column_id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param row_id
+     * @param column_id
+     * @param missing_value the value returned for cells which are not in the matrix.
+     * @return
+     */
+    public double get(int row_id, int column_id, double missing_value) {
+        if (row_id < 0 || column_id < 0) {
+            return missing_value;
+        }
+        int cell = findCell(row_id, column_id);
+        return cell < 0 ? missing_value : value(cell);
+    }
+
+    public double get(String row, String column, double missing_value) {
+        return get(getRowId(row), getColumnId(column), missing_value);
+    }
+
+    public boolean contains(String row, String column) {
+        int row_id = getRowId(row);
+        int column_id = getColumnId(column);
+        return row_id >= 0 && column_id >= 0 && findCell(row_id, column_id) >= 0;
+    }
+
+    /**
+     * Returns a view on a single row.
+     *
+     * @param row_id
+     * @return
+     */
+    public Row getRow(int row_id) {
+        return new Row(row_id);
+    }
+
+    /**
+     * Returns a view on a single row.
+     *
+     * @param row
+     * @return the row, or null in case the row does not exist.
+     */
+    public Row getRow(String row) {
+        int row_id = getRowId(row);
+        return row_id < 0 ? null : new Row(row_id);
+    }
+
+    /**
+     * Iterates over the rows in the order of their keys.
+     *
+     * @return
+     */
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<Row>() {
+            int row_id = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row_id < row_keys.length;
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new Row(row_id++);
+            }
+        };
+    }
+
+    /**
+     * A view on the cells of a row, which are sorted by their column keys.
+     */
+    public class Row {
+        private final int row_id;
+        private final int start;
+        private final int end;
+
+        private Row(int row_id) {
+            this.row_id = row_id;
+            this.start = rowOffset(row_id);
+            this.end = rowOffset(row_id + 1);
+        }
+
+        public int getRowId() {
+            return row_id;
+        }
+
+        public String getKey() {
+            return row_keys[row_id];
+        }
+
+        /**
+         * The number of cells in the row.
+         *
+         * @return
+         */
+        public int size() {
+            return end - start;
+        }
+
+        public int getColumnId(int i) {
+            return column(start + i);
+        }
+
+        public String getColumnKey(int i) {
+            return column_keys[column(start + i)];
+        }
+
+        public double getValue(int i) {
+            return value(start + i);
+        }
+
+        public double get(String column, double missing_value) {
+            return SparseMatrix.this.get(row_id, SparseMatrix.this.getColumnId(column), missing_value);
+        }
+
+        /**
+         * Copies the row into a map, in the format of FileUtils.readMatrix.
+         *
+         * @return
+         */
+        public Map<String, Double> toMap() {
+            Map<String, Double> map = new TreeMap<>();
+            for (int i = 0; i < size(); i++) {
+                map.put(getColumnKey(i), getValue(i));
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Writes the matrix into the binary format.
+     *
+     * @param out_path
+     * @throws IOException
+     */
+    public void save(String out_path) throws IOException {
+        ByteArrayOutputStream key_bytes = new ByteArrayOutputStream();
+        DataOutputStream keys_out = new DataOutputStream(key_bytes);
+        for (String[] keys : new String[][]{row_keys, column_keys}) {
+            for (String key : keys) {
+                byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+                keys_out.writeInt(bytes.length);
+                keys_out.write(bytes);
+            }
+        }
+        keys_out.flush();
+
+        BinaryFiles.writeAtomically(out_path, tmp_file -> {
+            try (FileChannel channel = FileChannel.open(tmp_file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(row_keys.length).putInt(column_keys.length);
+                buffer.putLong(num_cells).putLong(key_bytes.size());
+                byte[] keys = key_bytes.toByteArray();
+                for (int pos = 0; pos < keys.length; ) {
+                    int length = Math.min(buffer.remaining(), keys.length - pos);
+                    buffer.put(keys, pos, length);
+                    pos += length;
+                    if (!buffer.hasRemaining()) {
+                        BinaryFiles.flush(buffer, channel);
+                    }
+                }
+                for (int i = 0; i <= row_keys.length; i++) {
+                    if (buffer.remaining() < 4) {
+                        BinaryFiles.flush(buffer, channel);
+                    }
+                    buffer.putInt(rowOffset(i));
+                }
+                for (int i = 0; i < num_cells; i++) {
+                    if (buffer.remaining() < 4) {
+                        BinaryFiles.flush(buffer, channel);
+                    }
+                    buffer.putInt(column(i));
+                }
+                for (int i = 0; i < num_cells; i++) {
+                    if (buffer.remaining() < 8) {
+                        BinaryFiles.flush(buffer, channel);
+                    }
+                    buffer.putDouble(value(i));
+                }
+                BinaryFiles.flush(buffer, channel);
+            }
+        });
+    }
+
+    /**
+     * Loads a matrix from the binary format.
+     *
+     * @param path
+     * @param mapped map the arrays into memory instead of reading them onto the heap.
+     * @return
+     * @throws IOException
+     */
+    public static SparseMatrix open(String path, boolean mapped) throws IOException {
+        try (FileChannel channel = FileChannel.open(new File(path).toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a sparse matrix file: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported sparse matrix version " + version + " in file " + path);
+            }
+            int num_rows = header.getInt();
+            int num_columns = header.getInt();
+            long num_cells = header.getLong();
+            long keys_length = header.getLong();
+            if (num_cells > Integer.MAX_VALUE) {
+                throw new IOException("The sparse matrix " + path + " has too many cells: " + num_cells);
+            }
+
+            DataInputStream keys_in = new DataInputStream(new BufferedInputStream(new BinaryFiles.ChannelInputStream(channel, keys_length, false), 1 << 16));
+            String[] row_keys = readKeys(keys_in, num_rows);
+            String[] column_keys = readKeys(keys_in, num_columns);
+
+            long arrays_pos = HEADER_SIZE + keys_length;
+            if (mapped) {
+                return new SparseMatrix(row_keys, column_keys, (int) num_cells, new MappedFile(path, 8), arrays_pos);
+            }
+
+            channel.position(arrays_pos);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+            buffer.limit(0);
+            int[] row_offsets = new int[num_rows + 1];
+            int[] columns = new int[(int) num_cells];
+            double[] values = new double[(int) num_cells];
+            for (int i = 0; i < row_offsets.length; i++) {
+                row_offsets[i] = ensure(channel, buffer, 4).getInt();
+            }
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = ensure(channel, buffer, 4).getInt();
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ensure(channel, buffer, 8).getDouble();
+            }
+            return new SparseMatrix(row_keys, column_keys, row_offsets, columns, values);
+        }
+    }
+
+    private static String[] readKeys(DataInputStream in, int count) throws IOException {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            keys[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return keys;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Makes sure that the buffer holds at least the given number of bytes, and refills it from the channel otherwise.
+     */
+    private static ByteBuffer ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException();
+                }
+            }
+            buffer.flip();
+        }
+        return buffer;
+    }
+
+    /**
+     * Releases the mapped file, in case the matrix is memory mapped.
+     */
+    @Override
+    public void close() {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    /**
+     * Collects the cells of a matrix, and builds the CSR arrays. The keys are dictionary encoded as they are added,
+     * hence, the builder needs 16 bytes per cell. In case a cell is added several times, the last value is kept.
+     */
+    public static class Builder {
+        private final TObjectIntHashMap<String> row_ids = new TObjectIntHashMap<>();
+        private final TObjectIntHashMap<String> column_ids = new TObjectIntHashMap<>();
+        private final List<String> row_keys = new ArrayList<>();
+        private final List<String> column_keys = new ArrayList<>();
+
+        private int[] rows = new int[1024];
+        private int[] columns = new int[1024];
+        private double[] values = new double[1024];
+        private int size = 0;
+
+        public int size() {
+            return size;
+        }
+
+        public void put(String row, String column, double value) {
+            if (size == rows.length) {
+                if (size == Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("The sparse matrix has too many cells.");
+                }
+                int capacity = (int) Math.min((long) size * 2, Integer.MAX_VALUE - 8);
+                rows = Arrays.copyOf(rows, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            rows[size] = encode(row, row_ids, row_keys);
+            columns[size] = encode(column, column_ids, column_keys);
+            values[size] = value;
+            size++;
+        }
+
+        private static int encode(String key, TObjectIntHashMap<String> ids, List<String> keys) {
+            //the ids are stored shifted by one, since the map returns 0 for missing keys.
+            int id = ids.get(key) - 1;
+            if (id < 0) {
+                id = keys.size();
+                keys.add(key);
+                ids.put(key, id + 1);
+            }
+            return id;
+        }
+
+        /**
+         * Sorts the keys and cells, and builds the matrix.
+         *
+         * @return
+         */
+        public SparseMatrix build() {
+            String[] sorted_rows = row_keys.toArray(new String[0]);
+            String[] sorted_columns = column_keys.toArray(new String[0]);
+            Arrays.sort(sorted_rows);
+            Arrays.sort(sorted_columns);
+            int[] row_map = sortedIds(sorted_rows, row_ids);
+            int[] column_map = sortedIds(sorted_columns, column_ids);
+
+            //counting sort of the cells by row, which keeps the order in which the cells of a row were added.
+            int[] row_offsets = new int[sorted_rows.length + 1];
+            for (int i = 0; i < size; i++) {
+                row_offsets[row_map[rows[i]] + 1]++;
+            }
+            for (int i = 0; i < sorted_rows.length; i++) {
+                row_offsets[i + 1] += row_offsets[i];
+            }
+            int[] next = Arrays.copyOf(row_offsets, sorted_rows.length);
+            int[] cell_order = new int[size];
+            for (int i = 0; i < size; i++) {
+                cell_order[next[row_map[rows[i]]]++] = i;
+            }
+            next = null;
+
+            //sort the cells of each row by column, and keep the last value of duplicate cells.
+            int[] csr_columns = new int[size];
+            double[] csr_values = new double[size];
+            int num_cells = 0;
+            long[] row_cells = new long[0];
+            for (int r = 0; r < sorted_rows.length; r++) {
+                int start = row_offsets[r];
+                int length = row_offsets[r + 1] - start;
+                row_offsets[r] = num_cells;
+                if (row_cells.length < length) {
+                    row_cells = new long[Math.max(length, row_cells.length * 2)];
+                }
+                for (int i = 0; i < length; i++) {
+                    row_cells[i] = ((long) column_map[columns[cell_order[start + i]]] << 32) | i;
+                }
+                Arrays.sort(row_cells, 0, length);
+                for (int i = 0; i < length; i++) {
+                    int column = (int) (row_cells[i] >>> 32);
+                    if (i + 1 < length && (int) (row_cells[i + 1] >>> 32) == column) {
+                        continue;
+                    }
+                    csr_columns[num_cells] = column;
+                    csr_values[num_cells] = values[cell_order[start + (int) row_cells[i]]];
+                    num_cells++;
+                }
+            }
+            row_offsets[sorted_rows.length] = num_cells;
+            if (num_cells < size) {
+                csr_columns = Arrays.copyOf(csr_columns, num_cells);
+                csr_values = Arrays.copyOf(csr_values, num_cells);
+            }
+            return new SparseMatrix(sorted_rows, sorted_columns, row_offsets, csr_columns, csr_values);
+        }
+
+        /**
+         * Maps the ids in the order the keys were added to their positions in the sorted keys.
+         */
+        private static int[] sortedIds(String[] sorted_keys, TObjectIntHashMap<String> ids) {
+            int[] map = new int[sorted_keys.length];
+            for (int i = 0; i < sorted_keys.length; i++) {
+                map[ids.get(sorted_keys[i]) - 1] = i;
+            }
+            return map;
+        }
+    }
+}
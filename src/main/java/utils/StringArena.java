@@ -0,0 +1,365 @@
+package utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A pool of unique strings, which are stored as UTF-8 bytes packed into large byte[] slabs instead of separate String
+ * objects. Each string gets an int id in the order in which it is added, and the strings are found through an open
+ * addressing hash index over the ids, which hashes and compares the UTF-8 bytes directly against a CharSequence or a
+ * byte range, hence, a lookup does not create any objects.
+ * <p>
+ * A string takes its UTF-8 bytes plus about 20 bytes for its length, reference, hash and index slot, compared to the
+ * object headers and UTF-16 chars of a String within a HashSet entry. Strings cannot be removed. Unpaired surrogate
+ * chars are stored as '?', as in String.getBytes. The arena can be read concurrently, but it must not be modified
+ * while it is read. It is used by ArenaStringSet and ArenaStringMap.
+ */
+public class StringArena {
+    private static final int SLAB_SIZE = 1 << 24;
+
+    private byte[][] slabs = new byte[1][];
+    private int num_slabs = 0;
+    private int slab_pos = SLAB_SIZE;
+
+    //for each id the slab (high bits) and offset (low bits) of the string, and the hash of its bytes.
+    private long[] refs = new long[64];
+    private int[] hashes = new int[64];
+    private int size = 0;
+
+    //the open addressing index, which holds id + 1 at each slot, and 0 for empty slots.
+    private int[] table = new int[128];
+    private long num_bytes = 0;
+    private long slab_bytes = 0;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The approximate number of bytes used by the arena.
+     *
+     * @return
+     */
+    public long getMemoryUsage() {
+        return slab_bytes + 12L * refs.length + 4L * table.length;
+    }
+
+    /**
+     * The number of bytes of the stored strings, including their length prefix.
+     *
+     * @return
+     */
+    public long getNumBytes() {
+        return num_bytes;
+    }
+
+    /**
+     * Adds a string in case it does not exist yet.
+     *
+     * @param s
+     * @return the id of the string.
+     */
+    public int add(CharSequence s) {
+        int length = encodedLength(s);
+        int hash = hash(s);
+        int slot = findSlot(s, length, hash);
+        if (table[slot] != 0) {
+            return table[slot] - 1;
+        }
+
+        long ref = allocate(length);
+        byte[] slab = slabs[(int) (ref >>> 32)];
+        int pos = writeLength(slab, (int) ref, length);
+        for (int i = 0; i < s.length(); ) {
+            int cp = codePointAt(s, i);
+            i += Character.charCount(cp);
+            int bytes = encodedLength(cp);
+            int encoded = encode(cp);
+            for (int k = 0; k < bytes; k++) {
+                slab[pos++] = (byte) (encoded >>> (8 * k));
+            }
+        }
+        return insert(slot, ref, hash);
+    }
+
+    /**
+     * Adds a string given as UTF-8 bytes in case it does not exist yet.
+     *
+     * @param bytes
+     * @param off
+     * @param len
+     * @return the id of the string.
+     */
+    public int add(byte[] bytes, int off, int len) {
+        int hash = hash(bytes, off, len);
+        int slot = findSlot(bytes, off, len, hash);
+        if (table[slot] != 0) {
+            return table[slot] - 1;
+        }
+        long ref = allocate(len);
+        byte[] slab = slabs[(int) (ref >>> 32)];
+        int pos = writeLength(slab, (int) ref, len);
+        System.arraycopy(bytes, off, slab, pos, len);
+        return insert(slot, ref, hash);
+    }
+
+    /**
+     * Returns the id of a string.
+     *
+     * @param s
+     * @return the id, or -1 in case the string does not exist.
+     */
+    public int find(CharSequence s) {
+        int slot = findSlot(s, encodedLength(s), hash(s));
+        return table[slot] - 1;
+    }
+
+    /**
+     * Returns the id of a string given as UTF-8 bytes.
+     *
+     * @param bytes
+     * @param off
+     * @param len
+     * @return the id, or -1 in case the string does not exist.
+     */
+    public int find(byte[] bytes, int off, int len) {
+        int slot = findSlot(bytes, off, len, hash(bytes, off, len));
+        return table[slot] - 1;
+    }
+
+    /**
+     * Decodes the string with the given id.
+     *
+     * @param id
+     * @return
+     */
+    public String get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No string with id " + id);
+        }
+        long ref = refs[id];
+        byte[] slab = slabs[(int) (ref >>> 32)];
+        int pos = (int) ref;
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = slab[pos++];
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return new String(slab, pos, length, StandardCharsets.UTF_8);
+    }
+
+    private int insert(int slot, long ref, int hash) {
+        if (size == refs.length) {
+            refs = Arrays.copyOf(refs, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        refs[size] = ref;
+        hashes[size] = hash;
+        table[slot] = ++size;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return size - 1;
+    }
+
+    private void rehash(int capacity) {
+        int[] new_table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (new_table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            new_table[slot] = id + 1;
+        }
+        table = new_table;
+    }
+
+    /**
+     * Reserves the space for a string and its length prefix within a slab. Strings which are longer than a slab get a
+     * slab of their own.
+     */
+    private long allocate(int length) {
+        int needed = length + 5;
+        if (slab_pos + needed > SLAB_SIZE) {
+            if (num_slabs == slabs.length) {
+                slabs = Arrays.copyOf(slabs, num_slabs * 2);
+            }
+            slabs[num_slabs++] = new byte[Math.max(SLAB_SIZE, needed)];
+            slab_bytes += slabs[num_slabs - 1].length;
+            slab_pos = 0;
+        }
+        long ref = ((long) (num_slabs - 1) << 32) | slab_pos;
+        int prefix = 1;
+        for (int value = length >>> 7; value != 0; value >>>= 7) {
+            prefix++;
+        }
+        slab_pos += prefix + length;
+        num_bytes += prefix + length;
+        return ref;
+    }
+
+    private static int writeLength(byte[] slab, int pos, int length) {
+        while ((length & ~0x7F) != 0) {
+            slab[pos++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        slab[pos++] = (byte) length;
+        return pos;
+    }
+
+    /**
+     * Returns the start of the bytes of a stored string, where the stored length has to match the given length.
+     *
+     * @return the position within the slab, or -1 in case the lengths differ.
+     */
+    private int startOf(byte[] slab, int pos, int length) {
+        int stored = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = slab[pos++];
+            stored |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return stored == length ? pos : -1;
+    }
+
+    /**
+     * Probes the index for a string.
+     *
+     * @return the slot of the string, or the empty slot where it would be inserted.
+     */
+    private int findSlot(CharSequence s, int length, int hash) {
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0 || (hashes[id] == hash && equals(id, s, length))) {
+                return slot;
+            }
+        }
+    }
+
+    private int findSlot(byte[] bytes, int off, int len, int hash) {
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0 || (hashes[id] == hash && equals(id, bytes, off, len))) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean equals(int id, CharSequence s, int length) {
+        byte[] slab = slabs[(int) (refs[id] >>> 32)];
+        int pos = startOf(slab, (int) refs[id], length);
+        if (pos < 0) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); ) {
+            int cp = codePointAt(s, i);
+            i += Character.charCount(cp);
+            int bytes = encodedLength(cp);
+            int encoded = encode(cp);
+            for (int k = 0; k < bytes; k++) {
+                if (slab[pos++] != (byte) (encoded >>> (8 * k))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean equals(int id, byte[] bytes, int off, int len) {
+        byte[] slab = slabs[(int) (refs[id] >>> 32)];
+        int pos = startOf(slab, (int) refs[id], len);
+        if (pos < 0) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (slab[pos + i] != bytes[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The code point at a position, where unpaired surrogates are replaced by '?'.
+     */
+    private static int codePointAt(CharSequence s, int i) {
+        char c = s.charAt(i);
+        if (!Character.isSurrogate(c)) {
+            return c;
+        }
+        if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            return Character.toCodePoint(c, s.charAt(i + 1));
+        }
+        return '?';
+    }
+
+    private static int encodedLength(int cp) {
+        return cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+    }
+
+    private static int encodedLength(CharSequence s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); ) {
+            int cp = codePointAt(s, i);
+            i += Character.charCount(cp);
+            length += encodedLength(cp);
+        }
+        return length;
+    }
+
+    /**
+     * Encodes a code point into UTF-8, where the first byte is in the lowest bits.
+     */
+    private static int encode(int cp) {
+        if (cp < 0x80) {
+            return cp;
+        } else if (cp < 0x800) {
+            return (0xC0 | (cp >>> 6)) | ((0x80 | (cp & 0x3F)) << 8);
+        } else if (cp < 0x10000) {
+            return (0xE0 | (cp >>> 12)) | ((0x80 | ((cp >>> 6) & 0x3F)) << 8) | ((0x80 | (cp & 0x3F)) << 16);
+        }
+        return (0xF0 | (cp >>> 18)) | ((0x80 | ((cp >>> 12) & 0x3F)) << 8) | ((0x80 | ((cp >>> 6) & 0x3F)) << 16) | ((0x80 | (cp & 0x3F)) << 24);
+    }
+
+    /**
+     * The FNV-1a hash of the UTF-8 bytes of a string, followed by a final mix so that the low bits can be used as slot.
+     */
+    private static int hash(CharSequence s) {
+        int h = 0x811C9DC5;
+        for (int i = 0; i < s.length(); ) {
+            int cp = codePointAt(s, i);
+            i += Character.charCount(cp);
+            int bytes = encodedLength(cp);
+            int encoded = encode(cp);
+            for (int k = 0; k < bytes; k++) {
+                h = (h ^ ((encoded >>> (8 * k)) & 0xFF)) * 0x01000193;
+            }
+        }
+        return mix(h);
+    }
+
+    private static int hash(byte[] bytes, int off, int len) {
+        int h = 0x811C9DC5;
+        for (int i = off; i < off + len; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * 0x01000193;
+        }
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -329,7 +329,7 @@ public class Utils {
         switch (ngrams) {
             case 1:
                 for (String token : sentence_text) {
-                    String token_tmp = token.replaceAll("[^A-Za-z0-9]", "").intern();
+                    String token_tmp = Interner.current().intern(token.replaceAll("[^A-Za-z0-9]", ""));
                     if (token_tmp.isEmpty() || stop_words.contains(token_tmp) || !StringUtils.isAlpha(token_tmp)) {
                         continue;
                     }
@@ -342,14 +342,14 @@ public class Utils {
                     if ((k + 1) >= sentence_text.length) {
                         break;
                     }
-                    String token_1 = sentence_text[k].replaceAll("[^A-Za-z0-9]", "").intern();
-                    String token_2 = sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", "").intern();
+                    String token_1 = Interner.current().intern(sentence_text[k].replaceAll("[^A-Za-z0-9]", ""));
+                    String token_2 = Interner.current().intern(sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", ""));
 
                     if (token_1.isEmpty() || token_2.isEmpty() || !StringUtils.isAlpha(token_1) || !StringUtils.isAlpha(token_2)) {
                         continue;
                     }
 
-                    String token = (token_1 + " " + token_2).intern();
+                    String token = token_1 + " " + token_2;
                     rst.add(token);
                 }
 
@@ -359,15 +359,15 @@ public class Utils {
                     if ((k + 2) >= sentence_text.length) {
                         break;
                     }
-                    String token_1 = sentence_text[k].replaceAll("[^A-Za-z0-9]", "").intern();
-                    String token_2 = sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", "").intern();
-                    String token_3 = sentence_text[k + 2].replaceAll("[^A-Za-z0-9]", "").intern();
+                    String token_1 = Interner.current().intern(sentence_text[k].replaceAll("[^A-Za-z0-9]", ""));
+                    String token_2 = Interner.current().intern(sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", ""));
+                    String token_3 = Interner.current().intern(sentence_text[k + 2].replaceAll("[^A-Za-z0-9]", ""));
 
                     if (token_1.isEmpty() || token_2.isEmpty() || token_3.isEmpty() ||
                             !StringUtils.isAlpha(token_1) || !StringUtils.isAlpha(token_2) || !StringUtils.isAlpha(token_3)) {
                         continue;
                     }
-                    String token = (token_1 + " " + token_2 + " " + token_3).intern();
+                    String token = token_1 + " " + token_2 + " " + token_3;
                     rst.add(token);
                 }
                 break;
@@ -389,7 +389,7 @@ public class Utils {
         switch (ngrams) {
             case 1:
                 for (String token : sentence_text) {
-                    String token_tmp = token.replaceAll("[^A-Za-z0-9]", "").intern();
+                    String token_tmp = Interner.current().intern(token.replaceAll("[^A-Za-z0-9]", ""));
                     if (token_tmp.isEmpty() || stop_words.contains(token_tmp) || !StringUtils.isAlpha(token_tmp)) {
                         continue;
                     }
@@ -402,14 +402,14 @@ public class Utils {
                     if ((k + 1) >= sentence_text.length) {
                         break;
                     }
-                    String token_1 = sentence_text[k].replaceAll("[^A-Za-z0-9]", "").intern();
-                    String token_2 = sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", "").intern();
+                    String token_1 = Interner.current().intern(sentence_text[k].replaceAll("[^A-Za-z0-9]", ""));
+                    String token_2 = Interner.current().intern(sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", ""));
 
                     if (token_1.isEmpty() || token_2.isEmpty() || !StringUtils.isAlpha(token_1) || !StringUtils.isAlpha(token_2)) {
                         continue;
                     }
 
-                    String token = (token_1 + " " + token_2).intern();
+                    String token = token_1 + " " + token_2;
                     rst.add(token);
                 }
 
@@ -419,15 +419,15 @@ public class Utils {
                     if ((k + 2) >= sentence_text.length) {
                         break;
                     }
-                    String token_1 = sentence_text[k].replaceAll("[^A-Za-z0-9]", "").intern();
-                    String token_2 = sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", "").intern();
-                    String token_3 = sentence_text[k + 2].replaceAll("[^A-Za-z0-9]", "").intern();
+                    String token_1 = Interner.current().intern(sentence_text[k].replaceAll("[^A-Za-z0-9]", ""));
+                    String token_2 = Interner.current().intern(sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", ""));
+                    String token_3 = Interner.current().intern(sentence_text[k + 2].replaceAll("[^A-Za-z0-9]", ""));
 
                     if (token_1.isEmpty() || token_2.isEmpty() || token_3.isEmpty() ||
                             !StringUtils.isAlpha(token_1) || !StringUtils.isAlpha(token_2) || !StringUtils.isAlpha(token_3)) {
                         continue;
                     }
-                    String token = (token_1 + " " + token_2 + " " + token_3).intern();
+                    String token = token_1 + " " + token_2 + " " + token_3;
                     rst.add(token);
                 }
                 break;
@@ -450,7 +450,7 @@ public class Utils {
         switch (ngrams) {
             case 1:
                 for (String token : sentence_text) {
-                    String token_tmp = token.replaceAll("[^A-Za-z0-9]", "").intern();
+                    String token_tmp = Interner.current().intern(token.replaceAll("[^A-Za-z0-9]", ""));
                     if (token_tmp.isEmpty() || stop_words.contains(token_tmp) || !StringUtils.isAlpha(token_tmp)) {
                         continue;
                     }
@@ -466,14 +466,14 @@ public class Utils {
                     if ((k + 1) >= sentence_text.length) {
                         break;
                     }
-                    String token_1 = sentence_text[k].replaceAll("[^A-Za-z0-9]", "").intern();
-                    String token_2 = sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", "").intern();
+                    String token_1 = Interner.current().intern(sentence_text[k].replaceAll("[^A-Za-z0-9]", ""));
+                    String token_2 = Interner.current().intern(sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", ""));
 
                     if (token_1.isEmpty() || token_2.isEmpty() || !StringUtils.isAlpha(token_1) || !StringUtils.isAlpha(token_2)) {
                         continue;
                     }
 
-                    String token = (token_1 + " " + token_2).intern();
+                    String token = token_1 + " " + token_2;
                     Integer val = rst.get(token);
                     val = val == null ? 0 : val;
                     val += 1;
@@ -486,15 +486,15 @@ public class Utils {
                     if ((k + 2) >= sentence_text.length) {
                         break;
                     }
-                    String token_1 = sentence_text[k].replaceAll("[^A-Za-z0-9]", "").intern();
-                    String token_2 = sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", "").intern();
-                    String token_3 = sentence_text[k + 2].replaceAll("[^A-Za-z0-9]", "").intern();
+                    String token_1 = Interner.current().intern(sentence_text[k].replaceAll("[^A-Za-z0-9]", ""));
+                    String token_2 = Interner.current().intern(sentence_text[k + 1].replaceAll("[^A-Za-z0-9]", ""));
+                    String token_3 = Interner.current().intern(sentence_text[k + 2].replaceAll("[^A-Za-z0-9]", ""));
 
                     if (token_1.isEmpty() || token_2.isEmpty() || token_3.isEmpty() ||
                             !StringUtils.isAlpha(token_1) || !StringUtils.isAlpha(token_2) || !StringUtils.isAlpha(token_3)) {
                         continue;
                     }
-                    String token = (token_1 + " " + token_2 + " " + token_3).intern();
+                    String token = token_1 + " " + token_2 + " " + token_3;
                     Integer val = rst.get(token);
                     val = val == null ? 0 : val;
                     val += 1;
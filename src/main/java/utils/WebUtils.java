@@ -10,19 +10,18 @@ import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.text.StringEscapeUtils;
 import org.jsoup.Jsoup;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -203,10 +202,18 @@ public class WebUtils {
     private static void crawlURLs(Map<String, String> crawl, int threads, String out_dir, String crawl_filter) throws InterruptedException {
         ExecutorService threadPool = Executors.newFixedThreadPool(threads);
 
+        //list the already crawled files once, instead of checking each URL file on the file system.
+        DirectorySnapshot crawled;
+        try {
+            crawled = new DirectorySnapshot(out_dir, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
         crawl.keySet().parallelStream().forEach(url_to_index -> {
             Runnable r = () -> {
                 String url_file = crawl.get(url_to_index);
-                if (FileUtils.fileExists(out_dir + "/" + url_file + ".gz", false) || FileUtils.fileExists(out_dir + "/" + url_file, false)) {
+                if (crawled.contains(url_file + ".gz") || crawled.contains(url_file)) {
                     return;
                 }
 
@@ -250,30 +257,45 @@ public class WebUtils {
 
         System.out.println("Cleaning " + crawl_index.size() + " articles.");
         //in this case the cleaning of files has finished, hence, move to the next step.
-        StringBuffer sb = new StringBuffer();
-
-        for (String url : crawl_index.keySet()) {
-            String file = crawl_index.get(url);
-            String file_name = input_dir + "/" + file + ".gz";
-            if (!FileUtils.fileExists(file_name, true)) {
-                continue;
-            }
-            try {
-                String json_line = cleanANDConvertJSON(file_name, url);
-                if (json_line.isEmpty()) {
+        AsyncFileWriter writer = FileUtils.getAsyncWriter(out_file);
+
+        //read the crawled files on a background thread while the previous ones are being cleaned.
+        DirectorySnapshot crawled = new DirectorySnapshot(input_dir, false);
+        Iterator<String> urls = crawl_index.keySet().iterator();
+        ReadAhead<Map.Entry<String, String>> pages = new ReadAhead<>(() -> {
+            while (urls.hasNext()) {
+                String url = urls.next();
+                String file_name = input_dir + "/" + crawl_index.get(url) + ".gz";
+                if (!crawled.contains(crawl_index.get(url) + ".gz")) {
+                    System.out.println("File doesnt exist... [" + file_name + "]");
                     continue;
                 }
-                sb.append(json_line);
-                System.out.printf("Finished processing file %s\n", file_name);
-            } catch (Exception e) {
-                System.out.printf("Error at file %s with message %s\n", file, e.getMessage());
+                return new AbstractMap.SimpleEntry<>(url, FileUtils.readText(file_name));
             }
-            if (sb.length() > 10000) {
-                FileUtils.saveText(sb.toString(), out_file, true);
-                sb.delete(0, sb.length());
+            return null;
+        }, FileUtils.prefetch_depth > 0 ? FileUtils.prefetch_depth : 16);
+
+        try {
+            while (pages.hasNext()) {
+                Map.Entry<String, String> page = pages.next();
+                String file = crawl_index.get(page.getKey());
+                String file_name = input_dir + "/" + file + ".gz";
+                try {
+                    String json_line = cleanANDConvertJSON(page.getValue(), page.getKey());
+                    if (json_line.isEmpty()) {
+                        continue;
+                    }
+                    writer.write(json_line);
+                    System.out.printf("Finished processing file %s\n", file_name);
+                } catch (BoilerpipeProcessingException | RuntimeException e) {
+                    System.out.printf("Error at file %s with message %s\n", file, e.getMessage());
+                }
             }
+        } finally {
+            pages.close();
+            FileUtils.closeAsyncWriter(out_file);
         }
-        FileUtils.saveText(sb.toString(), out_file, true);
+        System.out.println("Read-ahead of crawled files: " + pages.getStats() + ", writer stall time: " + writer.getStallTime() / 1000000 + "ms");
     }
 
 
@@ -281,13 +303,12 @@ public class WebUtils {
      * Converts to JSON the extracted content from the web page. The fields of the JSON object are:
      * url, date, doc_content, title.
      *
+     * @param doc_content
      * @param url
-     * @param file_name
      * @return
      * @throws BoilerpipeProcessingException
      */
-    private static String cleanANDConvertJSON(String file_name, String url) throws BoilerpipeProcessingException {
-        String doc_content = FileUtils.readText(file_name);
+    private static String cleanANDConvertJSON(String doc_content, String url) throws BoilerpipeProcessingException {
         String text = ArticleExtractor.getInstance().getText(doc_content);
         String title = Jsoup.parse(doc_content).title();
 
@@ -1,6 +1,7 @@
 package utils;
 
 import entities.WikipediaEntity;
+import org.apache.commons.lang3.StringUtils;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -108,8 +109,8 @@ public class WikiQualityUtils {
             //extract all the sections that are marked as contradictory.
             Set<String> contradictory_sections = new HashSet<>();
             for (String section : entity.getSectionKeys()) {
-                String section_text = entity.getSectionText(section);
-                if (section_text.contains(quality_tag)) {
+                //the tag does not span lines, hence, it is found in the raw text as in the text with collapsed new lines.
+                if (StringUtils.contains(entity.getSection(section).getSectionTextView(), quality_tag)) {
                     contradictory_sections.add(section);
                 }
             }
@@ -0,0 +1,103 @@
+package utils;
+
+import entities.WikipediaEntity;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the processing time of the page content through the chain of regular expressions of WikiUtils against the
+ * single pass of the WikiTextLexer, on the first pages of a Wikipedia dump. For each configuration of the flags of
+ * WikipediaEntity it reports the throughput of both, the number of pages with identical content, citations and
+ * sections, and the number of pages which the lexer hands back to the regular expressions.
+ * <p>
+ * Usage: WikiTextBenchmark dump_path [num_pages] [rounds]
+ */
+public class WikiTextBenchmark {
+    public static void main(String[] args) throws Exception {
+        String dump_path = args[0];
+        int num_pages = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        List<String> pages = new ArrayList<>();
+        new WikipediaDumpReader(dump_path).setMaxPages(num_pages).readPages((title, text) -> pages.add(text));
+        long chars = 0;
+        for (String page : pages) {
+            chars += page.length();
+        }
+        System.out.printf("%d pages, %.1f MB of text\n", pages.size(), chars / 1e6);
+
+        for (boolean clean_references : new boolean[]{false, true}) {
+            for (boolean main_sections_only : new boolean[]{true, false}) {
+                run(pages, chars, rounds, clean_references, main_sections_only);
+            }
+        }
+    }
+
+    private static void run(List<String> pages, long chars, int rounds, boolean clean_references, boolean main_sections_only) {
+        long regex_time = Long.MAX_VALUE;
+        long lexer_time = Long.MAX_VALUE;
+        List<WikipediaEntity> regex_entities = null;
+        List<WikipediaEntity> lexer_entities = null;
+        for (int round = 0; round < rounds; round++) {
+            long time = System.nanoTime();
+            regex_entities = process(pages, clean_references, main_sections_only, false);
+            regex_time = Math.min(regex_time, System.nanoTime() - time);
+
+            time = System.nanoTime();
+            lexer_entities = process(pages, clean_references, main_sections_only, true);
+            lexer_time = Math.min(lexer_time, System.nanoTime() - time);
+        }
+
+        int identical = 0;
+        for (int i = 0; i < pages.size(); i++) {
+            if (isIdentical(regex_entities.get(i), lexer_entities.get(i))) {
+                identical++;
+            }
+        }
+        int fallbacks = 0;
+        Pattern section_pattern = Pattern.compile("={2,}(.*?)={2,}");
+        for (String page : pages) {
+            if (new WikiTextLexer(clean_references, true, section_pattern).process(page, new HashMap<>()) == null) {
+                fallbacks++;
+            }
+        }
+
+        System.out.printf("clean_references=%s main_sections_only=%s\n", clean_references, main_sections_only);
+        print("regex chain", regex_time, chars);
+        print("single pass", lexer_time, chars);
+        System.out.printf("\tidentical=%d/%d\tfallbacks=%d\tspeedup=%.2fx\n", identical, pages.size(), fallbacks, (double) regex_time / lexer_time);
+    }
+
+    private static List<WikipediaEntity> process(List<String> pages, boolean clean_references, boolean main_sections_only, boolean single_pass_parsing) {
+        List<WikipediaEntity> entities = new ArrayList<>(pages.size());
+        for (String page : pages) {
+            WikipediaEntity entity = new WikipediaEntity();
+            entity.setCleanReferences(clean_references);
+            entity.setMainSectionsOnly(main_sections_only);
+            entity.setSinglePassParsing(single_pass_parsing);
+            entity.setContent(page);
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    private static boolean isIdentical(WikipediaEntity a, WikipediaEntity b) {
+        if (!a.getContent().equals(b.getContent()) || !a.getEntityCitations().equals(b.getEntityCitations()) || !a.getCitingStatements().equals(b.getCitingStatements())) {
+            return false;
+        }
+        if (!a.getSectionKeys().equals(b.getSectionKeys())) {
+            return false;
+        }
+        for (String section : a.getSectionKeys()) {
+            if (!Objects.equals(a.getSectionText(section), b.getSectionText(section))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void print(String name, long time, long chars) {
+        System.out.printf("\t%-12s time=%6dms\t%6.1f MB/s\n", name, time / 1000000, chars / 1e6 / (time / 1e9));
+    }
+}
@@ -0,0 +1,649 @@
+package utils;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Processes the text of a Wikipedia page in a single scan, instead of the chain of regular expressions which
+ * WikipediaEntity.setContent runs over the full text (removeInfoboxInformaion, removeWikiFileReferences,
+ * removeWikiAnchorReferences, removeCategoryInformation, extractWikiReferences and the section headings), each of which
+ * copies the text. The output is identical to the one of the chain, including the citation ids and the citation
+ * attributes, for the same flags.
+ * <p>
+ * The patterns of the chain match within a single line, hence, the text is read line by line, and each line is
+ * first classified in one pass over its chars. Only the lines which contain markup are matched against the rules of
+ * the chain with hand-written matchers, in the order in which the chain applies them, while the line is in the cache.
+ * Since the chain numbers the citations by stage, e.g. all the <ref>http...</ref> references before the <ref
+ * name=.../> references, the extracted citations are first replaced by placeholder markers, which are numbered once the
+ * whole text is read.
+ * <p>
+ * A few rules of the chain can match across lines, e.g. a <ref> whose </ref> is on a later line, or a second infobox.
+ * For pages with such markup, or with chars which the regular expressions treat as line terminators besides '\n',
+ * process returns null and the page has to be processed through the chain.
+ * <p>
+ * While processing, the lexer reports the infobox, the file references, the links, the categories and the citations
+ * to a Listener.
+ */
+public class WikiTextLexer {
+    //the markers of the extracted citations are "{{" + (MARKER_BASE + index) + "}}", within the private use area.
+    private static final char MARKER_BASE = '\uE000';
+    private static final char MARKER_LAST = '\uF8FF';
+    private static final int MAX_MARKERS = MARKER_LAST - MARKER_BASE + 1;
+
+    //the stages of extractWikiReferences in which the citations are extracted and numbered.
+    private static final int BROKEN_REFERENCE = 0;
+    private static final int NAMED_REFERENCE_WITHOUT_CITATION = 1;
+    private static final int REFERENCE = 2;
+    private static final int NAMED_REFERENCE = 3;
+    private static final int CITATION = 4;
+
+    private final boolean clean_references;
+    private final boolean extract_references;
+    private final Pattern section_pattern;
+    private Listener listener;
+
+    private final List<Marker> markers = new ArrayList<>();
+    private final List<String[]> events = new ArrayList<>();
+    private final List<int[]> headings = new ArrayList<>();
+    private boolean unsupported;
+
+    /**
+     * Receives the markup of a page, all the methods are optional.
+     */
+    public interface Listener {
+        default void onInfobox(String infobox) {
+        }
+
+        default void onFile(String file) {
+        }
+
+        default void onLink(String target, String anchor_text) {
+        }
+
+        default void onCategory(String category) {
+        }
+
+        /**
+         * A citation which is added to the citations of the page. As in extractWikiReferences, a named reference
+         * which is cited several times is reported for each of its citations, and the last one is kept.
+         *
+         * @param id
+         * @param attributes
+         */
+        default void onCitation(int id, Map<String, String> attributes) {
+        }
+    }
+
+    private static class Marker {
+        final int stage;
+        final String text;
+        //the citation within a named reference.
+        final String citation;
+        int id;
+
+        Marker(int stage, String text, String citation) {
+            this.stage = stage;
+            this.text = text;
+            this.citation = citation;
+        }
+    }
+
+    /**
+     * @param clean_references   remove the file references and the link brackets, as in WikipediaEntity.
+     * @param extract_references extract the references and citations into citation markers, as in WikipediaEntity.
+     * @param section_pattern    the pattern of the section headings, which are found within the processed text.
+     */
+    public WikiTextLexer(boolean clean_references, boolean extract_references, Pattern section_pattern) {
+        this.clean_references = clean_references;
+        this.extract_references = extract_references;
+        this.section_pattern = section_pattern;
+    }
+
+    public WikiTextLexer setListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * The start and end offsets of the section headings within the text returned by the last call of process.
+     *
+     * @return
+     */
+    public List<int[]> getHeadings() {
+        return headings;
+    }
+
+    /**
+     * Processes the text of a page.
+     *
+     * @param text
+     * @param citations the map into which the citations are extracted, which is not modified in case the page is not
+     *                  supported.
+     * @return the processed text, or null in case the page has to be processed by the regular expressions.
+     */
+    public String process(String text, Map<Integer, Map<String, String>> citations) {
+        markers.clear();
+        events.clear();
+        headings.clear();
+        unsupported = false;
+
+        //removeInfoboxInformaion: the text before the infobox and the infobox itself are removed.
+        int start = 0;
+        int infobox = text.indexOf("{{Infobox");
+        if (infobox >= 0) {
+            start = infobox + getInfoboxEnd(text, infobox) + 1;
+            if (text.indexOf("{{Infobox", start) >= 0) {
+                return null;
+            }
+            event("infobox", text.substring(infobox, Math.min(start, text.length())));
+        }
+
+        StringBuilder out = new StringBuilder(text.length() - start + 16);
+        boolean first_line = true;
+        for (int pos = start; pos <= text.length(); ) {
+            int eol = text.indexOf('\n', pos);
+            boolean last_line = eol < 0;
+            if (last_line) {
+                eol = text.length();
+            }
+
+            //classify the line in a single pass over its chars.
+            boolean has_markup = false;
+            for (int i = pos; i < eol; i++) {
+                char c = text.charAt(i);
+                if (c == '[' || c == '<' || c == '{') {
+                    has_markup = true;
+                } else if (c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029' || (c >= MARKER_BASE && c <= MARKER_LAST)) {
+                    return null;
+                }
+            }
+
+            if (has_markup || (first_line && extract_references)) {
+                String line = processLine(text.substring(pos, eol), first_line && extract_references && !last_line);
+                if (unsupported || markers.size() > MAX_MARKERS) {
+                    return null;
+                }
+                if (line != null) {
+                    out.append(line);
+                    if (!last_line) {
+                        out.append('\n');
+                    }
+                }
+            } else {
+                out.append(text, pos, eol);
+                if (!last_line) {
+                    out.append('\n');
+                }
+            }
+            first_line = false;
+            pos = eol + 1;
+        }
+
+        String content = assignCitations(out, citations);
+        findHeadings(content);
+        return content;
+    }
+
+    /**
+     * The offset of the closing brace of the infobox relative to its start, as in WikiUtils.extractInfoboxPosition.
+     */
+    private static int getInfoboxEnd(String text, int start) {
+        int depth = 0;
+        int last_pos = 0;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                last_pos = i - start;
+                if (depth == 0) {
+                    return last_pos;
+                }
+            }
+        }
+        return last_pos;
+    }
+
+    /**
+     * Applies the rules of the chain to a line in their order.
+     *
+     * @return the processed line, or null in case the line is removed as the leading section heading.
+     */
+    private String processLine(String line, boolean leading_heading) {
+        if (listener != null && line.contains("Category")) {
+            for (String category : WikiUtils.getCategories(line)) {
+                event("category", category);
+            }
+        }
+        if (clean_references && line.contains("[[")) {
+            line = removeFiles(line);
+            line = removeLinks(line);
+        }
+        line = removeCategories(line);
+        if (!extract_references) {
+            return line;
+        }
+
+        //extractWikiReferences removes a section heading at the very beginning of the text together with its line.
+        if (leading_heading && line.length() >= 4 && line.startsWith("==") && line.endsWith("==")) {
+            return null;
+        }
+        if (line.contains("<ref")) {
+            line = extractBrokenReferences(line);
+            line = extractNamedReferencesWithoutCitations(line);
+            line = extractReferences(line);
+            line = extractNamedReferences(line);
+        }
+        if (line.contains("{{")) {
+            line = extractCitations(line);
+        }
+        return line;
+    }
+
+    /**
+     * removeWikiFileReferences: "[[File" up to the last "]]" of the line.
+     */
+    private String removeFiles(String line) {
+        StringBuilder sb = null;
+        int last = 0;
+        for (int i = line.indexOf("[[File"); i >= 0; i = line.indexOf("[[File", i)) {
+            int p = i + 6;
+            if (p >= line.length()) {
+                unsupported = true;
+                return line;
+            }
+            int end = line.lastIndexOf("]]");
+            if (line.charAt(p) != ']' && end >= p + 1) {
+                sb = sb == null ? new StringBuilder(line.length()) : sb;
+                sb.append(line, last, i);
+                event("file", line.substring(i, end + 2));
+                last = end + 2;
+                i = last;
+            } else if (line.charAt(p) != ']' && line.indexOf(']', p) < 0) {
+                //the pattern continues on the next line.
+                unsupported = true;
+                return line;
+            } else {
+                i++;
+            }
+        }
+        return sb == null ? line : sb.append(line, last, line.length()).toString();
+    }
+
+    /**
+     * removeWikiAnchorReferences: "[[" up to the first "]]", which is replaced by the text after the first "|".
+     */
+    private String removeLinks(String line) {
+        StringBuilder sb = null;
+        int last = 0;
+        for (int i = line.indexOf("[["); i >= 0; i = line.indexOf("[[", last)) {
+            int end = line.indexOf("]]", i + 2);
+            if (end < 0) {
+                break;
+            }
+            sb = sb == null ? new StringBuilder(line.length()) : sb;
+            sb.append(line, last, i);
+            int bar = line.indexOf('|', i + 2);
+            if (bar >= 0 && bar < end) {
+                sb.append(line, bar + 1, end);
+                event("link", line.substring(i + 2, bar), line.substring(bar + 1, end));
+            } else {
+                sb.append(line, i + 2, end);
+                event("link", line.substring(i + 2, end), line.substring(i + 2, end));
+            }
+            last = end + 2;
+        }
+        return sb == null ? line : sb.append(line, last, line.length()).toString();
+    }
+
+    /**
+     * removeCategoryInformation: "[[Category:" up to the last "]]" of the line.
+     */
+    private static String removeCategories(String line) {
+        int i = line.indexOf("[[Category:");
+        if (i < 0) {
+            return line;
+        }
+        int end = line.lastIndexOf("]]");
+        if (end < i + 11) {
+            return line;
+        }
+        return line.substring(0, i) + line.substring(end + 2);
+    }
+
+    /**
+     * extractBrokenReferences: "<ref>htt" or "<ref>[htt" up to the first "</ref>".
+     */
+    private String extractBrokenReferences(String line) {
+        StringBuilder sb = null;
+        int last = 0;
+        for (int i = line.indexOf("<ref>"); i >= 0; i = line.indexOf("<ref>", i)) {
+            int url_start = line.startsWith("[htt", i + 5) ? i + 9 : line.startsWith("htt", i + 5) ? i + 8 : -1;
+            if (url_start < 0) {
+                i++;
+                continue;
+            }
+            int end = line.indexOf("</ref>", url_start);
+            if (end < 0) {
+                break;
+            }
+            String url = line.substring(i, end + 6).replace("<ref>", "").replace("</ref>", "");
+            sb = appendMarker(sb, line, last, i, new Marker(BROKEN_REFERENCE, removeChars(url, "{}[]"), null));
+            last = end + 6;
+            i = last;
+        }
+        return sb == null ? line : sb.append(line, last, line.length()).toString();
+    }
+
+    /**
+     * replaceReferencesWithoutCitations: "<ref" followed by whitespace and "name=" up to the first "/>", or "<ref/>".
+     */
+    private String extractNamedReferencesWithoutCitations(String line) {
+        StringBuilder sb = null;
+        int last = 0;
+        for (int i = line.indexOf("<ref"); i >= 0; i = line.indexOf("<ref", i)) {
+            int end = -1;
+            int name_start = getNameStart(line, i);
+            if (unsupported) {
+                return line;
+            }
+            if (name_start >= 0) {
+                int close = line.indexOf("/>", name_start);
+                end = close < 0 ? -1 : close + 2;
+            }
+            if (end < 0 && line.startsWith("/>", i + 4)) {
+                end = i + 6;
+            }
+            if (end < 0) {
+                i++;
+                continue;
+            }
+            sb = appendMarker(sb, line, last, i, new Marker(NAMED_REFERENCE_WITHOUT_CITATION, line.substring(i, end), null));
+            last = end;
+            i = last;
+        }
+        return sb == null ? line : sb.append(line, last, line.length()).toString();
+    }
+
+    /**
+     * removeReferenceWithoutNameWithCitation: "<ref>" up to the first "</ref>". The pattern of the chain can continue
+     * on the next lines, hence, a "<ref>" without a "</ref>" on its line is not supported.
+     */
+    private String extractReferences(String line) {
+        StringBuilder sb = null;
+        int last = 0;
+        for (int i = line.indexOf("<ref>"); i >= 0; i = line.indexOf("<ref>", last)) {
+            int end = line.indexOf("</ref>", i + 5);
+            if (end < 0) {
+                unsupported = true;
+                return line;
+            }
+            String reference = line.substring(i, end + 6).replace("<ref>", "").replace("</ref>", "");
+            sb = appendMarker(sb, line, last, i, new Marker(REFERENCE, reference, null));
+            last = end + 6;
+        }
+        return sb == null ? line : sb.append(line, last, line.length()).toString();
+    }
+
+    /**
+     * replaceNamedReferencesWithCitations: "<ref" followed by whitespace, "name=" and the name up to the first ">", or
+     * "<ref>", and then up to the first "</ref>".
+     */
+    private String extractNamedReferences(String line) {
+        StringBuilder sb = null;
+        int last = 0;
+        for (int i = line.indexOf("<ref"); i >= 0; i = line.indexOf("<ref", i)) {
+            int end = -1;
+            int name_start = getNameStart(line, i);
+            if (unsupported) {
+                return line;
+            }
+            if (name_start >= 0) {
+                int close = line.indexOf('>', name_start);
+                int ref_end = close < 0 ? -1 : line.indexOf("</ref>", close + 1);
+                end = ref_end < 0 ? -1 : ref_end + 6;
+            }
+            if (end < 0 && line.startsWith(">", i + 4)) {
+                int ref_end = line.indexOf("</ref>", i + 5);
+                end = ref_end < 0 ? -1 : ref_end + 6;
+            }
+            if (end < 0) {
+                i++;
+                continue;
+            }
+            String reference = line.substring(i, end);
+            int cite_start = indexOfCitation(reference, 0);
+            int cite_end = cite_start < 0 ? -1 : reference.indexOf("}}", cite_start + 5);
+            String citation = cite_end < 0 ? null : reference.substring(cite_start, cite_end + 2);
+            sb = appendMarker(sb, line, last, i, new Marker(NAMED_REFERENCE, reference.substring(0, reference.indexOf('>')), citation));
+            last = end;
+            i = last;
+        }
+        return sb == null ? line : sb.append(line, last, line.length()).toString();
+    }
+
+    /**
+     * replaceCitations: "{{Cit" in any case up to the first "}}".
+     */
+    private String extractCitations(String line) {
+        StringBuilder sb = null;
+        int last = 0;
+        for (int i = indexOfCitation(line, 0); i >= 0; i = indexOfCitation(line, last)) {
+            int end = line.indexOf("}}", i + 5);
+            if (end < 0) {
+                break;
+            }
+            sb = appendMarker(sb, line, last, i, new Marker(CITATION, line.substring(i, end + 2), null));
+            last = end + 2;
+        }
+        return sb == null ? line : sb.append(line, last, line.length()).toString();
+    }
+
+    /**
+     * The position of "<ref" followed by at least one whitespace and "name=", as in the pattern
+     * "<ref(\\s+name=(.*?))?" of the chain.
+     *
+     * @return the position after "name=", or -1.
+     */
+    private int getNameStart(String line, int i) {
+        int k = i + 4;
+        while (k < line.length() && isWhitespace(line.charAt(k))) {
+            k++;
+        }
+        if (k == i + 4) {
+            return -1;
+        }
+        if (k == line.length()) {
+            //the whitespace of the pattern continues on the next line.
+            unsupported = true;
+            return -1;
+        }
+        return line.startsWith("name=", k) ? k + 5 : -1;
+    }
+
+    /**
+     * The position of "{{Cit" in any case.
+     */
+    private static int indexOfCitation(String s, int from) {
+        for (int i = s.indexOf("{{", from); i >= 0; i = s.indexOf("{{", i + 1)) {
+            if (i + 5 <= s.length() && (s.charAt(i + 2) | 0x20) == 'c' && (s.charAt(i + 3) | 0x20) == 'i' && (s.charAt(i + 4) | 0x20) == 't') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The chars of the regex class \s.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private StringBuilder appendMarker(StringBuilder sb, String line, int last, int start, Marker marker) {
+        sb = sb == null ? new StringBuilder(line.length()) : sb;
+        sb.append(line, last, start).append("{{").append((char) (MARKER_BASE + markers.size())).append("}}");
+        markers.add(marker);
+        return sb;
+    }
+
+    /**
+     * Numbers the citations in the order of the stages of extractWikiReferences, adds them to the citations, and
+     * replaces the markers with their numbers.
+     */
+    private String assignCitations(StringBuilder out, Map<Integer, Map<String, String>> citations) {
+        if (listener != null) {
+            for (String[] event : events) {
+                switch (event[0]) {
+                    case "infobox":
+                        listener.onInfobox(event[1]);
+                        break;
+                    case "file":
+                        listener.onFile(event[1]);
+                        break;
+                    case "link":
+                        listener.onLink(event[1], event[2]);
+                        break;
+                    case "category":
+                        listener.onCategory(event[1]);
+                        break;
+                }
+            }
+        }
+        if (markers.isEmpty()) {
+            return out.toString();
+        }
+
+        int citation_counter = 0;
+        Map<String, Integer> named_references = new HashMap<>();
+        for (int stage = BROKEN_REFERENCE; stage <= CITATION; stage++) {
+            for (Marker marker : markers) {
+                if (marker.stage != stage) {
+                    continue;
+                }
+                String text = replaceMarkers(marker.text);
+                if (stage == BROKEN_REFERENCE) {
+                    marker.id = citation_counter++;
+                    Map<String, String> attributes = new HashMap<>();
+                    attributes.put("url", text);
+                    addCitation(citations, marker.id, attributes);
+                } else if (stage == NAMED_REFERENCE_WITHOUT_CITATION || stage == NAMED_REFERENCE) {
+                    String name = stage == NAMED_REFERENCE ? getReferenceName(text) : getReferenceNameWithoutCitation(text);
+                    Integer id = named_references.get(name);
+                    if (id == null) {
+                        id = citation_counter++;
+                        named_references.put(name, id);
+                    }
+                    marker.id = id;
+                    if (marker.citation != null) {
+                        addCitation(citations, marker.id, WikiUtils.getCitationAttributes(removeChars(replaceMarkers(marker.citation), "{}")));
+                    }
+                } else {
+                    marker.id = citation_counter++;
+                    addCitation(citations, marker.id, WikiUtils.getCitationAttributes(text));
+                }
+            }
+        }
+        return replaceMarkers(out);
+    }
+
+    private void addCitation(Map<Integer, Map<String, String>> citations, int id, Map<String, String> attributes) {
+        citations.put(id, attributes);
+        if (listener != null) {
+            listener.onCitation(id, attributes);
+        }
+    }
+
+    private String replaceMarkers(CharSequence s) {
+        StringBuilder sb = null;
+        int last = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= MARKER_BASE && c <= MARKER_LAST) {
+                sb = sb == null ? new StringBuilder(s.length() + 16) : sb;
+                sb.append(s, last, i).append(markers.get(c - MARKER_BASE).id);
+                last = i + 1;
+            }
+        }
+        return sb == null ? s.toString() : sb.append(s, last, s.length()).toString();
+    }
+
+    /**
+     * The name of a reference as in replaceReferencesWithoutCitations.
+     */
+    private static String getReferenceNameWithoutCitation(String reference) {
+        return removeChars(removeNamePrefixes(reference, true), "\">/").trim();
+    }
+
+    /**
+     * The name of a reference as in replaceNamedReferencesWithCitations, from the text before the first ">".
+     */
+    private static String getReferenceName(String reference) {
+        return removeChars(removeNamePrefixes(reference, false), "\">").trim();
+    }
+
+    /**
+     * Removes the matches of "<ref\\s+name=", or of "<ref(\\s+name=)?" in case the name is optional.
+     */
+    private static String removeNamePrefixes(String s, boolean name_required) {
+        StringBuilder sb = new StringBuilder(s.length());
+        int last = 0;
+        for (int i = s.indexOf("<ref"); i >= 0; i = s.indexOf("<ref", i)) {
+            int k = i + 4;
+            while (k < s.length() && isWhitespace(s.charAt(k))) {
+                k++;
+            }
+            boolean has_name = k > i + 4 && s.startsWith("name=", k);
+            if (has_name || !name_required) {
+                sb.append(s, last, i);
+                last = has_name ? k + 5 : i + 4;
+                i = last;
+            } else {
+                i++;
+            }
+        }
+        return sb.append(s, last, s.length()).toString();
+    }
+
+    private static String removeChars(String s, String chars) {
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (chars.indexOf(c) >= 0) {
+                if (sb == null) {
+                    sb = new StringBuilder(s.length());
+                    sb.append(s, 0, i);
+                }
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? s : sb.toString();
+    }
+
+    /**
+     * Finds the section headings within the lines of the processed text which contain "==". The patterns of the
+     * headings do not match across lines, hence, the matches are the same as for the whole text.
+     */
+    private void findHeadings(String content) {
+        Matcher matcher = section_pattern.matcher(content);
+        for (int i = content.indexOf("=="); i >= 0; ) {
+            int line_start = content.lastIndexOf('\n', i) + 1;
+            int line_end = content.indexOf('\n', i);
+            line_end = line_end < 0 ? content.length() : line_end;
+            matcher.region(line_start, line_end);
+            while (matcher.find()) {
+                headings.add(new int[]{matcher.start(), matcher.end()});
+            }
+            i = line_end < content.length() ? content.indexOf("==", line_end) : -1;
+        }
+    }
+
+    private void event(String... event) {
+        if (listener != null) {
+            events.add(event);
+        }
+    }
+}
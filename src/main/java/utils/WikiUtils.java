@@ -10,6 +10,7 @@ import java.util.regex.Pattern;
 public class WikiUtils {
     public static final String citation_type_str = "album notes,av media,book,comic,conference,court,encyclopedia,episode,journal,mailing list,map,news,newsgroup,press release,thesis,video game,web";
     public static Set<String> citation_types = new HashSet<>();
+    private static final Pattern category_pattern = Pattern.compile("\\[\\[\\s*Category\\s*:([^\\]|\\n]*)(?:\\|[^\\]\\n]*)?\\]\\]");
 
     /**
      * Gets the named citations from the Wikipedia entity text before deleting them.
@@ -33,6 +34,7 @@ public class WikiUtils {
         //we remove here first the references that are named but do not have a citation (usually these are placed in the end of the entity text).
         Map<String, Integer> named_reference_mappings = new HashMap<>();
         String entity_text = sb_entity.toString();
+        sb_entity = new StringBuffer();
         citation_counter = replaceReferencesWithoutCitations(entity_text, named_reference_mappings, sb_entity, citation_counter);
 
         //remove the references which do not have a name, leave only the citation in that case.
@@ -334,7 +336,7 @@ public class WikiUtils {
                 continue;
             }
 
-            String key = key_s[0].trim().intern();
+            String key = Interner.current().intern(key_s[0].trim());
             String value = s_tmp.substring(s_tmp.indexOf("=") + 1).trim().toLowerCase();
             citation_features.put(key, value);
         }
@@ -363,7 +365,7 @@ public class WikiUtils {
         int end = url_text.indexOf("|");
 
         if (start != -1 && end != -1 && start < end) {
-            String type = url_text.substring(start, end).trim().intern();
+            String type = Interner.current().intern(url_text.substring(start, end).trim());
             if (!citation_types.contains(type.toLowerCase())) {
                 type = "N/A";
             }
@@ -426,6 +428,25 @@ public class WikiUtils {
         return content.replaceAll("\\[\\[Category:(.*)\\]\\]", "");
     }
 
+    /**
+     * Extracts the category names from the [[Category:name|sort key]] links of a Wikipedia page, before they are
+     * removed through removeCategoryInformation.
+     *
+     * @param content
+     * @return
+     */
+    public static Set<String> getCategories(String content) {
+        Set<String> categories = new HashSet<>();
+        Matcher matcher = category_pattern.matcher(content);
+        while (matcher.find()) {
+            String category = matcher.group(1).trim();
+            if (!category.isEmpty()) {
+                categories.add(category);
+            }
+        }
+        return categories;
+    }
+
     /**
      * Removes the infobox information from a Wikipedia page.
      *
@@ -0,0 +1,335 @@
+package utils;
+
+import entities.WikipediaEntity;
+import entities.WikipediaEntityVisitor;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Streams the pages of a Wikipedia XML dump (e.g. enwiki-pages-articles.xml.bz2) as WikipediaEntity objects, instead
+ * of building a DOM of the whole dump through FileUtils.readXMLDocument. The dump is read with a StAX parser from
+ * FileUtils.getFileInputStream, hence, large bz2 and gz dumps are decompressed on several threads.
+ * <p>
+ * Only the title, namespace, redirect flag and the text of the last revision of a page are kept, and the pages are
+ * filtered by their namespace and redirect flag before their text is processed. The entities are created through
+ * the entity factory, such that their flags (e.g. main_sections_only) can be set, and get the categories of the page
+ * before setContent processes the text. With more than one thread, the parser hands the pages over a bounded queue
+ * to a pool of workers, which call setContent and the consumer, hence, the consumer must be thread-safe and at most
+ * queue_size + threads pages are held in memory.
+ */
+public class WikipediaDumpReader {
+    private final String path;
+
+    private Set<Integer> namespaces = new HashSet<>();
+    private boolean skip_redirects = true;
+    private int threads = 1;
+    private int queue_size = 256;
+    private long max_pages = Long.MAX_VALUE;
+    private Supplier<WikipediaEntity> entity_factory = WikipediaEntity::new;
+
+    //marks the end of the pages for the workers.
+    private static final String[] END = new String[0];
+
+    public WikipediaDumpReader(String path) {
+        this.path = path;
+        this.namespaces.add(0);
+    }
+
+    /**
+     * The namespaces of the pages which are read, by default only the articles (namespace 0). Without any namespaces
+     * the pages of all namespaces are read.
+     *
+     * @param namespaces
+     * @return
+     */
+    public WikipediaDumpReader setNamespaces(int... namespaces) {
+        this.namespaces = new HashSet<>();
+        for (int namespace : namespaces) {
+            this.namespaces.add(namespace);
+        }
+        return this;
+    }
+
+    /**
+     * Set whether the redirect pages are skipped, which is the default.
+     *
+     * @param skip_redirects
+     * @return
+     */
+    public WikipediaDumpReader setSkipRedirects(boolean skip_redirects) {
+        this.skip_redirects = skip_redirects;
+        return this;
+    }
+
+    /**
+     * The number of worker threads which process the pages, with a single thread the pages are processed by the
+     * parsing thread.
+     *
+     * @param threads
+     * @return
+     */
+    public WikipediaDumpReader setThreads(int threads) {
+        this.threads = Math.max(threads, 1);
+        return this;
+    }
+
+    /**
+     * The maximal number of parsed pages which wait for a worker.
+     *
+     * @param queue_size
+     * @return
+     */
+    public WikipediaDumpReader setQueueSize(int queue_size) {
+        this.queue_size = Math.max(queue_size, 1);
+        return this;
+    }
+
+    /**
+     * The maximal number of pages which are read, e.g. for a slice at the beginning of a dump. The parsing stops once
+     * this many pages passed the filters.
+     *
+     * @param max_pages the number of pages, values <= 0 read all the pages.
+     * @return
+     */
+    public WikipediaDumpReader setMaxPages(long max_pages) {
+        this.max_pages = max_pages <= 0 ? Long.MAX_VALUE : max_pages;
+        return this;
+    }
+
+    /**
+     * The factory of the entities, which can configure how the content of the entities is processed.
+     *
+     * @param entity_factory
+     * @return
+     */
+    public WikipediaDumpReader setEntityFactory(Supplier<WikipediaEntity> entity_factory) {
+        this.entity_factory = entity_factory;
+        return this;
+    }
+
+    /**
+     * Reads the dump, and hands each page which passes the filters as an entity to the consumer.
+     *
+     * @param consumer
+     * @return the number of entities handed to the consumer.
+     * @throws IOException
+     */
+    public long read(Consumer<WikipediaEntity> consumer) throws IOException {
+        return process(page -> consumer.accept(createEntity(page[0], page[1])));
+    }
+
+    /**
+     * Reads the dump, and streams each page which passes the filters through the visitor (see
+     * WikipediaEntity.parseContent), without creating entities. The pages are parsed with the flags of a single entity
+     * from the entity factory. With more than one thread the pages are visited concurrently, where all the calls for a
+     * page, starting with onPage, are made from the same thread, hence, the visitor must be thread-safe.
+     *
+     * @param visitor
+     * @return the number of visited pages.
+     * @throws IOException
+     */
+    public long visit(WikipediaEntityVisitor visitor) throws IOException {
+        WikipediaEntity parser = entity_factory.get();
+        return process(page -> {
+            visitor.onPage(page[0]);
+            parser.parseContent(page[1], visitor);
+        });
+    }
+
+    /**
+     * Hands the title and text of each page which passes the filters to the page handler, on the worker threads in
+     * case there is more than one thread.
+     */
+    private long process(Consumer<String[]> handler) throws IOException {
+        if (threads == 1) {
+            AtomicLong num_entities = new AtomicLong();
+            parse(page -> {
+                handler.accept(page);
+                num_entities.incrementAndGet();
+            });
+            return num_entities.get();
+        }
+
+        BlockingQueue<String[]> queue = new ArrayBlockingQueue<>(queue_size);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicLong num_entities = new AtomicLong();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(() -> {
+                try {
+                    for (String[] page = queue.take(); page != END; page = queue.take()) {
+                        if (error.get() == null) {
+                            handler.accept(page);
+                            num_entities.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                    //drop the pending pages, the parser stops once it sees the error.
+                    queue.clear();
+                }
+            }, "wikipedia-dump-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        try {
+            parse(page -> {
+                try {
+                    while (!queue.offer(page, 100, TimeUnit.MILLISECONDS)) {
+                        if (error.get() != null) {
+                            throw new IllegalStateException("A worker failed while reading the dump " + path);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while reading the dump " + path);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            error.compareAndSet(null, e);
+        } finally {
+            for (Thread worker : workers) {
+                if (worker.isAlive()) {
+                    try {
+                        while (!queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                            if (error.get() != null) {
+                                queue.clear();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        Throwable e = error.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return num_entities.get();
+    }
+
+    /**
+     * Reads the dump, and hands the title and the raw text of each page which passes the filters to the consumer,
+     * without creating entities.
+     *
+     * @param consumer
+     * @throws IOException
+     */
+    public void readPages(BiConsumer<String, String> consumer) throws IOException {
+        parse(page -> consumer.accept(page[0], page[1]));
+    }
+
+    private WikipediaEntity createEntity(String title, String text) {
+        WikipediaEntity entity = entity_factory.get();
+        entity.setTitle(title);
+        entity.setCategories(WikiUtils.getCategories(text));
+        entity.setContent(text);
+        return entity;
+    }
+
+    /**
+     * Parses the pages of the dump, and hands the title and text of each page which passes the filters to the page
+     * consumer.
+     */
+    private void parse(Consumer<String[]> pages) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            //the JDK parser limits the accumulated size of the entities, e.g. &amp;, which is exceeded by the large dumps.
+            factory.setProperty("http://www.oracle.com/xml/jaxp/properties/totalEntitySizeLimit", 0);
+        } catch (IllegalArgumentException e) {
+            //the limit is specific to the JDK parser.
+        }
+
+        XMLStreamReader reader = null;
+        try (InputStream in = FileUtils.getFileInputStream(path)) {
+            reader = factory.createXMLStreamReader(in);
+            String title = null;
+            String text = null;
+            int namespace = 0;
+            boolean redirect = false;
+            boolean in_page = false;
+            long num_pages = 0;
+
+            while (num_pages < max_pages && reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("page")) {
+                        in_page = true;
+                        title = null;
+                        text = null;
+                        namespace = 0;
+                        redirect = false;
+                    } else if (!in_page) {
+                        continue;
+                    } else if (name.equals("title")) {
+                        title = reader.getElementText();
+                    } else if (name.equals("ns")) {
+                        namespace = Integer.parseInt(reader.getElementText().trim());
+                    } else if (name.equals("redirect")) {
+                        redirect = true;
+                    } else if (name.equals("text") && isAccepted(namespace, redirect)) {
+                        //in case the page has several revisions, the last one is kept.
+                        text = reader.getElementText();
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("page")) {
+                    in_page = false;
+                    if (title != null && text != null && isAccepted(namespace, redirect)) {
+                        pages.accept(new String[]{title, text});
+                        num_pages++;
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not parse the Wikipedia dump " + path, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private boolean isAccepted(int namespace, boolean redirect) {
+        return (namespaces.isEmpty() || namespaces.contains(namespace)) && !(redirect && skip_redirects);
+    }
+}
@@ -0,0 +1,128 @@
+package utils;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Exposes all the file entries of a ZIP archive as (entry name, reader) pairs, without unpacking the archive.
+ * <p>
+ * The entries can be iterated sequentially, where the reader of an entry is closed once the iteration moves to the
+ * next entry, or they can be processed in parallel through forEach. Since the entries are located through the central
+ * directory of the archive, each worker thread reads and decompresses its own entries independently.
+ * <p>
+ * Closing this object closes the archive together with any reader which is still open.
+ */
+public class ZipEntries implements Iterable<Map.Entry<String, BufferedReader>>, Closeable {
+    private final ZipFile zip_file;
+
+    public ZipEntries(String path) throws IOException {
+        this.zip_file = new ZipFile(path);
+    }
+
+    /**
+     * The names of all the file entries in the order of the central directory.
+     *
+     * @return
+     */
+    public List<String> getEntryNames() {
+        List<String> names = new ArrayList<>();
+        for (ZipEntry entry : getFileEntries()) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Returns a reader for a single entry.
+     *
+     * @param name
+     * @return the reader or null in case the entry does not exist.
+     * @throws IOException
+     */
+    public BufferedReader getReader(String name) throws IOException {
+        ZipEntry entry = zip_file.getEntry(name);
+        return entry == null ? null : new BufferedReader(new InputStreamReader(zip_file.getInputStream(entry)));
+    }
+
+    private List<ZipEntry> getFileEntries() {
+        List<ZipEntry> entries = new ArrayList<>();
+        Enumeration<? extends ZipEntry> enumeration = zip_file.entries();
+        while (enumeration.hasMoreElements()) {
+            ZipEntry entry = enumeration.nextElement();
+            if (!entry.isDirectory()) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Iterates sequentially over the file entries. The reader of an entry is valid until the next entry is requested.
+     *
+     * @return
+     */
+    @Override
+    public Iterator<Map.Entry<String, BufferedReader>> iterator() {
+        Iterator<ZipEntry> entries = getFileEntries().iterator();
+        return new Iterator<Map.Entry<String, BufferedReader>>() {
+            BufferedReader current;
+
+            @Override
+            public boolean hasNext() {
+                if (!entries.hasNext()) {
+                    closeCurrent();
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public Map.Entry<String, BufferedReader> next() {
+                closeCurrent();
+                ZipEntry entry = entries.next();
+                try {
+                    current = new BufferedReader(new InputStreamReader(zip_file.getInputStream(entry)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return new AbstractMap.SimpleImmutableEntry<>(entry.getName(), current);
+            }
+
+            private void closeCurrent() {
+                if (current != null) {
+                    try {
+                        current.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    current = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * Processes all the file entries on several threads. The consumer is called concurrently, hence, it must be
+     * thread-safe. The reader of an entry is closed once the consumer returns. In case the consumer fails for an
+     * entry, the remaining entries are skipped and the error is thrown once the running entries are finished.
+     *
+     * @param threads
+     * @param consumer receives the entry name and its reader.
+     * @throws IOException
+     */
+    public void forEach(int threads, BiConsumer<String, BufferedReader> consumer) throws IOException {
+        ParallelTasks.forEach(getFileEntries(), threads, "ZIP entry", entry -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(zip_file.getInputStream(entry)))) {
+                consumer.accept(entry.getName(), reader);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip_file.close();
+    }
+}
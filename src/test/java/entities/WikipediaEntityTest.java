@@ -0,0 +1,85 @@
+package entities;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that entities which were serialized with the original classes, before the sections kept their text as
+ * offsets into the content, can still be loaded. The fixture baseline-entity.ser was written by the original
+ * WikipediaEntity from the page in baseline-entity.txt, with all sections and the citing statements extracted, through
+ * the plain Java serialization of FileUtils.saveObject.
+ */
+public class WikipediaEntityTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String resource(String name) throws URISyntaxException {
+        return new File(WikipediaEntityTest.class.getResource(name).toURI()).getPath();
+    }
+
+    private static WikipediaEntity parse(String page) {
+        WikipediaEntity entity = new WikipediaEntity();
+        entity.setTitle("Berlin");
+        entity.setMainSectionsOnly(false);
+        entity.setExtractStatements(true);
+        entity.setSinglePassParsing(false);
+        entity.setContent(page);
+        return entity;
+    }
+
+    private static void assertSameEntity(WikipediaEntity expected, WikipediaEntity actual) {
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getContent(), actual.getContent());
+        assertEquals(expected.getEntityCitations(), actual.getEntityCitations());
+        assertEquals(expected.getCitingStatements(), actual.getCitingStatements());
+        assertEquals(expected.getSectionKeys(), actual.getSectionKeys());
+        for (String section : expected.getSectionKeys()) {
+            assertEquals(section, expected.getSectionText(section), actual.getSectionText(section));
+        }
+        for (int level = 0; level <= 3; level++) {
+            assertEquals(expected.getSectionKeys(level), actual.getSectionKeys(level));
+        }
+    }
+
+    @Test
+    public void readBaselineEntity() throws Exception {
+        Object loaded = FileUtils.readObject(resource("baseline-entity.ser"));
+        assertNotNull("the entity serialized with the original classes cannot be loaded", loaded);
+
+        //the values are those of the original classes, whose content still held the page text twice.
+        WikipediaEntity entity = (WikipediaEntity) loaded;
+        assertEquals("Berlin", entity.getTitle());
+        assertEquals(8, entity.getEntityCitations().size());
+        assertEquals(4, entity.getCitingStatements().size());
+        assertEquals(new HashSet<>(Arrays.asList("MAIN_SECTION", "History", "Prussia", "Division", "Geography")), entity.getSectionKeys());
+        assertEquals("'''Berlin''' is the capital of Germany.{{0}} It has about 3.7 million inhabitants.{{1}}\n", entity.getSectionText("MAIN_SECTION"));
+        assertEquals("\nThe city was first documented in the 13th century.{{2}}\n", entity.getSectionText("History"));
+        assertEquals("\nBerlin became the capital of Prussia.\n", entity.getSectionText("Prussia"));
+        assertEquals("\nAfter 1945 the city was divided.{{3}}\n", entity.getSectionText("Division"));
+        assertEquals("\nBerlin lies on the Spree.\n", entity.getSectionText("Geography"));
+        assertTrue(entity.getSectionKeys(2).contains("History"));
+        assertFalse(entity.getSectionKeys(2).contains("Prussia"));
+    }
+
+    @Test
+    public void serializationRoundTrip() throws IOException, URISyntaxException {
+        String page = new String(Files.readAllBytes(new File(resource("baseline-entity.txt")).toPath()), StandardCharsets.UTF_8);
+        WikipediaEntity entity = parse(page);
+        String path = new File(folder.getRoot(), "entity.ser").getPath();
+        FileUtils.saveObject(entity, path);
+
+        assertSameEntity(entity, (WikipediaEntity) FileUtils.readObject(path));
+    }
+}
@@ -0,0 +1,138 @@
+package utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the writes of several threads all end up in the file in their order, also when the shared writer of
+ * FileUtils is closed while other threads keep appending to the file.
+ */
+public class AsyncFileWriterTest {
+    private static final int NUM_THREADS = 4;
+    private static final int NUM_LINES = 20000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> readLines(String path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (LineCursor cursor = FileUtils.getLineCursor(path)) {
+            for (String line : cursor) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Checks that each line of each thread is in the file exactly once, and after the previous line of its thread.
+     */
+    private static void assertAllLines(List<String> lines) {
+        assertEquals(NUM_THREADS * NUM_LINES, lines.size());
+        int[] next = new int[NUM_THREADS];
+        for (String line : lines) {
+            String[] parts = line.split("\t");
+            int thread = Integer.parseInt(parts[0]);
+            assertEquals(line, next[thread]++, Integer.parseInt(parts[1]));
+        }
+        for (int count : next) {
+            assertEquals(NUM_LINES, count);
+        }
+    }
+
+    private static void join(List<Thread> threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    public void concurrentWrites() throws Exception {
+        for (String name : new String[]{"lines.txt", "lines.txt.gz"}) {
+            String path = new File(folder.getRoot(), name).getPath();
+            //a small queue makes the writers block on the background thread.
+            AsyncFileWriter writer = new AsyncFileWriter(path, false, 1 << 10);
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> errors = new ArrayList<>();
+            for (int t = 0; t < NUM_THREADS; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < NUM_LINES; i++) {
+                            writer.write(thread + "\t" + i + "\n");
+                        }
+                    } catch (IOException e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            join(threads);
+            writer.close();
+
+            assertEquals(new ArrayList<Throwable>(), errors);
+            assertTrue(writer.isClosed());
+            assertAllLines(readLines(path));
+        }
+    }
+
+    @Test
+    public void flush() throws IOException {
+        String path = new File(folder.getRoot(), "flushed.txt").getPath();
+        try (AsyncFileWriter writer = new AsyncFileWriter(path, false)) {
+            writer.write("first\n");
+            writer.flush();
+            assertEquals("first\n", new String(Files.readAllBytes(new File(path).toPath()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void writeAfterClose() throws IOException {
+        AsyncFileWriter writer = new AsyncFileWriter(new File(folder.getRoot(), "closed.txt").getPath(), false);
+        writer.close();
+        writer.write("too late\n");
+    }
+
+    /**
+     * saveText appends through the shared writer while another thread closes it, the appends which lose the race
+     * fall back to the synchronous write, after the queued text is written.
+     */
+    @Test
+    public void saveTextRacingCloseAsyncWriter() throws Exception {
+        String path = new File(folder.getRoot(), "race.txt").getPath();
+        FileUtils.getAsyncWriter(path);
+
+        CountDownLatch started = new CountDownLatch(NUM_THREADS);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < NUM_THREADS; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < NUM_LINES; i++) {
+                    FileUtils.saveText(thread + "\t" + i + "\n", path, true);
+                    if (i == NUM_LINES / 10) {
+                        started.countDown();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        started.await();
+        FileUtils.closeAsyncWriter(path);
+        join(threads);
+
+        assertAllLines(readLines(path));
+    }
+}
@@ -0,0 +1,87 @@
+package utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the filter has no false negatives, that its false positive rate is close to the requested one, and that
+ * a saved filter answers the same on the heap and when it is mapped.
+ */
+public class BloomFilterTest {
+    private static final int NUM_ITEMS = 100000;
+    private static final int NUM_PROBES = 200000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static BloomFilter build(double false_positive_rate) {
+        BloomFilter filter = new BloomFilter(NUM_ITEMS, false_positive_rate);
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            filter.add("item-" + i);
+        }
+        return filter;
+    }
+
+    private static void assertNoFalseNegatives(BloomFilter filter) {
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            assertTrue("item-" + i, filter.mightContain("item-" + i));
+        }
+    }
+
+    private static double falsePositiveRate(BloomFilter filter) {
+        int false_positives = 0;
+        for (int i = 0; i < NUM_PROBES; i++) {
+            if (filter.mightContain("absent-" + i)) {
+                false_positives++;
+            }
+        }
+        return (double) false_positives / NUM_PROBES;
+    }
+
+    @Test
+    public void falsePositiveRate() {
+        for (double rate : new double[]{0.1, 0.01, 0.001}) {
+            BloomFilter filter = build(rate);
+            assertNoFalseNegatives(filter);
+            assertEquals(NUM_ITEMS, filter.getNumItems());
+
+            double measured = falsePositiveRate(filter);
+            assertTrue("rate " + rate + " measured " + measured, measured < rate * 1.25);
+            assertTrue("rate " + rate + " expected " + filter.getExpectedFalsePositiveRate(), filter.getExpectedFalsePositiveRate() <= rate);
+        }
+    }
+
+    @Test
+    public void saveAndOpen() throws IOException {
+        BloomFilter filter = build(0.01);
+        String path = new File(folder.getRoot(), "items.bloom").getPath();
+        filter.save(path);
+
+        for (boolean mapped : new boolean[]{false, true}) {
+            try (BloomFilter loaded = BloomFilter.open(path, mapped)) {
+                assertEquals(mapped, loaded.isMapped());
+                assertEquals(filter.getNumHashes(), loaded.getNumHashes());
+                assertEquals(filter.getNumItems(), loaded.getNumItems());
+                assertEquals(filter.getSizeInBytes(), loaded.getSizeInBytes());
+                assertNoFalseNegatives(loaded);
+                for (int i = 0; i < NUM_PROBES; i += 7) {
+                    assertEquals(filter.mightContain("absent-" + i), loaded.mightContain("absent-" + i));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void openOtherFile() throws IOException {
+        File file = folder.newFile("items.txt");
+        Files.write(file.toPath(), "not a filter, just some text".getBytes("UTF-8"));
+        BloomFilter.open(file.getPath(), false);
+    }
+}
@@ -0,0 +1,118 @@
+package utils;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes and reads files through FileUtils with each codec, and checks that the codec is detected from the suffix as
+ * well as from the first bytes of the file.
+ */
+public class CompressionCodecsTest {
+    private static final CompressionCodec[] CODECS = {CompressionCodecs.GZIP, CompressionCodecs.BZIP2,
+            CompressionCodecs.ZIP, CompressionCodecs.ZSTD, CompressionCodecs.LZ4};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] text(int num_lines) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < num_lines; i++) {
+            sb.append("line ").append(i).append('\t').append(Integer.toHexString(i * 31)).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void write(String path, byte[] data, boolean append) throws IOException {
+        try (OutputStream out = FileUtils.getFileOutputStream(path, append)) {
+            out.write(data);
+        }
+    }
+
+    private static byte[] read(String path) throws IOException {
+        try (InputStream in = FileUtils.getFileInputStream(path)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] data = text(20000);
+        for (CompressionCodec codec : CODECS) {
+            String path = new File(folder.getRoot(), "data.tsv" + codec.getSuffix()).getPath();
+            write(path, data, false);
+
+            assertSame(codec, CompressionCodecs.forSuffix(path));
+            assertSame(codec.getName(), codec, CompressionCodecs.detect(path));
+            assertArrayEquals(codec.getName(), data, read(path));
+        }
+    }
+
+    @Test
+    public void detectWithoutSuffix() throws IOException {
+        byte[] data = text(100);
+        for (CompressionCodec codec : CODECS) {
+            File file = new File(folder.getRoot(), "data" + codec.getSuffix());
+            write(file.getPath(), data, false);
+            File renamed = new File(folder.getRoot(), "data-" + codec.getName());
+            assertTrue(file.renameTo(renamed));
+
+            assertNull(CompressionCodecs.forSuffix(renamed.getPath()));
+            assertSame(codec.getName(), codec, CompressionCodecs.detect(renamed.getPath()));
+            assertArrayEquals(codec.getName(), data, read(renamed.getPath()));
+        }
+    }
+
+    @Test
+    public void uncompressedFile() throws IOException {
+        byte[] data = text(100);
+        File file = folder.newFile("plain.tsv");
+        Files.write(file.toPath(), data);
+
+        assertNull(CompressionCodecs.detect(file.getPath()));
+        assertArrayEquals(data, read(file.getPath()));
+        assertNull(CompressionCodecs.detect(folder.newFile("empty.tsv").getPath()));
+    }
+
+    @Test
+    public void append() throws IOException {
+        byte[] first = text(1000);
+        byte[] second = "appended\n".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = new byte[first.length + second.length];
+        System.arraycopy(first, 0, expected, 0, first.length);
+        System.arraycopy(second, 0, expected, first.length, second.length);
+
+        for (CompressionCodec codec : CODECS) {
+            if (codec == CompressionCodecs.ZIP) {
+                continue;
+            }
+            String path = new File(folder.getRoot(), "append.tsv" + codec.getSuffix()).getPath();
+            write(path, first, true);
+            write(path, second, true);
+            assertArrayEquals(codec.getName(), expected, read(path));
+        }
+    }
+
+    @Test
+    public void appendToZipIsRejected() throws IOException {
+        String path = new File(folder.getRoot(), "data.zip").getPath();
+        write(path, text(10), true);
+        try {
+            write(path, text(10), true);
+            fail("appending to a non-empty ZIP file must fail");
+        } catch (IOException e) {
+            //expected, the first archive is left intact.
+        }
+        assertArrayEquals(text(10), read(path));
+    }
+}
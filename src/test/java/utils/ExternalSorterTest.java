@@ -0,0 +1,130 @@
+package utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the external sort against a stable in-memory sort, with many small runs, several merge passes and
+ * compressed runs, and checks that the temporary runs are deleted afterwards.
+ */
+public class ExternalSorterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File temp_dir;
+
+    private String createInput(int num_lines) throws IOException {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>();
+        lines.add("#a comment which is skipped");
+        for (int i = 0; i < num_lines; i++) {
+            lines.add("key" + random.nextInt(500) + "\t" + random.nextInt(3) + "\t" + i);
+        }
+        File file = folder.newFile("input.tsv");
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        temp_dir = folder.newFolder("runs");
+        return file.getPath();
+    }
+
+    private static List<String> sortInMemory(String path, ExternalSorter sorter) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(new File(path).toPath(), StandardCharsets.UTF_8)) {
+            if (!line.startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        //Collections.sort is stable as well.
+        lines.sort(Comparator.comparing(sorter::getKey));
+        return lines;
+    }
+
+    private static List<String> toList(Iterable<String> lines) {
+        List<String> list = new ArrayList<>();
+        for (String line : lines) {
+            list.add(line);
+        }
+        return list;
+    }
+
+    private ExternalSorter sorter(String run_suffix, int... key_columns) {
+        return new ExternalSorter("\t", key_columns).setTempDir(temp_dir.getPath()).setMaxRunChars(20000).setMaxFanIn(4)
+                .setThreads(3).setRunCompression(run_suffix);
+    }
+
+    @Test
+    public void sort() throws IOException {
+        String path = createInput(50000);
+        for (String run_suffix : new String[]{"", ".lz4", ".gz"}) {
+            ExternalSorter sorter = sorter(run_suffix);
+            try (ExternalSorter.Lines lines = sorter.sort(path)) {
+                assertEquals(run_suffix, sortInMemory(path, sorter), toList(lines));
+            }
+            assertArrayEquals(run_suffix, new String[0], temp_dir.list());
+        }
+    }
+
+    @Test
+    public void sortByColumns() throws IOException {
+        String path = createInput(20000);
+        ExternalSorter sorter = sorter(".lz4", 1, 0);
+        try (ExternalSorter.Lines lines = sorter.sort(path)) {
+            assertEquals(sortInMemory(path, sorter), toList(lines));
+        }
+    }
+
+    @Test
+    public void sortIntoFile() throws IOException {
+        String path = createInput(20000);
+        ExternalSorter sorter = sorter("");
+        for (String suffix : new String[]{".tsv", ".tsv.gz"}) {
+            String out_path = new File(folder.getRoot(), "sorted" + suffix).getPath();
+            sorter.sort(path, out_path);
+
+            List<String> sorted = new ArrayList<>();
+            try (LineCursor cursor = FileUtils.getLineCursor(out_path)) {
+                for (String line : cursor) {
+                    sorted.add(line);
+                }
+            }
+            assertEquals(suffix, sortInMemory(path, sorter), sorted);
+        }
+    }
+
+    @Test
+    public void group() throws IOException {
+        String path = createInput(30000);
+        ExternalSorter sorter = sorter(".lz4");
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        for (String line : sortInMemory(path, sorter)) {
+            expected.computeIfAbsent(sorter.getKey(line), key -> new ArrayList<>()).add(line);
+        }
+
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        try (ExternalSorter.Groups iterator = sorter.group(path)) {
+            for (Map.Entry<String, List<String>> group : iterator) {
+                assertNull(group.getKey(), groups.put(group.getKey(), new ArrayList<>(group.getValue())));
+            }
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(groups.keySet()));
+        assertEquals(expected, groups);
+        assertArrayEquals(new String[0], temp_dir.list());
+    }
+
+    @Test
+    public void emptyInput() throws IOException {
+        File file = folder.newFile("empty.tsv");
+        temp_dir = folder.newFolder("runs");
+        try (ExternalSorter.Lines lines = sorter("").sort(file.getPath())) {
+            assertFalse(lines.hasNext());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the adjacency built in two passes over a file of <key, target> pairs holds the same sets as
+ * FileUtils.readIntMapSet, with the duplicate targets of a key removed and malformed lines skipped, that the scratch
+ * file is removed, and that the file answers the same on the heap and when it is mapped.
+ */
+public class IntAdjacencyTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String createFile(String name, String delim, int num_pairs) throws IOException {
+        Random random = new Random(num_pairs);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < num_pairs; i++) {
+            //few keys and targets, such that keys have many targets and pairs repeat.
+            int key = random.nextInt(500) - 50;
+            int target = random.nextInt(2000) - 100;
+            sb.append(key).append(delim).append(target).append('\n');
+            if (i % 1000 == 0) {
+                //lines with a different number of columns are skipped.
+                sb.append(key).append('\n');
+                sb.append(key).append(delim).append(target).append(delim).append(7).append('\n');
+            }
+        }
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.US_ASCII));
+        return file.getPath();
+    }
+
+    private static void assertSameSets(Map<Integer, Set<Integer>> expected, IntAdjacency adjacency) {
+        assertEquals(expected.size(), adjacency.getNumKeys());
+        int[] keys = adjacency.getKeys();
+        for (int i = 1; i < keys.length; i++) {
+            assertTrue(keys[i - 1] < keys[i]);
+        }
+
+        long num_targets = 0;
+        for (Map.Entry<Integer, Set<Integer>> entry : expected.entrySet()) {
+            int key = entry.getKey();
+            int[] targets = entry.getValue().stream().mapToInt(Integer::intValue).sorted().toArray();
+            num_targets += targets.length;
+
+            assertTrue(adjacency.containsKey(key));
+            assertEquals(targets.length, adjacency.degree(key));
+            assertArrayEquals(targets, adjacency.getTargets(key));
+
+            List<Integer> consumed = new ArrayList<>();
+            adjacency.forEachTarget(key, consumed::add);
+            List<Integer> iterated = new ArrayList<>();
+            adjacency.targets(key).forEachRemaining((IntConsumer) iterated::add);
+            List<Integer> sorted = new ArrayList<>(new TreeSet<>(entry.getValue()));
+            assertEquals(sorted, consumed);
+            assertEquals(sorted, iterated);
+
+            for (int target : targets) {
+                assertTrue(adjacency.contains(key, target));
+            }
+            assertFalse(adjacency.contains(key, targets[0] - 1));
+            assertFalse(adjacency.contains(key, targets[targets.length - 1] + 1));
+        }
+        assertEquals(num_targets, adjacency.getNumTargets());
+
+        assertFalse(adjacency.containsKey(-1000));
+        assertEquals(0, adjacency.degree(-1000));
+        assertEquals(0, adjacency.getTargets(-1000).length);
+        assertFalse(adjacency.targets(-1000).hasNext());
+        assertFalse(adjacency.contains(-1000, 0));
+    }
+
+    @Test
+    public void buildAndOpen() throws IOException {
+        //a literal delimiter is read through the tokenizer, a regex through split.
+        for (String delim : new String[]{"\t", "\\s+"}) {
+            String name = delim.equals("\t") ? "pairs.tsv" : "pairs.txt";
+            String path = createFile(name, delim.equals("\t") ? "\t" : "  ", 100000);
+            Map<Integer, Set<Integer>> expected = FileUtils.readIntMapSet(path, delim);
+
+            String out_path = path + ".adj";
+            IntAdjacency.build(path, delim, out_path);
+            //only the input and the output are left, the scratch file of the second pass is deleted.
+            assertEquals(new HashSet<>(Arrays.asList(name, name + ".adj")), namesStartingWith(name));
+
+            try (IntAdjacency adjacency = IntAdjacency.open(out_path, false)) {
+                assertFalse(adjacency.isMapped());
+                assertSameSets(expected, adjacency);
+            }
+            try (IntAdjacency adjacency = IntAdjacency.open(out_path, true)) {
+                assertTrue(adjacency.isMapped());
+                assertSameSets(expected, adjacency);
+            }
+        }
+    }
+
+    private Set<String> namesStartingWith(String prefix) {
+        Set<String> names = new HashSet<>();
+        for (String name : folder.getRoot().list()) {
+            if (name.startsWith(prefix)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    @Test
+    public void duplicateTargets() throws IOException {
+        File file = folder.newFile("duplicates.tsv");
+        Files.write(file.toPath(), "3\t9\n1\t5\n3\t9\n1\t2\n1\t5\n3\t-4\n3\t9\n".getBytes(StandardCharsets.US_ASCII));
+        String out_path = file.getPath() + ".adj";
+        IntAdjacency.build(file.getPath(), "\t", out_path);
+        for (boolean mapped : new boolean[]{false, true}) {
+            try (IntAdjacency adjacency = IntAdjacency.open(out_path, mapped)) {
+                assertArrayEquals(new int[]{1, 3}, adjacency.getKeys());
+                assertArrayEquals(new int[]{2, 5}, adjacency.getTargets(1));
+                assertArrayEquals(new int[]{-4, 9}, adjacency.getTargets(3));
+                assertEquals(4, adjacency.getNumTargets());
+            }
+        }
+    }
+
+    @Test
+    public void emptyFile() throws IOException {
+        File file = folder.newFile("empty.tsv");
+        String out_path = file.getPath() + ".adj";
+        IntAdjacency.build(file.getPath(), "\t", out_path);
+        for (boolean mapped : new boolean[]{false, true}) {
+            try (IntAdjacency adjacency = IntAdjacency.open(out_path, mapped)) {
+                assertEquals(0, adjacency.getNumKeys());
+                assertEquals(0, adjacency.getNumTargets());
+                assertEquals(0, adjacency.getTargets(1).length);
+            }
+        }
+    }
+
+    @Test
+    public void readIntAdjacency() throws IOException {
+        String path = createFile("cached.tsv", "\t", 10000);
+        Map<Integer, Set<Integer>> expected = FileUtils.readIntMapSet(path, "\t");
+        try (IntAdjacency adjacency = FileUtils.readIntAdjacency(path, "\t", false)) {
+            assertSameSets(expected, adjacency);
+        }
+        Set<String> names = namesStartingWith("cached.tsv");
+        assertEquals(2, names.size());
+        File adjacency_file = new File(folder.getRoot(), names.stream().filter(s -> s.endsWith(".adj")).findFirst().get());
+        long modified = adjacency_file.lastModified();
+
+        //the binary file is reopened as long as the input is not modified, and rebuilt afterwards.
+        try (IntAdjacency adjacency = FileUtils.readIntAdjacency(path, "\t", true)) {
+            assertSameSets(expected, adjacency);
+        }
+        assertEquals(modified, adjacency_file.lastModified());
+
+        Files.write(new File(path).toPath(), "1\t2\n".getBytes(StandardCharsets.US_ASCII));
+        new File(path).setLastModified(modified + 10000);
+        try (IntAdjacency adjacency = FileUtils.readIntAdjacency(path, "\t", true)) {
+            assertArrayEquals(new int[]{1}, adjacency.getKeys());
+            assertArrayEquals(new int[]{2}, adjacency.getTargets(1));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notAnAdjacencyFile() throws IOException {
+        File file = folder.newFile("other.adj");
+        Files.write(file.toPath(), new byte[64]);
+        IntAdjacency.open(file.getPath(), false);
+    }
+}
@@ -0,0 +1,170 @@
+package utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the line offsets of the index against the file, that the partitions cover every line exactly once, and that
+ * a saved index is reopened with the same offsets and rejected once the file has changed.
+ */
+public class LineIndexTest {
+    private static final int SAMPLE = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> lines;
+    private long[] offsets;
+
+    private String createFile(int num_lines, boolean final_newline) throws IOException {
+        Random random = new Random(num_lines);
+        lines = new ArrayList<>();
+        offsets = new long[num_lines + 1];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < num_lines; i++) {
+            StringBuilder line = new StringBuilder(i % 100 == 0 ? "#comment " : "line ").append(i);
+            for (int j = random.nextInt(200); j > 0; j--) {
+                line.append((char) ('a' + random.nextInt(26)));
+            }
+            lines.add(line.toString());
+            offsets[i] = sb.length();
+            sb.append(line);
+            if (final_newline || i < num_lines - 1) {
+                sb.append('\n');
+            }
+        }
+        offsets[num_lines] = sb.length();
+
+        File file = folder.newFile("lines-" + num_lines + "-" + final_newline + ".txt");
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.US_ASCII));
+        return file.getPath();
+    }
+
+    private static List<String> readLines(BufferedReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader in = reader) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void lineOffsets() throws IOException {
+        for (boolean final_newline : new boolean[]{true, false}) {
+            String path = createFile(1000, final_newline);
+            LineIndex index = LineIndex.build(path, SAMPLE);
+            assertEquals(lines.size(), index.getNumLines());
+            assertEquals(new File(path).length(), index.getFileSize());
+
+            for (int i = 0; i <= lines.size(); i++) {
+                assertEquals("line " + i, offsets[i], index.getLineOffset(i));
+            }
+            for (int i : new int[]{0, 1, SAMPLE, 517, lines.size() - 1}) {
+                try (LineCursor cursor = index.getLines(i)) {
+                    assertEquals(lines.get(i), cursor.next());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void partitions() throws IOException {
+        String path = createFile(5000, true);
+        LineIndex index = LineIndex.build(path, SAMPLE);
+        for (int num_partitions : new int[]{1, 3, 8, 1000}) {
+            List<LineIndex.Partition> partitions = index.getPartitions(num_partitions);
+            assertTrue(partitions.size() <= num_partitions);
+
+            List<String> read = new ArrayList<>();
+            long start = 0;
+            for (LineIndex.Partition partition : partitions) {
+                assertEquals(start, partition.getStart());
+                assertEquals(read.size(), partition.getFirstLine());
+                assertEquals(offsets[(int) partition.getFirstLine()], partition.getStart());
+
+                List<String> partition_lines = readLines(partition.getReader());
+                assertEquals(partition.getNumLines(), partition_lines.size());
+                read.addAll(partition_lines);
+                start = partition.getEnd();
+            }
+            assertEquals(index.getFileSize(), start);
+            assertEquals(lines, read);
+        }
+    }
+
+    @Test
+    public void saveAndOpen() throws IOException {
+        String path = createFile(3000, true);
+        LineIndex index = LineIndex.build(path, SAMPLE);
+        String index_path = path + ".lidx";
+        index.save(index_path);
+
+        LineIndex loaded = LineIndex.open(index_path, path);
+        assertEquals(index.getSample(), loaded.getSample());
+        assertEquals(index.getNumLines(), loaded.getNumLines());
+        assertEquals(index.getFileSize(), loaded.getFileSize());
+        for (int i = 0; i <= lines.size(); i += 7) {
+            assertEquals(offsets[i], loaded.getLineOffset(i));
+        }
+
+        try (OutputStream out = Files.newOutputStream(new File(path).toPath(), StandardOpenOption.APPEND)) {
+            out.write("appended\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        try {
+            LineIndex.open(index_path, path);
+            fail("the index of a modified file must be rejected");
+        } catch (IOException e) {
+            //expected, the size of the file has changed.
+        }
+    }
+
+    @Test
+    public void readLargeTextPartitions() throws IOException {
+        String path = createFile(20000, true);
+        List<String> expected = new ArrayList<>();
+        for (String line : lines) {
+            if (!line.startsWith("#")) {
+                expected.add(line);
+            }
+        }
+
+        int num_partitions = 4;
+        List<String> read = new ArrayList<>();
+        for (int p = 0; p < num_partitions; p++) {
+            for (String chunk : FileUtils.readLargeText(path, p, num_partitions)) {
+                for (String line : chunk.split("\n")) {
+                    if (!line.isEmpty()) {
+                        read.add(line);
+                    }
+                }
+            }
+        }
+        assertEquals(expected, read);
+        assertTrue(new File(path + ".lidx").exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void compressedFileIsRejected() throws IOException {
+        String path = new File(folder.getRoot(), "lines.txt.gz").getPath();
+        try (OutputStream out = FileUtils.getFileOutputStream(path, false)) {
+            out.write("a\nb\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        LineIndex.build(path, SAMPLE);
+    }
+}
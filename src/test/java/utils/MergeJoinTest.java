@@ -0,0 +1,163 @@
+package utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the merge-join against a join of the files in memory, for sorted and unsorted files with duplicate keys
+ * and keys that are missing from some of the files.
+ */
+public class MergeJoinTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String createFile(String name, int num_lines, int num_keys, long seed, boolean sorted) throws IOException {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < num_lines; i++) {
+            lines.add("k" + random.nextInt(num_keys) + "\t" + name + i);
+        }
+        if (sorted) {
+            lines.sort(Comparator.comparing(line -> line.substring(0, line.indexOf('\t'))));
+        }
+        File file = folder.newFile(name + ".tsv");
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        return file.getPath();
+    }
+
+    /**
+     * The lines of each key of a file in the file order, by their keys in String order.
+     */
+    private static TreeMap<String, List<String>> readGroups(String path) throws IOException {
+        TreeMap<String, List<String>> groups = new TreeMap<>();
+        for (String line : Files.readAllLines(new File(path).toPath(), StandardCharsets.UTF_8)) {
+            groups.computeIfAbsent(line.substring(0, line.indexOf('\t')), key -> new ArrayList<>()).add(line);
+        }
+        return groups;
+    }
+
+    private static List<List<String>> expectedRows(MergeJoin.Type type, String... paths) throws IOException {
+        List<TreeMap<String, List<String>>> files = new ArrayList<>();
+        TreeSet<String> keys = new TreeSet<>();
+        for (String path : paths) {
+            files.add(readGroups(path));
+            keys.addAll(files.get(files.size() - 1).keySet());
+        }
+
+        List<List<String>> rows = new ArrayList<>();
+        for (String key : keys) {
+            List<List<String>> combinations = Collections.singletonList(new ArrayList<>());
+            for (TreeMap<String, List<String>> file : files) {
+                List<String> lines = file.get(key);
+                if (lines == null && (type == MergeJoin.Type.INNER || file == files.get(0))) {
+                    combinations = Collections.emptyList();
+                    break;
+                }
+                List<List<String>> extended = new ArrayList<>();
+                for (List<String> combination : combinations) {
+                    for (String line : lines == null ? Collections.<String>singletonList(null) : lines) {
+                        List<String> row = new ArrayList<>(combination);
+                        row.add(line);
+                        extended.add(row);
+                    }
+                }
+                combinations = extended;
+            }
+            rows.addAll(combinations);
+        }
+        return rows;
+    }
+
+    private static List<List<String>> toList(MergeJoin.Rows rows) {
+        List<List<String>> list = new ArrayList<>();
+        for (String[] row : rows) {
+            list.add(Arrays.asList(row));
+        }
+        return list;
+    }
+
+    @Test
+    public void sortedRows() throws IOException {
+        String a = createFile("a", 2000, 300, 1, true);
+        String b = createFile("b", 1000, 400, 2, true);
+        String c = createFile("c", 500, 200, 3, true);
+        for (MergeJoin.Type type : new MergeJoin.Type[]{MergeJoin.Type.INNER, MergeJoin.Type.LEFT}) {
+            try (MergeJoin.Rows rows = new MergeJoin("\t").addInput(a).addInput(b).addInput(c).rows(type)) {
+                assertEquals(type.name(), expectedRows(type, a, b, c), toList(rows));
+            }
+        }
+    }
+
+    @Test
+    public void unsortedRows() throws IOException {
+        String a = createFile("a", 5000, 1000, 4, false);
+        String b = createFile("b", 3000, 1500, 5, false);
+        File temp_dir = folder.newFolder("runs");
+        for (MergeJoin.Type type : new MergeJoin.Type[]{MergeJoin.Type.INNER, MergeJoin.Type.LEFT}) {
+            MergeJoin join = new MergeJoin("\t").addInput(a).addInput(b).setSorted(false).setTempDir(temp_dir.getPath());
+            try (MergeJoin.Rows rows = join.rows(type)) {
+                assertEquals(type.name(), expectedRows(type, a, b), toList(rows));
+            }
+            assertArrayEquals(new String[0], temp_dir.list());
+        }
+    }
+
+    @Test
+    public void groups() throws IOException {
+        String a = createFile("a", 2000, 300, 6, true);
+        String b = createFile("b", 1000, 400, 7, true);
+        TreeMap<String, List<String>> groups_a = readGroups(a);
+        TreeMap<String, List<String>> groups_b = readGroups(b);
+        TreeSet<String> keys = new TreeSet<>(groups_a.keySet());
+        keys.addAll(groups_b.keySet());
+
+        List<String> joined_keys = new ArrayList<>();
+        try (MergeJoin.Groups groups = new MergeJoin("\t").addInput(a).addInput(b).groups(MergeJoin.Type.GROUP)) {
+            for (MergeJoin.Group group : groups) {
+                joined_keys.add(group.getKey());
+                assertEquals(groups_a.getOrDefault(group.getKey(), Collections.emptyList()), group.getLines(0));
+                assertEquals(groups_b.getOrDefault(group.getKey(), Collections.emptyList()), group.getLines(1));
+            }
+        }
+        assertEquals(new ArrayList<>(keys), joined_keys);
+    }
+
+    @Test
+    public void joinFiles() throws IOException {
+        String a = createFile("a", 1000, 200, 8, false);
+        String b = createFile("b", 1000, 200, 9, false);
+        String out_path = new File(folder.getRoot(), "joined.tsv.gz").getPath();
+        FileUtils.joinFiles(out_path, "\t", MergeJoin.Type.LEFT, false, a, b);
+
+        List<String> expected = new ArrayList<>();
+        for (List<String> row : expectedRows(MergeJoin.Type.LEFT, a, b)) {
+            expected.add(row.get(0) + "\t" + (row.get(1) == null ? "" : row.get(1)));
+        }
+        List<String> joined = new ArrayList<>();
+        try (LineCursor cursor = FileUtils.getLineCursor(out_path)) {
+            for (String line : cursor) {
+                joined.add(line);
+            }
+        }
+        assertEquals(expected, joined);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unsortedInputIsRejected() throws IOException {
+        String a = createFile("a", 1000, 300, 10, false);
+        try (MergeJoin.Rows rows = new MergeJoin("\t").addInput(a).addInput(a).rows(MergeJoin.Type.INNER)) {
+            while (rows.hasNext()) {
+                rows.next();
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package utils;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the parallel decompression returns the same content as the sequential one, for inputs with a single and
+ * with many compressed units, and with a single or several worker threads.
+ */
+public class ParallelDecompressionInputStreamTest {
+    private static final int[] THREADS = {1, 4};
+
+    private static byte[] text(int num_lines, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < num_lines; i++) {
+            sb.append(i).append('\t');
+            for (int j = random.nextInt(20); j >= 0; j--) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            sb.append('\t').append(random.nextLong()).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] data, int member_length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int pos = 0; pos < data.length; pos += member_length) {
+            try (OutputStream member = new GZIPOutputStream(new NonClosing(out))) {
+                member.write(data, pos, Math.min(member_length, data.length - pos));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] bzip2(byte[] data, int stream_length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int pos = 0; pos < data.length; pos += stream_length) {
+            //the smallest block size gives many blocks for the workers.
+            try (OutputStream stream = new BZip2CompressorOutputStream(new NonClosing(out), 1)) {
+                stream.write(data, pos, Math.min(stream_length, data.length - pos));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            return IOUtils.toByteArray(stream);
+        }
+    }
+
+    @Test
+    public void gzipMultipleMembers() throws IOException {
+        byte[] data = text(50000, 1);
+        byte[] compressed = gzip(data, 16 << 10);
+        for (int threads : THREADS) {
+            assertArrayEquals(data, read(new ParallelGzipInputStream(new ByteArrayInputStream(compressed), threads)));
+        }
+    }
+
+    @Test
+    public void gzipSingleMember() throws IOException {
+        byte[] data = text(50000, 2);
+        byte[] compressed = gzip(data, data.length);
+        for (int threads : THREADS) {
+            assertArrayEquals(data, read(new ParallelGzipInputStream(new ByteArrayInputStream(compressed), threads)));
+        }
+    }
+
+    @Test
+    public void gzipOpen() throws IOException {
+        byte[] data = text(50000, 6);
+        byte[] single = gzip(data, data.length);
+        try (InputStream in = ParallelGzipInputStream.open(new ByteArrayInputStream(single), 4)) {
+            assertTrue(in instanceof GZIPInputStream);
+            assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+        byte[] multiple = gzip(data, 16 << 10);
+        try (InputStream in = ParallelGzipInputStream.open(new ByteArrayInputStream(multiple), 4)) {
+            assertTrue(in instanceof ParallelGzipInputStream);
+            assertArrayEquals(data, IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void gzipMemberLargerThanScan() throws IOException {
+        //incompressible data gives a member of more than the 4MB which are scanned for the next member at once.
+        byte[] large = new byte[6 << 20];
+        new Random(7).nextBytes(large);
+        byte[] small = text(20000, 8);
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (byte[] part : new byte[][]{small, large, small}) {
+            data.write(part);
+            compressed.write(gzip(part, 16 << 10));
+        }
+        for (int threads : THREADS) {
+            assertArrayEquals(data.toByteArray(), read(ParallelGzipInputStream.open(new ByteArrayInputStream(compressed.toByteArray()), threads)));
+        }
+        assertArrayEquals(large, read(ParallelGzipInputStream.open(new ByteArrayInputStream(gzip(large, large.length)), 4)));
+    }
+
+    @Test
+    public void bzip2MultipleBlocks() throws IOException {
+        byte[] data = text(30000, 3);
+        byte[] compressed = bzip2(data, data.length);
+        for (int threads : THREADS) {
+            assertArrayEquals(data, read(new ParallelBZip2InputStream(new ByteArrayInputStream(compressed), threads)));
+        }
+    }
+
+    @Test
+    public void bzip2ConcatenatedStreams() throws IOException {
+        byte[] data = text(30000, 4);
+        byte[] compressed = bzip2(data, 256 << 10);
+        for (int threads : THREADS) {
+            assertArrayEquals(data, read(new ParallelBZip2InputStream(new ByteArrayInputStream(compressed), threads)));
+        }
+    }
+
+    @Test
+    public void emptyInput() throws IOException {
+        for (int threads : THREADS) {
+            assertArrayEquals(new byte[0], read(new ParallelGzipInputStream(new ByteArrayInputStream(new byte[0]), threads)));
+            assertArrayEquals(new byte[0], read(new ParallelBZip2InputStream(new ByteArrayInputStream(new byte[0]), threads)));
+        }
+    }
+
+    @Test
+    public void singleByteReads() throws IOException {
+        byte[] data = text(5000, 5);
+        try (InputStream in = new ParallelGzipInputStream(new ByteArrayInputStream(gzip(data, 4096)), 2)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) >= 0) {
+                out.write(b);
+            }
+            assertArrayEquals(data, out.toByteArray());
+        }
+    }
+
+    /**
+     * Keeps the underlying stream open when a compressed unit is finished.
+     */
+    private static class NonClosing extends FilterOutputStream {
+        NonClosing(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package utils;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the prefetched chars are the ones of the underlying reader, that its failures reach the consumer, and
+ * that closing waits for the background thread to leave the underlying reader before closing it.
+ */
+public class PrefetchingReaderTest {
+    private static String text(int length) {
+        Random random = new Random(length);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(random.nextInt(10) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+
+    private static String readAll(Reader reader, int buffer_size) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[buffer_size];
+        for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void readChunks() throws IOException {
+        for (int length : new int[]{0, 1, 999, 1000, 1001, 100000}) {
+            String text = text(length);
+            for (int buffer_size : new int[]{1, 7, 1000, 4096}) {
+                try (PrefetchingReader reader = new PrefetchingReader(new StringReader(text), 4, 1000)) {
+                    assertEquals(text, readAll(reader, buffer_size));
+                    assertEquals(-1, reader.read());
+                    assertEquals((length + 999) / 1000, reader.getReadAhead().getNumItems());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void readerFailure() throws IOException {
+        Reader failing = new Reader() {
+            int num_reads = 0;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                if (++num_reads > 3) {
+                    throw new IOException("failed read");
+                }
+                cbuf[off] = 'x';
+                return 1;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (PrefetchingReader reader = new PrefetchingReader(failing, 2, 2)) {
+            assertEquals('x', reader.read());
+            assertEquals('x', reader.read());
+            reader.read();
+            fail("The failure of the underlying reader was not thrown.");
+        } catch (IOException e) {
+            assertEquals("failed read", e.getMessage());
+        }
+    }
+
+    /**
+     * A reader whose reads take a while and ignore interrupts, like a blocking read of a file, and which records if it
+     * is closed during a read.
+     */
+    private static class SlowReader extends Reader {
+        final AtomicInteger num_reads = new AtomicInteger();
+        final AtomicBoolean in_read = new AtomicBoolean();
+        final AtomicBoolean closed_during_read = new AtomicBoolean();
+        volatile boolean closed = false;
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            in_read.set(true);
+            num_reads.incrementAndGet();
+            long end = System.currentTimeMillis() + 200;
+            boolean interrupted = false;
+            while (System.currentTimeMillis() < end) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            in_read.set(false);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            cbuf[off] = 'x';
+            return 1;
+        }
+
+        @Override
+        public void close() {
+            closed_during_read.set(in_read.get());
+            closed = true;
+        }
+    }
+
+    @Test
+    public void closeWaitsForTheProducer() throws Exception {
+        SlowReader slow = new SlowReader();
+        PrefetchingReader reader = new PrefetchingReader(slow, 1, 1);
+        assertEquals('x', reader.read());
+        //the producer reads the next chunks ahead, wait until it is inside the underlying reader.
+        while (!slow.in_read.get()) {
+            Thread.sleep(1);
+        }
+        reader.close();
+
+        assertTrue(slow.closed);
+        assertFalse("The underlying reader was closed during a read.", slow.closed_during_read.get());
+        int num_reads = slow.num_reads.get();
+        Thread.sleep(300);
+        assertEquals(num_reads, slow.num_reads.get());
+    }
+
+    @Test
+    public void closeWhileInterrupted() throws Exception {
+        SlowReader slow = new SlowReader();
+        PrefetchingReader reader = new PrefetchingReader(slow, 1, 1);
+        while (!slow.in_read.get()) {
+            Thread.sleep(1);
+        }
+        Thread.currentThread().interrupt();
+        try {
+            reader.close();
+            //the interrupt does not cut the wait short, and is kept for the caller.
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertTrue(slow.closed);
+        assertFalse(slow.closed_during_read.get());
+    }
+}
@@ -0,0 +1,131 @@
+package utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes segments and reads them back through the manifest, and checks that a writer without append replaces the
+ * segments of a previous output.
+ */
+public class RollingFileWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void write(String path, int from, int to, boolean append) throws IOException {
+        try (RollingFileWriter writer = new RollingFileWriter(path, 0, 100, append)) {
+            for (int i = from; i < to; i++) {
+                writer.writeLine("record " + i);
+            }
+        }
+    }
+
+    private static List<String> readLines(String manifest_path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String segment : RollingFileWriter.getSegmentPaths(manifest_path)) {
+            try (BufferedReader reader = FileUtils.getFileReader(segment)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static List<String> records(int from, int to) {
+        List<String> records = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            records.add("record " + i);
+        }
+        return records;
+    }
+
+    private Set<String> listFiles() {
+        return new TreeSet<>(Arrays.asList(folder.getRoot().list()));
+    }
+
+    @Test
+    public void segments() throws IOException {
+        for (String suffix : new String[]{".txt", ".txt.gz", ".txt.lz4"}) {
+            String path = new File(folder.getRoot(), "data" + suffix).getPath();
+            write(path, 0, 1050, false);
+            String manifest_path = new File(folder.getRoot(), "data.txt.manifest").getPath();
+
+            assertEquals(11, RollingFileWriter.getSegmentPaths(manifest_path).size());
+            assertEquals(records(0, 1050), readLines(manifest_path));
+            List<String> manifest = Files.readAllLines(new File(manifest_path).toPath(), StandardCharsets.UTF_8);
+            assertTrue(manifest.get(0), manifest.get(0).endsWith("\t100\t" + records(0, 100).stream().mapToInt(r -> r.length() + 1).sum()));
+        }
+    }
+
+    @Test
+    public void append() throws IOException {
+        String path = new File(folder.getRoot(), "data.txt.gz").getPath();
+        write(path, 0, 250, false);
+        write(path, 250, 420, true);
+        assertEquals(records(0, 420), readLines(new File(folder.getRoot(), "data.txt.manifest").getPath()));
+    }
+
+    @Test
+    public void overwrite() throws IOException {
+        String path = new File(folder.getRoot(), "data.txt.gz").getPath();
+        String manifest_path = new File(folder.getRoot(), "data.txt.manifest").getPath();
+        write(path, 0, 1000, false);
+        Set<String> files = listFiles();
+
+        //the fewer segments of the new output replace the old ones, the rest of the old segments is deleted.
+        write(path, 2000, 2250, false);
+        assertEquals(records(2000, 2250), readLines(manifest_path));
+        assertEquals(new TreeSet<>(Arrays.asList("data.txt.00000.gz", "data.txt.00001.gz", "data.txt.00002.gz", "data.txt.manifest")), listFiles());
+        assertTrue(files.containsAll(listFiles()));
+
+        //an overwrite without any records leaves an empty manifest.
+        new RollingFileWriter(path, 0, 100, false).close();
+        assertEquals(new ArrayList<String>(), readLines(manifest_path));
+        assertEquals(Collections.singleton("data.txt.manifest"), listFiles());
+    }
+
+    @Test
+    public void manifestIsReplacedBeforeTheFirstSegment() throws IOException {
+        String path = new File(folder.getRoot(), "data.txt").getPath();
+        String manifest_path = new File(folder.getRoot(), "data.txt.manifest").getPath();
+        write(path, 0, 300, false);
+
+        try (RollingFileWriter writer = new RollingFileWriter(path, 0, 100, false)) {
+            assertEquals(new ArrayList<String>(), RollingFileWriter.getSegmentPaths(manifest_path));
+            writer.writeLine("new record");
+            assertEquals(new ArrayList<String>(), RollingFileWriter.getSegmentPaths(manifest_path));
+        }
+        assertEquals(Collections.singletonList("new record"), readLines(manifest_path));
+    }
+
+    @Test
+    public void forEachSegment() throws IOException {
+        String path = new File(folder.getRoot(), "data.txt.zst").getPath();
+        write(path, 0, 2000, false);
+
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        RollingFileWriter.forEachSegment(new File(folder.getRoot(), "data.txt.manifest").getPath(), 4, (segment, reader) -> {
+            try {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    lines.add(line);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Collections.sort(lines);
+        List<String> expected = records(0, 2000);
+        Collections.sort(expected);
+        assertEquals(expected, lines);
+    }
+}
@@ -0,0 +1,176 @@
+package utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the CSR matrix holds the same cells as FileUtils.readMatrix, where the last value of a duplicate cell
+ * wins, and that a saved matrix answers the same on the heap and when it is mapped.
+ */
+public class SparseMatrixTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String createFile(String name, String delim, int num_cells) throws IOException {
+        Random random = new Random(num_cells);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < num_cells; i++) {
+            //few rows and columns, such that cells are added several times with different values.
+            sb.append("row-").append(random.nextInt(300)).append(delim);
+            sb.append("col-").append(random.nextInt(1000)).append(delim);
+            sb.append(random.nextInt(1000) / 8.0 - 10).append('\n');
+        }
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.US_ASCII));
+        return file.getPath();
+    }
+
+    private static void assertSameCells(Map<String, Map<String, Double>> expected, SparseMatrix matrix) {
+        assertEquals(expected.size(), matrix.getNumRows());
+        Set<String> columns = new TreeSet<>();
+        int num_cells = 0;
+        for (Map<String, Double> row : expected.values()) {
+            columns.addAll(row.keySet());
+            num_cells += row.size();
+        }
+        assertEquals(columns.size(), matrix.getNumColumns());
+        assertEquals(num_cells, matrix.getNumCells());
+
+        //the rows are iterated in the order of their keys, and the cells of a row in the order of their columns.
+        Iterator<Map.Entry<String, Map<String, Double>>> expected_rows = expected.entrySet().iterator();
+        for (SparseMatrix.Row row : matrix) {
+            Map.Entry<String, Map<String, Double>> expected_row = expected_rows.next();
+            assertEquals(expected_row.getKey(), row.getKey());
+            assertEquals(row.getRowId(), matrix.getRowId(row.getKey()));
+            assertEquals(expected_row.getValue(), row.toMap());
+            assertEquals(new ArrayList<>(expected_row.getValue().keySet()), columnKeys(row));
+
+            for (Map.Entry<String, Double> cell : expected_row.getValue().entrySet()) {
+                double value = cell.getValue();
+                assertEquals(value, matrix.get(row.getKey(), cell.getKey(), Double.NaN), 0);
+                assertEquals(value, row.get(cell.getKey(), Double.NaN), 0);
+                assertTrue(matrix.contains(row.getKey(), cell.getKey()));
+            }
+        }
+        assertFalse(expected_rows.hasNext());
+
+        for (String column : columns) {
+            assertEquals(column, matrix.getColumnKey(matrix.getColumnId(column)));
+        }
+        assertEquals(-1, matrix.getRowId("missing"));
+        assertEquals(-1, matrix.getColumnId("missing"));
+        assertNull(matrix.getRow("missing"));
+        assertEquals(-2, matrix.get("missing", columns.iterator().next(), -2), 0);
+        assertFalse(matrix.contains("missing", "missing"));
+    }
+
+    private static List<String> columnKeys(SparseMatrix.Row row) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < row.size(); i++) {
+            keys.add(row.getColumnKey(i));
+        }
+        return keys;
+    }
+
+    @Test
+    public void lastValueWins() throws IOException {
+        SparseMatrix.Builder builder = new SparseMatrix.Builder();
+        builder.put("b", "y", 1);
+        builder.put("a", "z", 2);
+        builder.put("b", "x", 3);
+        builder.put("b", "y", 4);
+        builder.put("a", "z", 5);
+        builder.put("b", "y", 6);
+        assertEquals(6, builder.size());
+        SparseMatrix matrix = builder.build();
+
+        assertEquals(2, matrix.getNumRows());
+        assertEquals(3, matrix.getNumColumns());
+        assertEquals(3, matrix.getNumCells());
+        assertEquals(5, matrix.get("a", "z", Double.NaN), 0);
+        assertEquals(3, matrix.get("b", "x", Double.NaN), 0);
+        assertEquals(6, matrix.get("b", "y", Double.NaN), 0);
+        assertEquals(-1, matrix.get("a", "x", -1), 0);
+        assertEquals(Arrays.asList("x", "y"), columnKeys(matrix.getRow("b")));
+
+        //the same as readMatrix on the cells in the same order.
+        File file = folder.newFile("duplicates.tsv");
+        Files.write(file.toPath(), "b\ty\t1\na\tz\t2\nb\tx\t3\nb\ty\t4\na\tz\t5\nb\ty\t6\n".getBytes(StandardCharsets.US_ASCII));
+        assertSameCells(FileUtils.readMatrix(file.getPath(), "\t"), matrix);
+        assertSameCells(FileUtils.readMatrix(file.getPath(), "\t"), FileUtils.buildSparseMatrix(file.getPath(), "\t"));
+    }
+
+    @Test
+    public void saveAndOpen() throws IOException {
+        //a literal delimiter is read through the tokenizer, a regex through split.
+        for (String delim : new String[]{"\t", "\\s+"}) {
+            String name = delim.equals("\t") ? "matrix.tsv" : "matrix.txt";
+            String path = createFile(name, delim.equals("\t") ? "\t" : "  ", 100000);
+            Map<String, Map<String, Double>> expected = FileUtils.readMatrix(path, delim);
+
+            SparseMatrix built = FileUtils.buildSparseMatrix(path, delim);
+            assertFalse(built.isMapped());
+            assertSameCells(expected, built);
+
+            String out_path = path + ".spm";
+            built.save(out_path);
+            try (SparseMatrix matrix = SparseMatrix.open(out_path, false)) {
+                assertFalse(matrix.isMapped());
+                assertSameCells(expected, matrix);
+            }
+            try (SparseMatrix matrix = SparseMatrix.open(out_path, true)) {
+                assertTrue(matrix.isMapped());
+                assertSameCells(expected, matrix);
+
+                //a mapped matrix is saved from its mapping.
+                String copy_path = path + ".copy.spm";
+                matrix.save(copy_path);
+                assertArrayEquals(Files.readAllBytes(new File(out_path).toPath()), Files.readAllBytes(new File(copy_path).toPath()));
+            }
+        }
+    }
+
+    @Test
+    public void emptyMatrix() throws IOException {
+        String out_path = new File(folder.getRoot(), "empty.spm").getPath();
+        new SparseMatrix.Builder().build().save(out_path);
+        for (boolean mapped : new boolean[]{false, true}) {
+            try (SparseMatrix matrix = SparseMatrix.open(out_path, mapped)) {
+                assertEquals(0, matrix.getNumRows());
+                assertEquals(0, matrix.getNumColumns());
+                assertEquals(0, matrix.getNumCells());
+                assertFalse(matrix.iterator().hasNext());
+                assertEquals(-1, matrix.get("a", "b", -1), 0);
+            }
+        }
+    }
+
+    @Test
+    public void readSparseMatrix() throws IOException {
+        String path = createFile("cached.tsv", "\t", 10000);
+        Map<String, Map<String, Double>> expected = FileUtils.readMatrix(path, "\t");
+        try (SparseMatrix matrix = FileUtils.readSparseMatrix(path, "\t", false)) {
+            assertSameCells(expected, matrix);
+        }
+        try (SparseMatrix matrix = FileUtils.readSparseMatrix(path, "\t", true)) {
+            assertTrue(matrix.isMapped());
+            assertSameCells(expected, matrix);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notAMatrixFile() throws IOException {
+        File file = folder.newFile("other.spm");
+        Files.write(file.toPath(), new byte[64]);
+        SparseMatrix.open(file.getPath(), false);
+    }
+}
@@ -0,0 +1,241 @@
+package utils;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the arena decodes what was added for code points of each UTF-8 length and for unpaired surrogates, that
+ * a string is found with the same id as CharSequence and as UTF-8 bytes, that strings longer than a slab are kept
+ * intact, and that the Set and Map views behave like a HashSet and a LinkedHashMap.
+ */
+public class StringArenaTest {
+    private static final int SLAB_SIZE = 1 << 24;
+
+    //ASCII, 2, 3 and 4 byte code points, including the first and last code point of each UTF-8 length, written as
+    //escapes since the sources have no declared encoding.
+    private static final String[] STRINGS = {
+            "",
+            "Berlin",
+            "Z\u00FCrich",
+            "\u00DF\u0080\u07FF",
+            "\u6771\u4EAC\u90FD",
+            "\u0800\uFFFF",
+            "\uD83D\uDE00 \uD800\uDC00\uDBFF\uDFFF",
+            "Mixed A\u00E4\u6771\uD83D\uDE00z"
+    };
+
+    private static final int[] CODE_POINTS = {'a', 'z', '\u00E4', '\u00DF', '\u6771', '\u4EAC', 0x1F600, 0x10000};
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertFound(StringArena arena, String s, int id) {
+        assertEquals(s, id, arena.find(s));
+        assertEquals(s, id, arena.find(new StringBuilder(s)));
+        byte[] bytes = utf8(s);
+        assertEquals(s, id, arena.find(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void roundTrip() {
+        StringArena arena = new StringArena();
+        for (int i = 0; i < STRINGS.length; i++) {
+            assertEquals(i, arena.add(STRINGS[i]));
+        }
+        assertEquals(STRINGS.length, arena.size());
+        for (int i = 0; i < STRINGS.length; i++) {
+            assertEquals(STRINGS[i], arena.get(i));
+            assertFound(arena, STRINGS[i], i);
+            assertEquals(i, arena.add(STRINGS[i]));
+        }
+        assertEquals(STRINGS.length, arena.size());
+
+        long num_bytes = 0;
+        for (String s : STRINGS) {
+            num_bytes += 1 + utf8(s).length;
+        }
+        assertEquals(num_bytes, arena.getNumBytes());
+        assertEquals(-1, arena.find("Berlin "));
+        assertEquals(-1, arena.find("Zurich"));
+    }
+
+    @Test
+    public void bytesRoundTrip() {
+        StringArena arena = new StringArena();
+        for (int i = 0; i < STRINGS.length; i++) {
+            //the string in the middle of a larger array.
+            byte[] bytes = utf8("<<" + STRINGS[i] + ">>");
+            assertEquals(i, arena.add(bytes, 2, bytes.length - 4));
+        }
+        for (int i = 0; i < STRINGS.length; i++) {
+            assertEquals(STRINGS[i], arena.get(i));
+            assertFound(arena, STRINGS[i], i);
+            assertEquals(i, arena.add(STRINGS[i]));
+        }
+        assertEquals(STRINGS.length, arena.size());
+    }
+
+    @Test
+    public void unpairedSurrogates() {
+        //unpaired surrogates are stored as '?', as in String.getBytes.
+        String[] strings = {"a\uD800b", "\uDC00", "x\uDBFF", "\uDC00\uD800", "\uD83D\uD83D\uDE00"};
+        String[] expected = {"a?b", "?", "x?", "??", "?\uD83D\uDE00"};
+
+        StringArena arena = new StringArena();
+        for (int i = 0; i < strings.length; i++) {
+            assertEquals(i, arena.add(strings[i]));
+        }
+        for (int i = 0; i < strings.length; i++) {
+            assertEquals(expected[i], new String(utf8(strings[i]), StandardCharsets.UTF_8));
+            assertEquals(expected[i], arena.get(i));
+            assertFound(arena, strings[i], i);
+            assertFound(arena, expected[i], i);
+        }
+        assertEquals(strings.length, arena.size());
+    }
+
+    @Test
+    public void manyStrings() {
+        StringArena arena = new StringArena();
+        Map<String, Integer> ids = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int k = 0; k < length; k++) {
+                //a few code points of each UTF-8 length, such that strings repeat.
+                sb.appendCodePoint(CODE_POINTS[random.nextInt(CODE_POINTS.length)]);
+            }
+            String s = sb.toString();
+            Integer id = ids.get(s);
+            int added = arena.add(s);
+            if (id == null) {
+                assertEquals(ids.size(), added);
+                ids.put(s, added);
+            } else {
+                assertEquals(id.intValue(), added);
+            }
+        }
+        assertEquals(ids.size(), arena.size());
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            assertEquals(entry.getKey(), arena.get(entry.getValue()));
+            assertFound(arena, entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Test
+    public void longerThanSlab() {
+        StringArena arena = new StringArena();
+        int before = arena.add("before");
+
+        //the length prefix of this string takes 4 bytes, and its 2 byte chars do not fit into one slab.
+        char[] chars = new char[SLAB_SIZE / 2 + 1000];
+        Arrays.fill(chars, '\u00E4');
+        chars[0] = 'a';
+        chars[chars.length - 1] = 'z';
+        String large = new String(chars);
+        int large_id = arena.add(large);
+
+        //strings after the large one go into a new slab, where the filler leaves just enough room for "after".
+        String filler = new String(new char[SLAB_SIZE - 100]).replace('\0', 'f');
+        int filler_id = arena.add(filler);
+        int after = arena.add("after");
+
+        assertEquals("before", arena.get(before));
+        assertEquals(large, arena.get(large_id));
+        assertEquals(filler, arena.get(filler_id));
+        assertEquals("after", arena.get(after));
+        assertFound(arena, "before", before);
+        assertFound(arena, large, large_id);
+        assertFound(arena, filler, filler_id);
+        assertFound(arena, "after", after);
+
+        chars[chars.length - 1] = 'y';
+        assertEquals(-1, arena.find(new String(chars)));
+        assertEquals(4, arena.size());
+        assertTrue(arena.getMemoryUsage() >= 3L * SLAB_SIZE);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getMissingId() {
+        StringArena arena = new StringArena();
+        arena.add("a");
+        arena.get(1);
+    }
+
+    @Test
+    public void set() {
+        ArenaStringSet set = new ArenaStringSet();
+        Set<String> expected = new LinkedHashSet<>();
+        for (String s : STRINGS) {
+            assertTrue(set.add(s));
+            expected.add(s);
+        }
+        assertFalse(set.add("Berlin"));
+        assertFalse(set.add(new StringBuilder("Z\u00FCrich")));
+        assertEquals(expected, set);
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        for (String s : STRINGS) {
+            assertTrue(set.contains(s));
+            byte[] bytes = utf8(s);
+            assertTrue(set.contains(bytes, 0, bytes.length));
+        }
+        assertFalse(set.contains("Paris"));
+        assertFalse(set.contains(42));
+    }
+
+    @Test
+    public void mapPut() {
+        ArenaStringMap map = new ArenaStringMap();
+        assertNull(map.put("Berlin", "Germany"));
+        assertNull(map.put("Z\u00FCrich", "Switzerland"));
+        assertNull(map.put("\u6771\u4EAC\u90FD", null));
+        assertEquals(3, map.size());
+
+        //replacing a value keeps the key id and the order of the entries.
+        assertEquals("Germany", map.put("Berlin", "Deutschland"));
+        assertEquals("Deutschland", map.put(new StringBuilder("Berlin"), new StringBuilder("Allemagne")));
+        assertNull(map.put("\u6771\u4EAC\u90FD", "\u65E5\u672C"));
+        assertEquals("Switzerland", map.put("Z\u00FCrich", null));
+        assertEquals(3, map.size());
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("Berlin", "Allemagne");
+        expected.put("Z\u00FCrich", null);
+        expected.put("\u6771\u4EAC\u90FD", "\u65E5\u672C");
+        assertEquals(expected, map);
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+
+        assertEquals("Allemagne", map.get("Berlin"));
+        byte[] bytes = utf8("\u6771\u4EAC\u90FD");
+        assertEquals("\u65E5\u672C", map.get(bytes, 0, bytes.length));
+        assertTrue(map.containsKey(bytes, 0, bytes.length));
+        assertTrue(map.containsKey("Z\u00FCrich"));
+        assertNull(map.get("Z\u00FCrich"));
+        assertFalse(map.containsKey("Paris"));
+        assertNull(map.get("Paris"));
+        assertNull(map.get(42));
+    }
+
+    @Test
+    public void mapAgainstHashMap() {
+        ArenaStringMap map = new ArenaStringMap();
+        Map<String, String> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            String key = "key-" + random.nextInt(20000);
+            String value = "value-" + random.nextInt(100);
+            assertEquals(expected.put(key, value), map.put(key, value));
+        }
+        assertEquals(expected, map);
+        for (String key : expected.keySet()) {
+            byte[] bytes = utf8(key);
+            assertEquals(expected.get(key), map.get(bytes, 0, bytes.length));
+        }
+    }
+}
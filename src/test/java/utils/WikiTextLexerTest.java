@@ -0,0 +1,93 @@
+package utils;
+
+import entities.WikipediaEntity;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the single pass of the WikiTextLexer gives the same entities as the chain of regular expressions of
+ * WikiUtils, for every combination of the flags of WikipediaEntity. The fixture pages in utils/wikitext cover the
+ * markup which the lexer handles itself, and each of the cases in which it hands the page back to the chain: a
+ * reference which is not closed on its line, a second infobox, carriage returns, and chars of the private use area,
+ * which the lexer uses for its citation markers.
+ */
+public class WikiTextLexerTest {
+    private static final String[] SUPPORTED = {"article.txt", "leading-heading.txt"};
+    private static final String[] FALLBACKS = {"open-ref.txt", "second-infobox.txt", "carriage-return.txt", "private-use.txt"};
+    private static final Pattern SECTION_PATTERN = Pattern.compile("={2,}(.*?)={2,}");
+
+    private static String readPage(String name) throws IOException, URISyntaxException {
+        File file = new File(WikiTextLexerTest.class.getResource("wikitext/" + name).toURI());
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static WikipediaEntity parse(String page, int flags, boolean single_pass_parsing) {
+        WikipediaEntity entity = new WikipediaEntity();
+        entity.setTitle("Page");
+        entity.setCleanReferences((flags & 1) != 0);
+        entity.setMainSectionsOnly((flags & 2) != 0);
+        entity.setExtractReferences((flags & 4) != 0);
+        entity.setExtractStatements((flags & 8) != 0);
+        entity.setSinglePassParsing(single_pass_parsing);
+        entity.setContent(page);
+        return entity;
+    }
+
+    private static void assertSameEntity(String message, WikipediaEntity expected, WikipediaEntity actual) {
+        assertEquals(message, expected.getContent(), actual.getContent());
+        assertEquals(message, expected.getEntityCitations(), actual.getEntityCitations());
+        assertEquals(message, expected.getCitingStatements(), actual.getCitingStatements());
+        assertEquals(message, expected.getSectionKeys(), actual.getSectionKeys());
+        for (String section : expected.getSectionKeys()) {
+            assertEquals(message + " " + section, expected.getSectionText(section), actual.getSectionText(section));
+        }
+        for (int level = 0; level <= 4; level++) {
+            assertEquals(message + " level " + level, expected.getSectionKeys(level), actual.getSectionKeys(level));
+        }
+    }
+
+    private static void assertEquivalent(String name) throws Exception {
+        String page = readPage(name);
+        for (int flags = 0; flags < 16; flags++) {
+            String message = name + " flags=" + Integer.toBinaryString(flags);
+            assertSameEntity(message, parse(page, flags, false), parse(page, flags, true));
+        }
+    }
+
+    @Test
+    public void supportedPages() throws Exception {
+        for (String name : SUPPORTED) {
+            assertNotNull(name, new WikiTextLexer(false, true, SECTION_PATTERN).process(readPage(name), new HashMap<>()));
+            assertEquivalent(name);
+        }
+    }
+
+    @Test
+    public void fallbackPages() throws Exception {
+        for (String name : FALLBACKS) {
+            Map<Integer, Map<String, String>> citations = new HashMap<>();
+            assertNull(name, new WikiTextLexer(false, true, SECTION_PATTERN).process(readPage(name), citations));
+            assertTrue(name, citations.isEmpty());
+            assertEquivalent(name);
+        }
+    }
+
+    @Test
+    public void citations() throws Exception {
+        WikipediaEntity entity = parse(readPage("article.txt"), 4 | 8, true);
+        assertFalse(entity.getEntityCitations().isEmpty());
+        assertFalse(entity.getContent().contains("<ref"));
+        assertFalse(entity.getContent().contains("Infobox"));
+        assertTrue(entity.getSectionKeys().contains("Railroad"));
+    }
+}
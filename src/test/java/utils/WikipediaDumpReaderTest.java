@@ -0,0 +1,64 @@
+package utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Reads the pages of a small compressed dump, with the namespace and redirect filters and a page limit.
+ */
+public class WikipediaDumpReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String createDump() throws IOException {
+        StringBuilder sb = new StringBuilder("<mediawiki>\n");
+        String[][] pages = {{"A", "0", ""}, {"Talk:A", "1", ""}, {"B", "0", "<redirect title=\"A\" />"}, {"C", "0", ""}, {"D", "0", ""}};
+        for (String[] page : pages) {
+            sb.append("<page><title>").append(page[0]).append("</title><ns>").append(page[1]).append("</ns>").append(page[2])
+                    .append("<revision><text>Text of ").append(page[0]).append(" &amp; more</text></revision></page>\n");
+        }
+        sb.append("</mediawiki>\n");
+
+        String path = new File(folder.getRoot(), "dump.xml.bz2").getPath();
+        try (OutputStream out = FileUtils.getFileOutputStream(path, false)) {
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return path;
+    }
+
+    private static List<String> readTitles(WikipediaDumpReader reader) throws IOException {
+        List<String> titles = new ArrayList<>();
+        reader.readPages((title, text) -> {
+            assertEquals("Text of " + title + " & more", text);
+            titles.add(title);
+        });
+        return titles;
+    }
+
+    @Test
+    public void readPages() throws IOException {
+        String path = createDump();
+        assertEquals(Arrays.asList("A", "C", "D"), readTitles(new WikipediaDumpReader(path)));
+        assertEquals(Arrays.asList("A", "Talk:A", "B", "C", "D"), readTitles(new WikipediaDumpReader(path).setNamespaces().setSkipRedirects(false)));
+    }
+
+    @Test
+    public void maxPages() throws IOException {
+        String path = createDump();
+        assertEquals(Arrays.asList("A", "C"), readTitles(new WikipediaDumpReader(path).setMaxPages(2)));
+        assertEquals(Arrays.asList("A", "C", "D"), readTitles(new WikipediaDumpReader(path).setMaxPages(0)));
+        assertEquals(2, new WikipediaDumpReader(path).setMaxPages(2).read(entity -> {
+        }));
+    }
+}